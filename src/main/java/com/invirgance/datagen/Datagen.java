@@ -24,6 +24,7 @@ package com.invirgance.datagen;
 
 import com.invirgance.datagen.modules.Context;
 import com.invirgance.datagen.modules.RetailGenerator;
+import com.invirgance.datagen.modules.Shard;
 import java.io.File;
 
 /**
@@ -49,6 +50,14 @@ public class Datagen
                 
                 Context.setSetting(parsed[0], parsed[1]);
             }
+            else if(args[i].equals("--shard"))
+            {
+                if(args.length-1 < i+1) break;
+                
+                Shard.parse(args[++i]); // Fail fast on a bad shard
+                
+                Context.setSetting("shard", args[i]);
+            }
             else if(dir == null)
             {
                 dir = args[i];
@@ -66,7 +75,7 @@ public class Datagen
         
         if(args.length < 1 || dir == null)
         {
-            System.err.println("Usage: java -jar datagen.jar <output directory> [csv|json]");
+            System.err.println("Usage: java -jar datagen.jar [--shard i/N] <output directory> [csv|csv.gz|csv.zst|json|json.gz|json.zst|bson|parquet|arrow|pgcopy]");
             return;
         }
         
@@ -22,106 +22,113 @@ SOFTWARE.
 package com.invirgance.datagen.modules;
 
 import com.invirgance.convirgance.json.JSONObject;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- *
+ * Registry of the tables and settings for a generation run. A single Context
+ * is shared by every thread, so generators running on worker threads see the
+ * same tables and settings as the thread that started the run.
+ * 
  * @author jbanes
  */
 public class Context
 {
-    private static ThreadLocal<Map<String,Iterable<JSONObject>>> local = new ThreadLocal<>();
-    private static ThreadLocal<Map<String,String>> settings = new ThreadLocal<>();
+    private static volatile Context current = new Context();
     
-    private static Map<String,Iterable<JSONObject>> getLocal()
+    private final ConcurrentHashMap<String,Iterable<JSONObject>> tables = new ConcurrentHashMap<>();
+    private volatile Settings settings;
+
+    public Context()
     {
-        Map<String,Iterable<JSONObject>> map = local.get();
-        
-        if(map == null)
-        {
-            map = new HashMap<>();
-            
-            local.set(map);
-        }
-        
-        return map;
+        this(new Settings());
     }
     
-    private static Map<String,String> getSettings()
+    public Context(Settings settings)
     {
-        Map<String,String> map = settings.get();
-        
-        if(map == null)
-        {
-            map = new HashMap<>();
-            
-            settings.set(map);
-        }
-        
-        return map;
+        this.settings = settings;
+    }
+    
+    /**
+     * The Context used by the static accessors. Worker threads read the same
+     * instance, so there is nothing to hand over when starting them.
+     */
+    public static Context getCurrent()
+    {
+        return current;
+    }
+    
+    public static void setCurrent(Context context)
+    {
+        current = context;
+    }
+    
+    public Iterable<JSONObject> getTable(String name)
+    {
+        return tables.get(name);
+    }
+    
+    public void setTable(String name, Iterable<JSONObject> iterable)
+    {
+        tables.put(name, iterable);
+    }
+    
+    public Settings getSettings()
+    {
+        return settings;
+    }
+    
+    public void setSettings(Settings settings)
+    {
+        this.settings = settings;
     }
     
     public static void register(String name, Iterable<JSONObject> iterable)
     {
-        getLocal().put(name, iterable);
+        current.tables.put(name, iterable);
     }
     
     public static Iterable<JSONObject> get(String name)
     {
-        return getLocal().get(name);
+        return current.tables.get(name);
     }
     
     public static void reset()
     {
-        local.remove();
+        current.tables.clear();
     }
     
     public static String getSetting(String key)
     {
-        return getSettings().get(key);
+        return current.settings.get(key);
     }
     
     public static String getSetting(String key, String defautValue)
     {
-        String value = getSettings().get(key);
-        
-        if(value == null) return defautValue;
-        
-        return value;
+        return current.settings.get(key, defautValue);
     }
     
     public static int getSetting(String key, int defautValue)
     {
-        String value = getSettings().get(key);
-        
-        if(value == null) return defautValue;
-        if(value.startsWith("0x")) return Integer.parseInt(value.substring(2), 16);
-        
-        return Integer.parseInt(value);
+        return current.settings.get(key, defautValue);
     }
     
     public static long getSetting(String key, long defautValue)
     {
-        String value = getSettings().get(key);
-        
-        if(value == null) return defautValue;
-        if(value.startsWith("0x")) return Long.parseLong(value.substring(2), 16);
-        
-        return Long.parseLong(value);
+        return current.settings.get(key, defautValue);
     }
     
     public static boolean getSetting(String key, boolean defautValue)
     {
-        String value = getSettings().get(key);
-        
-        if(value == null) return defautValue;
-        
-        return Boolean.parseBoolean(value);
+        return current.settings.get(key, defautValue);
     }
     
     public static void setSetting(String key, String value)
     {
-        getSettings().put(key, value);
+        Context context = current;
+        
+        synchronized(context)
+        {
+            context.settings = context.settings.with(key, value);
+        }
     }
 }
@@ -26,12 +26,33 @@ import com.invirgance.convirgance.output.JBINOutput;
 import com.invirgance.convirgance.output.DelimitedOutput;
 import com.invirgance.convirgance.output.JSONOutput;
 import com.invirgance.convirgance.output.Output;
+import com.invirgance.convirgance.output.OutputCursor;
 import com.invirgance.convirgance.target.FileTarget;
+import com.invirgance.convirgance.target.Target;
 import com.invirgance.datagen.retail.*;
+import com.invirgance.datagen.util.ArrowOutput;
+import com.invirgance.datagen.util.CSVRowOutput;
+import com.invirgance.datagen.util.ConcatenatedOutput;
+import com.invirgance.datagen.util.GZIPTarget;
+import com.invirgance.datagen.util.HeaderlessTarget;
+import com.invirgance.datagen.util.ParquetOutput;
+import com.invirgance.datagen.util.PartitionedOutput;
+import com.invirgance.datagen.util.PgCopyOutput;
+import com.invirgance.datagen.util.PgLoadScript;
+import com.invirgance.datagen.util.PipelinedOutput;
+import com.invirgance.datagen.util.Randoms;
+import com.invirgance.datagen.util.Schema;
+import com.invirgance.datagen.util.TeeOutput;
+import com.invirgance.datagen.util.ZstdTarget;
 import java.io.File;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
-import java.util.Random;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.random.RandomGenerator;
 
 /**
  *
@@ -43,6 +64,13 @@ public class RetailGenerator implements Generator
     
     private File directory;
     private long seed;
+    private Shard shard;
+    
+    // The PostgreSQL COPY outputs of the tables, for the load scripts
+    private ConcurrentHashMap<String,PgCopyOutput> copies = new ConcurrentHashMap<>();
+    
+    // The threads compressed formats are compressed on
+    private ForkJoinPool compressor;
 
     public RetailGenerator(File directory)
     {
@@ -57,15 +85,155 @@ public class RetailGenerator implements Generator
         if(!directory.exists()) directory.mkdirs();
     }
 
+    private Output getOutput(String format)
+    {
+        return getOutput(format, null);
+    }
+    
+    /**
+     * The output for the format. With the pipeline setting, encoding and 
+     * writing run on a shared pool of threads while the generator carries 
+     * on. The pipelinebatch and pipelinequeue settings size the hand-offs.
+     */
+    private Output getOutput(String format, Schema schema)
+    {
+        return getOutput(format, schema, null);
+    }
+    
+    private Output getOutput(String format, Schema schema, String name)
+    {
+        Output output = getEncoder(format, schema, false);
+        
+        if(name != null && output instanceof PgCopyOutput) copies.put(name, (PgCopyOutput)output);
+        
+        return getPipeline(output, schema);
+    }
+    
+    private Output getPipeline(Output encoder, Schema schema)
+    {
+        if(!Context.getSetting("pipeline", false)) return encoder;
+        
+        return new PipelinedOutput(encoder, isTyped(encoder) ? schema : null, Context.getSetting("pipelinebatch", 1024), Context.getSetting("pipelinequeue", 16));
+    }
+    
+    /**
+     * Whether the encoder takes typed rows. Rows are only passed through the
+     * pipeline and partitioned outputs to these, since the other encoders 
+     * would write the columns in the order of the schema rather than of the
+     * records.
+     */
+    private static boolean isTyped(Output encoder)
+    {
+        return (encoder instanceof CSVRowOutput || encoder instanceof ParquetOutput || encoder instanceof ArrowOutput || encoder instanceof PgCopyOutput);
+    }
+    
+    /**
+     * CSV is written with DelimitedOutput. With the typedcsv setting, tables
+     * with a schema are written with the typed row writer instead, which is
+     * faster but formats the values itself. Parquet files are written in row
+     * groups of rowgroupsize rows, compressed with parquetcodec (gzip or 
+     * none). The files of a partitioned layout are open side by side, so 
+     * they default to smaller row groups and share a budget of parquetbuffer
+     * buffered rows. Arrow files are written in record batches of arrowbatch
+     * rows, or as an IPC stream with the arrowstream setting.
+     */
+    private Output getEncoder(String format, Schema schema, boolean partitioned)
+    {
+        int codec;
+        
+        switch(getEncoding(format))
+        {
+            case "csv":
+                if(schema != null && Context.getSetting("typedcsv", false)) return new CSVRowOutput(schema);
+                
+                return new DelimitedOutput(',');
+            
+            case "json":
+                return new JSONOutput();
+            
+            case "bson":
+                return new JBINOutput();
+            
+            case "parquet":
+                codec = ParquetOutput.getCodec(Context.getSetting("parquetcodec", "gzip"));
+                
+                if(partitioned) return new ParquetOutput(schema, Context.getSetting("rowgroupsize", 1 << 14), codec, Context.getSetting("parquetbuffer", 1L << 20));
+                
+                return new ParquetOutput(schema, Context.getSetting("rowgroupsize", 1 << 17), codec);
+            
+            case "arrow":
+                return new ArrowOutput(schema, Context.getSetting("arrowbatch", 1 << 16), Context.getSetting("arrowstream", false));
+                
+            case "pgcopy":
+                return new PgCopyOutput(schema);
+                
+            default:
+                throw new ConvirganceException("Unknown format: " + format);
+        }
+    }
+
+    /**
+     * The format the records are encoded in, without the compression of a 
+     * format such as csv.gz.
+     */
+    private static String getEncoding(String format)
+    {
+        return (format.indexOf('.') < 0) ? format : format.substring(0, format.indexOf('.'));
+    }
+    
+    /**
+     * The compression of the format, such as gz for csv.gz, or null if the
+     * format is not compressed.
+     */
+    private static String getCompression(String format)
+    {
+        return (format.indexOf('.') < 0) ? null : format.substring(format.indexOf('.') + 1);
+    }
+    
+    /**
+     * True if the format is compressed with gzip or Zstandard, as with csv.gz
+     * or json.zst. Only the text formats can be compressed, since the others
+     * are either compressed already or meant to be read in place.
+     */
+    private static boolean isCompressed(String format)
+    {
+        String compression = getCompression(format);
+        String encoding = getEncoding(format);
+        
+        if(compression == null) return false;
+        
+        if(!compression.equals("gz") && !compression.equals("zst")) throw new ConvirganceException("Unknown compression: " + compression);
+        if(!encoding.equals("csv") && !encoding.equals("json")) throw new ConvirganceException("The " + encoding + " format cannot be compressed");
+        
+        return true;
+    }
+    
+    /**
+     * Compresses the target with the compression of the format. Blocks of 
+     * gzipblock or zstdblock bytes are compressed at gziplevel or zstdlevel
+     * on the compression threads, with up to the given number of blocks of 
+     * the file in flight. Each zstd block is an independent frame.
+     */
+    private Target compress(Target target, String format, int window)
+    {
+        if(getCompression(format).equals("zst"))
+        {
+            return new ZstdTarget(target, compressor, Context.getSetting("zstdblock", 1 << 20), Context.getSetting("zstdlevel", 3), window);
+        }
+        
+        return new GZIPTarget(target, compressor, Context.getSetting("gzipblock", 1 << 20), Context.getSetting("gziplevel", 6), window);
+    }
+
     @Override
     public void generate() throws IOException
     {
-        Random random = new Random(seed);
+        RandomGenerator random = Randoms.create(seed);
 //        File temp = Files.createTempDirectory("retailgen-").toFile();
         File temp = directory;
         
         String format = Context.getSetting("format", "csv");
-        Output output;
+        int threads = Context.getSetting("threads", Runtime.getRuntime().availableProcessors());
+        Scheduler scheduler = new Scheduler();
         
         AbstractGenerator generator;
         String[] generators = new String[] {
@@ -73,6 +241,25 @@ public class RetailGenerator implements Generator
             "stores", "skus", "employees", "sales", "dates", "times"
         };
         
+        shard = Shard.getCurrent();
+        
+        // Shards started on different days or in different timezones would
+        // otherwise each work out their own calendar
+        if(shard != null && Context.getSetting("startdate", null) == null)
+        {
+            throw new ConvirganceException("Sharded runs must set the startdate setting so that every shard has the same calendar");
+        }
+        
+        // Only CSV shard files can be joined with cat. A partitioned layout
+        // works in any format, since the shards write different files into
+        // the same directories.
+        if(shard != null && !getEncoding(format).equals("csv") && Context.getSetting("partitionby", null) == null)
+        {
+            throw new ConvirganceException("The " + format + " files of shards cannot be concatenated. Use csv, csv.gz or csv.zst, or set partitionby to write a directory of files per partition.");
+        }
+        
+        if(shard != null) System.out.println("Generating shard " + shard.getIndex() + " of " + shard.getCount() + "...");
+        
         Context.register("franchises", new Franchises());
         Context.register("categories", new Categories());
         Context.register("brands", new Brands());
@@ -85,42 +272,316 @@ public class RetailGenerator implements Generator
         Context.register("dates", new Dates());
         Context.register("times", new Times());
         
-        switch(format)
+        getOutput(format); // Fail fast on an unknown format
+        
+        if(format.equals("pgcopy") && Context.getSetting("partitionby", null) != null) 
         {
-            case "csv":
-                output = new DelimitedOutput(',');
-                break;
-            
-            case "json":
-                output = new JSONOutput();
-                break;
-            
-            case "bson":
-                output = new JBINOutput();
-                break;
-                
-            default:
-                throw new ConvirganceException("Unknown format: " + Context.getSetting("format"));
+            throw new ConvirganceException("The pgcopy format cannot be partitioned, since the partition column would be lost from the files");
         }
         
+        if(isCompressed(format)) compressor = new ForkJoinPool(Math.max(1, threads));
+        
+        // Seeds are handed out in list order so that the data does not depend
+        // on the order in which the scheduler happens to run the generators
         for(String name : generators)
         {
-            System.out.println("Generating " + name + "...");
-            
             generator = (AbstractGenerator)Context.get(name);
             
             generator.setFile(new File(temp, name + ".tmp"));
             generator.setRandom(random.nextLong());
-
-            output.write(new FileTarget(new File(directory, name + "." + format)), Context.get(name));
         }
         
+        for(String name : generators)
+        {
+            generator = (AbstractGenerator)Context.get(name);
+            
+            scheduler.add(name, generator.getDependencies(), getTask(name, format, isLeaf(name, generators)));
+        }
+        
+        scheduler.run(Math.max(1, threads));
+        
+        // Temp files are already in the output format and only need moving.
+        // Indexed temp files are a series of blocks and are re-encoded.
+        if(format.equals("bson"))
+        {
+            for(String name : generators)
+            {
+                generator = (AbstractGenerator)Context.get(name);
+                
+                if(!isWritten(generator) || isPartitioned(generator)) continue;
+                
+                if(generator.getIndex() != null) new JBINOutput().write(new FileTarget(getFile(generator, name, format)), generator);
+                else promote(generator.getFile(), getFile(generator, name, format), !Context.getSetting("deletetemp", true));
+            }
+        }
+        
+        if(format.equals("pgcopy")) writeLoadScripts(generators);
+        if(compressor != null) compressor.shutdown();
+        
         // Cleanup
         for(String name : generators) 
         {
             generator = (AbstractGenerator)Context.get(name);
 
-            if(Context.getSetting("deletetemp", true)) generator.getFile().delete();
+            if(Context.getSetting("deletetemp", true)) 
+            {
+                generator.getFile().delete();
+                generator.getIndexFile().delete();
+            }
+        }
+    }
+    
+    private boolean isLeaf(String name, String[] generators)
+    {
+        for(String other : generators)
+        {
+            for(String dependency : ((AbstractGenerator)Context.get(other)).getDependencies())
+            {
+                if(dependency.equals(name)) return false;
+            }
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Every shard generates the tables the sales table is built from, but 
+     * only the first shard writes them out. Sharded tables are written by
+     * every shard.
+     */
+    private boolean isWritten(AbstractGenerator generator)
+    {
+        return (shard == null || shard.isPrimary() || generator.isSharded());
+    }
+    
+    /**
+     * True if the table is written as a directory of files partitioned by
+     * the column named in the partitionby setting. Only applies to sharded
+     * tables.
+     */
+    private boolean isPartitioned(AbstractGenerator generator)
+    {
+        return (generator.isSharded() && Context.getSetting("partitionby", null) != null);
+    }
+    
+    /**
+     * Writes the table to a Hive style layout under a directory named after
+     * the table. Up to maxopenfiles files are kept open at once, which 
+     * defaults to the number of partitions where the table knows it (up to
+     * 4096) and 64 otherwise. Files roll over after rollrows rows or 
+     * rollbytes bytes when set.
+     */
+    private Output getPartitionedOutput(AbstractGenerator generator, String name, String format)
+    {
+        String prefix = (shard == null) ? "part" : "part" + shard.getSuffix();
+        String key = Context.getSetting("partitionby", null);
+        Schema schema = (generator.getSchema() == null) ? null : generator.getSchema().without(key);
+        Output base = getEncoder(format, schema, true);
+        Output encoder = getPipeline(base, schema);
+        Output output = encoder;
+        
+        // Sales are written a store at a time, so a file is needed for every
+        // partition at once to avoid starting new files for each store
+        long partitions = generator.getCardinality(key);
+        int maxOpen = Context.getSetting("maxopenfiles", (int)Math.max(64, Math.min(partitions, 4096)));
+        
+        if(partitions > maxOpen)
+        {
+            System.err.println("Warning: " + name + " has " + partitions + " partitions by " + key + " but only " + maxOpen + " files may be open. Raise the maxopenfiles setting to avoid many small files.");
+        }
+        
+        // Many partition files are open at once, so each gets few blocks in 
+        // flight and the parallelism comes from compressing them side by side
+        if(isCompressed(format))
+        {
+            output = new Output() {
+                
+                @Override
+                public OutputCursor write(Target target)
+                {
+                    return encoder.write(compress(target, format, 2));
+                }
+            };
+        }
+        
+        return new PartitionedOutput(
+            output, 
+            new File(directory, name), 
+            key, 
+            prefix, 
+            format, 
+            maxOpen, 
+            Context.getSetting("rollrows", 0L), 
+            Context.getSetting("rollbytes", 0L),
+            (schema != null && isTyped(base)) ? generator.getSchema() : null
+        );
+    }
+    
+    private File getFile(AbstractGenerator generator, String name, String format)
+    {
+        if(shard != null && generator.isSharded()) name += shard.getSuffix();
+        
+        return new File(directory, name + "." + format);
+    }
+    
+    /**
+     * CSV files of all but the first shard leave out the header row so that
+     * the shard files can be concatenated.
+     */
+    private boolean isHeader(AbstractGenerator generator)
+    {
+        return (shard == null || shard.isPrimary() || !generator.isSharded());
+    }
+    
+    private Target getTarget(AbstractGenerator generator, File file, String format)
+    {
+        Target target = new FileTarget(file);
+        
+        if(isCompressed(format)) target = compress(target, format, compressor.getParallelism() * 2);
+        
+        // The header is dropped before compressing
+        if(!isHeader(generator) && getEncoding(format).equals("csv")) return new HeaderlessTarget(target);
+        
+        return target;
+    }
+    
+    private Runnable getTask(String name, String format, boolean leaf)
+    {
+        AbstractGenerator generator = (AbstractGenerator)Context.get(name);
+        File file = getFile(generator, name, format);
+        Target target = getTarget(generator, file, format);
+        
+        // Tables this shard does not write are only generated if they are 
+        // read by another generator
+        if(!isWritten(generator))
+        {
+            return () -> {
+                if(leaf) return;
+                
+                System.out.println("Generating " + name + "...");
+                
+                generator.generate();
+            };
+        }
+        
+        if(isPartitioned(generator))
+        {
+            return () -> {
+                System.out.println("Generating " + name + " partitioned by " + Context.getSetting("partitionby", null) + "...");
+                
+                generator.setOutput(new TeeOutput(leaf ? null : generator.getTempOutput(), getPartitionedOutput(generator, name, format), null));
+                generator.generate();
+            };
+        }
+        
+        // JBIN temp files are promoted to the output once every reader is done.
+        // Tables no other generator reads skip the blocks and range index so
+        // that their temp file can simply be moved.
+        if(format.equals("bson")) 
+        {
+            return () -> {
+                System.out.println("Generating " + name + "...");
+                
+                if(leaf) generator.setOutput(new JBINOutput());
+                
+                generator.generate();
+            };
+        }
+        
+        // Encode the output in the same pass that writes the temp file. Tables
+        // that no other generator reads skip the temp file entirely, and may
+        // be written as part files that are joined into the output file.
+        if(Context.getSetting("direct", true))
+        {
+            return () -> {
+                System.out.println("Generating " + name + "...");
+                
+                if(leaf && ConcatenatedOutput.isSupported(format)) generator.setOutput(new ConcatenatedOutput(getOutput(format, generator.getSchema(), name), format, file, isHeader(generator)));
+                else generator.setOutput(new TeeOutput(leaf ? null : generator.getTempOutput(), getOutput(format, generator.getSchema(), name), target));
+                
+                generator.generate();
+            };
+        }
+        
+        return () -> {
+            System.out.println("Generating " + name + "...");
+
+            getOutput(format, generator.getSchema(), name).write(target, generator);
+        };
+    }
+    
+    /**
+     * Writes the psql scripts that load the pgcopy files into PostgreSQL.
+     * The load.sql script creates the tables, loads them and builds the 
+     * indexes. Runs writing pgcopy cannot be sharded.
+     */
+    private void writeLoadScripts(String[] generators) throws IOException
+    {
+        PgLoadScript script = new PgLoadScript();
+        AbstractGenerator generator;
+        PgCopyOutput output;
+        
+        for(String name : generators)
+        {
+            generator = (AbstractGenerator)Context.get(name);
+            output = copies.get(name);
+            
+            if(!isWritten(generator) || output == null || output.getSchema() == null) continue;
+            
+            script.add(name, output.getSchema(), getFile(generator, name, "pgcopy").getName());
+        }
+        
+        Files.writeString(new File(directory, "schema.sql").toPath(), script.getSchema());
+        Files.writeString(new File(directory, "indexes.sql").toPath(), script.getIndexes());
+        Files.writeString(new File(directory, "load.sql").toPath(), script.getLoad(true));
+    }
+    
+    /**
+     * Moves a temp file into place as an output file. The temp file is 
+     * copied instead if it is to be kept, or if it cannot be moved.
+     */
+    static void promote(File temp, File file, boolean keep) throws IOException
+    {
+        if(!keep && move(temp, file)) return;
+        
+        copy(temp, file);
+        
+        if(!keep) temp.delete();
+    }
+    
+    /**
+     * Atomically moves a file, returning false if it cannot be moved. For
+     * example when the temp directory is on another file system.
+     */
+    static boolean move(File temp, File file)
+    {
+        try
+        {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            
+            return true;
+        }
+        catch(IOException e)
+        {
+            return false;
+        }
+    }
+    
+    /**
+     * Copies a file with FileChannel.transferTo(), replacing the contents of
+     * the destination.
+     */
+    static void copy(File temp, File file) throws IOException
+    {
+        long position = 0;
+        long size;
+        
+        try(FileChannel in = FileChannel.open(temp.toPath(), StandardOpenOption.READ);
+            FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            size = in.size();
+            
+            while(position < size) position += in.transferTo(position, size - position, out);
         }
     }
 }
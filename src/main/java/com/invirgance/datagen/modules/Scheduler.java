@@ -0,0 +1,150 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.modules;
+
+import com.invirgance.convirgance.ConvirganceException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a set of named tasks on a thread pool, starting each task as soon as
+ * every task it depends on has completed. Tasks with no path between them in
+ * the dependency graph run concurrently.
+ * 
+ * @author jbanes
+ */
+public class Scheduler
+{
+    private LinkedHashMap<String,Task> tasks = new LinkedHashMap<>();
+    
+    public void add(String name, String[] dependencies, Runnable runnable)
+    {
+        if(tasks.containsKey(name)) throw new IllegalArgumentException("Task " + name + " has already been scheduled");
+        
+        tasks.put(name, new Task(name, dependencies, runnable));
+    }
+    
+    private void order(Task task, HashMap<String,Boolean> visited, ArrayList<Task> ordered)
+    {
+        Task dependency;
+        
+        if(Boolean.TRUE.equals(visited.get(task.name))) return;
+        if(Boolean.FALSE.equals(visited.get(task.name))) throw new IllegalArgumentException("Circular dependency on " + task.name);
+        
+        visited.put(task.name, Boolean.FALSE); // In progress
+        
+        for(String name : task.dependencies)
+        {
+            dependency = tasks.get(name);
+            
+            if(dependency == null) throw new IllegalArgumentException(task.name + " depends on unknown task " + name);
+            
+            order(dependency, visited, ordered);
+        }
+        
+        visited.put(task.name, Boolean.TRUE);
+        ordered.add(task);
+    }
+    
+    /**
+     * Returns the tasks in an order where every task follows all of its
+     * dependencies. Ties are broken by the order the tasks were added.
+     */
+    public String[] getOrder()
+    {
+        HashMap<String,Boolean> visited = new HashMap<>();
+        ArrayList<Task> ordered = new ArrayList<>();
+        
+        for(Task task : tasks.values()) order(task, visited, ordered);
+        
+        return ordered.stream().map(task -> task.name).toArray(String[]::new);
+    }
+    
+    public void run(int threads)
+    {
+        HashMap<String,CompletableFuture<Void>> futures = new HashMap<>();
+        ThreadPoolExecutor executor;
+        CompletableFuture<Void>[] dependencies;
+        AtomicInteger counter = new AtomicInteger();
+        Task task;
+        
+        String[] order = getOrder();
+        
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "datagen-" + counter.incrementAndGet());
+            
+            thread.setDaemon(true);
+            
+            return thread;
+        });
+        
+        try
+        {
+            for(String name : order)
+            {
+                task = tasks.get(name);
+                dependencies = new CompletableFuture[task.dependencies.length];
+                
+                for(int i=0; i<dependencies.length; i++)
+                {
+                    dependencies[i] = futures.get(task.dependencies[i]);
+                }
+                
+                futures.put(name, CompletableFuture.allOf(dependencies).thenRunAsync(task.runnable, executor));
+            }
+            
+            CompletableFuture.allOf(futures.values().toArray(CompletableFuture[]::new)).join();
+        }
+        catch(CompletionException e)
+        {
+            if(e.getCause() instanceof RuntimeException) throw (RuntimeException)e.getCause();
+            if(e.getCause() instanceof Error) throw (Error)e.getCause();
+            
+            throw new ConvirganceException(e.getCause());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+    
+    private static class Task
+    {
+        private String name;
+        private String[] dependencies;
+        private Runnable runnable;
+
+        public Task(String name, String[] dependencies, Runnable runnable)
+        {
+            this.name = name;
+            this.dependencies = (dependencies == null) ? new String[0] : dependencies;
+            this.runnable = runnable;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.modules;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable, pre-parsed settings for a generation run. Values are parsed into
+ * their numeric and boolean forms once when the settings are created so that
+ * lookups from worker threads are plain field reads.
+ * 
+ * @author jbanes
+ */
+public final class Settings
+{
+    private final Map<String,Value> values;
+
+    public Settings()
+    {
+        this.values = Collections.emptyMap();
+    }
+    
+    public Settings(Map<String,String> settings)
+    {
+        HashMap<String,Value> values = new HashMap<>();
+        
+        for(Map.Entry<String,String> entry : settings.entrySet())
+        {
+            values.put(entry.getKey(), new Value(entry.getValue()));
+        }
+        
+        this.values = Collections.unmodifiableMap(values);
+    }
+    
+    private Settings(Map<String,Value> values, String key, String value)
+    {
+        HashMap<String,Value> copy = new HashMap<>(values);
+        
+        copy.put(key, new Value(value));
+        
+        this.values = Collections.unmodifiableMap(copy);
+    }
+    
+    /**
+     * Returns a copy of these settings with the given key set to a new value.
+     */
+    public Settings with(String key, String value)
+    {
+        return new Settings(values, key, value);
+    }
+    
+    public boolean contains(String key)
+    {
+        return values.containsKey(key);
+    }
+    
+    public String get(String key)
+    {
+        Value value = values.get(key);
+        
+        if(value == null) return null;
+        
+        return value.text;
+    }
+    
+    public String get(String key, String defaultValue)
+    {
+        Value value = values.get(key);
+        
+        if(value == null) return defaultValue;
+        
+        return value.text;
+    }
+    
+    public int get(String key, int defaultValue)
+    {
+        Value value = values.get(key);
+        
+        if(value == null) return defaultValue;
+        if(value.number == null || value.number != value.number.intValue()) throw new NumberFormatException("For input string: \"" + value.text + "\"");
+        
+        return value.number.intValue();
+    }
+    
+    public long get(String key, long defaultValue)
+    {
+        Value value = values.get(key);
+        
+        if(value == null) return defaultValue;
+        if(value.number == null) throw new NumberFormatException("For input string: \"" + value.text + "\"");
+        
+        return value.number;
+    }
+    
+    public boolean get(String key, boolean defaultValue)
+    {
+        Value value = values.get(key);
+        
+        if(value == null) return defaultValue;
+        
+        return value.flag;
+    }
+    
+    private static class Value
+    {
+        private final String text;
+        private final Long number;
+        private final boolean flag;
+
+        public Value(String text)
+        {
+            this.text = text;
+            this.number = parse(text);
+            this.flag = Boolean.parseBoolean(text);
+        }
+        
+        private static Long parse(String text)
+        {
+            if(text == null) return null;
+            
+            try
+            {
+                if(text.startsWith("0x")) return Long.parseLong(text.substring(2), 16);
+
+                return Long.parseLong(text);
+            }
+            catch(NumberFormatException e)
+            {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.modules;
+
+import com.invirgance.convirgance.ConvirganceException;
+
+/**
+ * One of several processes sharing a run. Shards are given as i/N, where i
+ * counts from 0. Every shard generates the same dimension tables, but only
+ * shard 0 writes them out. The sales table is split into N contiguous runs
+ * of stores, written to a file per shard, so that concatenating the shard
+ * files in order gives the output of a single run with the same seed. Only
+ * CSV files can be concatenated, so other formats can only be sharded into
+ * a partitioned layout. Every shard must be given the same startdate 
+ * setting so that they share a calendar.
+ * 
+ * @author jbanes
+ */
+public class Shard
+{
+    private final int index;
+    private final int count;
+
+    public Shard(int index, int count)
+    {
+        if(count < 1) throw new ConvirganceException("Shard count must be at least 1: " + count);
+        if(index < 0 || index >= count) throw new ConvirganceException("Shard must be between 0 and " + (count - 1) + ": " + index);
+        
+        this.index = index;
+        this.count = count;
+    }
+    
+    public static Shard parse(String shard)
+    {
+        String[] parts = shard.split("/");
+        
+        if(parts.length != 2) throw new ConvirganceException("Shards must be given as i/N: " + shard);
+        
+        try
+        {
+            return new Shard(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()));
+        }
+        catch(NumberFormatException e)
+        {
+            throw new ConvirganceException("Shards must be given as i/N: " + shard, e);
+        }
+    }
+    
+    /**
+     * The shard given by the shard setting, or null if the run is not 
+     * sharded.
+     */
+    public static Shard getCurrent()
+    {
+        String shard = Context.getSetting("shard", null);
+        
+        return (shard == null) ? null : parse(shard);
+    }
+
+    public int getIndex()
+    {
+        return index;
+    }
+
+    public int getCount()
+    {
+        return count;
+    }
+    
+    /**
+     * True for the shard that writes the tables every shard shares.
+     */
+    public boolean isPrimary()
+    {
+        return (index == 0);
+    }
+    
+    /**
+     * The first of the items belonging to this shard, when the given number
+     * of items is split as evenly as possible.
+     */
+    public long getStart(long total)
+    {
+        return total * index / count;
+    }
+    
+    /**
+     * The end, exclusive, of the items belonging to this shard.
+     */
+    public long getEnd(long total)
+    {
+        return total * (index + 1) / count;
+    }
+    
+    /**
+     * Appended to the name of sharded tables, e.g. sales-00001-of-00004. The
+     * suffixes sort in shard order.
+     */
+    public String getSuffix()
+    {
+        return String.format("-%05d-of-%05d", index, count);
+    }
+}
@@ -21,16 +21,27 @@ SOFTWARE.
  */
 package com.invirgance.datagen.retail;
 
+import com.invirgance.convirgance.ConvirganceException;
 import com.invirgance.convirgance.input.JBINInput;
 import com.invirgance.convirgance.json.JSONObject;
 import com.invirgance.convirgance.output.JBINOutput;
 import com.invirgance.convirgance.output.Output;
 import com.invirgance.convirgance.source.FileSource;
+import com.invirgance.convirgance.transform.filter.EqualsFilter;
 import com.invirgance.datagen.modules.Context;
 import com.invirgance.datagen.modules.RetailGenerator;
+import com.invirgance.datagen.modules.Shard;
+import com.invirgance.datagen.util.IndexedOutput;
+import com.invirgance.datagen.util.MappedTable;
+import com.invirgance.datagen.util.Randoms;
+import com.invirgance.datagen.util.RangeIndex;
+import com.invirgance.datagen.util.Schema;
 import java.io.File;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
 import java.util.Iterator;
-import java.util.Random;
+import java.util.random.RandomGenerator;
 
 /**
  *
@@ -38,8 +49,13 @@ import java.util.Random;
  */
 public abstract class AbstractGenerator implements Iterable<JSONObject>
 {
+    protected static final long DAY = 1000 * 60 * 60 * 24;
+    
     protected File file;
-    protected Random random = new Random(RetailGenerator.DEFAULT_SEED);
+    protected RandomGenerator random = Randoms.create(RetailGenerator.DEFAULT_SEED);
+    protected Output output;
+    
+    private volatile MappedTable table;
 
     public File getFile()
     {
@@ -53,31 +69,234 @@ public abstract class AbstractGenerator implements Iterable<JSONObject>
         if(Context.getSetting("deletetemp", true)) 
         {
             file.deleteOnExit(); // Important to try and keep temp files clean
+            getIndexFile().deleteOnExit();
         }
     }
+    
+    /**
+     * The sidecar file holding the range index of the temp file, if the 
+     * generator has a cluster key.
+     */
+    public File getIndexFile()
+    {
+        return new File(file.getPath() + ".idx");
+    }
 
-    public Random getRandom()
+    public RandomGenerator getRandom()
     {
         return random;
     }
 
     public void setRandom(long seed)
     {
-        this.random = new Random(seed);
+        this.random = Randoms.create(seed);
     }
     
+    /**
+     * The output used by generate() to write the table. Defaults to the temp
+     * file output so that the table can be read back by iterator().
+     */
     public Output getOutput()
     {
-        return new JBINOutput();
+        if(output != null) return output;
+        
+        return getTempOutput();
+    }
+    
+    /**
+     * The output used for the temp file. This is JBIN, written in blocks of
+     * rows with a range index so that the table can be memory mapped and 
+     * read by row or by cluster key. The number of rows in a block is set by
+     * the blocksize setting. With the compresstemp setting each block is LZ4
+     * compressed, trading a little CPU for less temp file I/O.
+     */
+    public Output getTempOutput()
+    {
+        return new IndexedOutput(new JBINOutput(), getClusterKey(), getIndexFile(), Context.getSetting("blocksize", 4096), Context.getSetting("compresstemp", false));
+    }
+
+    public void setOutput(Output output)
+    {
+        this.output = output;
+    }
+    
+    /**
+     * The names of the tables in the Context that this generator reads. 
+     * These tables must be generated before this generator is run.
+     */
+    public String[] getDependencies()
+    {
+        return new String[0];
+    }
+    
+    /**
+     * The parent key the table is written in order of, or null if the table
+     * is not clustered. The range index of a clustered table allows the 
+     * records for one parent to be read without a full scan.
+     */
+    public String getClusterKey()
+    {
+        return null;
+    }
+    
+    /**
+     * True if the table is split between the shards of a sharded run, rather
+     * than generated in full by every shard.
+     */
+    public boolean isSharded()
+    {
+        return false;
+    }
+    
+    /**
+     * The number of distinct values of the given column, or zero if it is 
+     * not known. Used to size the number of files held open when the table
+     * is partitioned by the column.
+     */
+    public long getCardinality(String column)
+    {
+        return 0;
+    }
+    
+    /**
+     * The columns of the table and their types, or null if they are not 
+     * known up front. Tables with a schema can be written by typed outputs
+     * that skip the generic encoding of records.
+     */
+    public Schema getSchema()
+    {
+        return null;
+    }
+    
+    /**
+     * The first day of a calendar of the given number of days. Set with the
+     * startdate setting as yyyy-MM-dd, otherwise the calendar ends today.
+     * Sharded runs must set the start date, since each shard would otherwise
+     * take today from its own clock and timezone.
+     */
+    protected static Date getStartDate(int days)
+    {
+        String date = Context.getSetting("startdate", null);
+        
+        if(date == null && Shard.getCurrent() != null) throw new ConvirganceException("Sharded runs must set the startdate setting so that every shard has the same calendar");
+        
+        if(date == null) return new Date(new Date().getTime() - (DAY * days));
+        
+        return parseDate(date);
+    }
+    
+    /**
+     * Parses a yyyy-MM-dd date. Dates are taken at midday so that adding 
+     * whole days never lands on the wrong date across daylight saving 
+     * changes.
+     */
+    protected static Date parseDate(String date)
+    {
+        try
+        {
+            return new SimpleDateFormat("yyyy-MM-dd HH:mm").parse(date + " 12:00");
+        }
+        catch(ParseException e)
+        {
+            throw new ConvirganceException("Invalid date " + date + ". Dates must be in yyyy-MM-dd format.", e);
+        }
     }
     
     public abstract void generate();
     
+    /**
+     * Returns the memory mapped temp file, or null if the table was not 
+     * written with a range index. The file is mapped once and shared by all
+     * readers.
+     */
+    public MappedTable getTable()
+    {
+        MappedTable table = this.table;
+        
+        if(table != null) return table;
+        
+        synchronized(this)
+        {
+            if(!file.exists()) generate();
+            
+            if(this.table == null && getIndexFile().exists()) 
+            {
+                this.table = new MappedTable(file, RangeIndex.read(getIndexFile()));
+            }
+            
+            return this.table;
+        }
+    }
+    
+    /**
+     * Returns the range index of the temp file, or null if the table was not
+     * written with one.
+     */
+    public RangeIndex getIndex()
+    {
+        MappedTable table = getTable();
+        
+        return (table == null) ? null : table.getIndex();
+    }
+    
+    /**
+     * Returns the record at the given row of the table. Only the block
+     * holding the row is decoded.
+     */
+    public JSONObject get(long row)
+    {
+        MappedTable table = getTable();
+        Iterator<JSONObject> iterator;
+        
+        if(table != null) return table.get(row);
+        
+        iterator = iterator();
+        
+        for(long i=0; i<row && iterator.hasNext(); i++) iterator.next();
+        
+        if(row < 0 || !iterator.hasNext()) throw new IndexOutOfBoundsException("Row " + row);
+        
+        return iterator.next();
+    }
+    
+    /**
+     * Returns the records whose cluster key has the given value. Only the 
+     * matching segments of the temp file are read.
+     */
+    public Iterable<JSONObject> getRange(int value)
+    {
+        MappedTable table = getTable();
+        
+        if(table == null || table.getIndex().getKey() == null) return new EqualsFilter(getClusterKey(), value).transform(this);
+        
+        return table.getRange(value);
+    }
+    
+    /**
+     * Returns the records of the table whose key has the given value, using
+     * the range index of the table if it has one on that key. Otherwise the
+     * table is scanned.
+     */
+    public static Iterable<JSONObject> getRange(Iterable<JSONObject> table, String key, int value)
+    {
+        AbstractGenerator generator;
+        
+        if(table instanceof AbstractGenerator)
+        {
+            generator = (AbstractGenerator)table;
+            
+            if(key.equals(generator.getClusterKey())) return generator.getRange(value);
+        }
+        
+        return new EqualsFilter(key, value).transform(table);
+    }
 
     @Override
     public Iterator<JSONObject> iterator()
     {
-        if(!file.exists()) generate();
+        MappedTable table = getTable();
+        
+        if(table != null) return table.iterator();
         
         return new JBINInput().read(new FileSource(file)).iterator();
     }
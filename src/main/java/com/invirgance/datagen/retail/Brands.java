@@ -30,7 +30,7 @@ import com.invirgance.convirgance.source.ClasspathSource;
 import com.invirgance.convirgance.source.Source;
 import com.invirgance.convirgance.target.FileTarget;
 import com.invirgance.datagen.util.CachedIterable;
-import java.util.HashMap;
+import com.invirgance.datagen.util.UniqueCombinations;
 
 /**
  *
@@ -87,12 +87,27 @@ public class Brands extends AbstractGenerator
         return adjective + noun;
     }
 
+    /**
+     * The number of distinct brand names that can be generated.
+     */
+    public long getCapacity()
+    {
+        return UniqueCombinations.getCapacity(adjectives.length, nouns.length);
+    }
+
     @Override
     public void generate()
     {
-        HashMap<String,Boolean> lookup = new HashMap<>();
+        UniqueCombinations names;
         JSONObject record;
-        String name;
+        long name;
+        
+        if(count > getCapacity()) 
+        {
+            throw new ConvirganceException("Cannot generate " + count + " unique brands from " + adjectives.length + " adjectives and " + nouns.length + " nouns. The maximum is " + getCapacity() + ".");
+        }
+        
+        names = new UniqueCombinations(adjectives.length, nouns.length, random.nextLong());
         
         try(OutputCursor cursor = getOutput().write(new FileTarget(file)))
         {
@@ -100,19 +115,12 @@ public class Brands extends AbstractGenerator
 
             for(int i=0; i<count; i++)
             {
-                name = generateName();
+                name = names.next();
                 record = new JSONObject();
                 
-                if(lookup.containsKey(name))
-                {
-                    i--;
-                    continue;
-                }
-                
                 record.put("id", i+1);
-                record.put("Name", name);
+                record.put("Name", adjectives[names.getLeft(name)] + nouns[names.getRight(name)]);
 
-                lookup.put(name, Boolean.TRUE);
                 cursor.write(record);
             }
         }
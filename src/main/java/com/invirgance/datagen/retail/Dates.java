@@ -36,7 +36,6 @@ import java.util.Date;
  */
 public class Dates extends AbstractGenerator
 {
-    private static final long DAY = 1000 * 60 * 60 * 24;
     private static final String[] DAYS_OF_WEEK = {
         "Sunday", "Monday", "Tuesday", "Wednesday", "Thursday", "Friday", "Saturday"
     };
@@ -55,7 +54,7 @@ public class Dates extends AbstractGenerator
     @Override
     public void generate()
     {
-        Date base = new Date(new Date().getTime() - (DAY * days));
+        Date base = getStartDate(days);
         Date date;
         
         JSONObject record;
@@ -30,11 +30,13 @@ import com.invirgance.convirgance.source.Source;
 import com.invirgance.convirgance.target.FileTarget;
 import com.invirgance.convirgance.transform.filter.EqualsFilter;
 import com.invirgance.datagen.modules.Context;
-import com.invirgance.datagen.util.CachedIterable;
-import com.invirgance.datagen.util.SegmentationTransformer;
+import com.invirgance.datagen.util.Randoms;
+import com.invirgance.datagen.util.Schema;
+import com.invirgance.datagen.util.UniqueCombinations;
 import com.invirgance.datagen.util.WeightedRandom;
-import java.util.HashMap;
-import java.util.Random;
+import com.invirgance.datagen.util.WeightedSampler;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.random.RandomGenerator;
 
 /**
  *
@@ -42,66 +44,84 @@ import java.util.Random;
  */
 public class Employees extends AbstractGenerator
 {
+    // Name lists are read once and shared by every generator
+    private static final ConcurrentHashMap<String,WeightedSampler<String>> names = new ConcurrentHashMap<>();
     
-    public static CachedIterable getFirstnames(String sex)
+    private static WeightedSampler<String> load(String resource, String sex)
     {
-        Source source = new ClasspathSource("/retail/firstnames.txt");
+        Source source = new ClasspathSource(resource);
         Iterable<JSONObject> iterable = new DelimitedInput('|').read(source);
         
         if(sex != null) iterable = new EqualsFilter("Sex", sex).transform(iterable);
         
-        iterable = new SegmentationTransformer("Number").transform(iterable);
-        
-        return new CachedIterable(iterable);
+        return WeightedSampler.load(iterable, "Name", "Number");
     }
     
-    public static CachedIterable getLastnames()
+    public static WeightedSampler<String> getFirstnames(String sex)
     {
-        Source source = new ClasspathSource("/retail/lastnames.txt");
-        Iterable<JSONObject> iterable = new DelimitedInput('|').read(source);
-        
-        iterable = new SegmentationTransformer("Number").transform(iterable);
-        
-        return new CachedIterable(iterable);
+        return names.computeIfAbsent("firstnames:" + sex, key -> load("/retail/firstnames.txt", sex));
     }
     
-    private String getName(CachedIterable cache, int value)
+    public static WeightedSampler<String> getLastnames()
     {
-        for(JSONObject record : cache)
-        {
-            if(value >= record.getInt("Start") && value < record.getInt("End"))
-            {
-                return record.getString("Name");
-            }
-        }
-        
-        throw new IllegalArgumentException(value + " is outside the bounds of 0 - " + cache.last().getInt("End"));
+        return names.computeIfAbsent("lastnames", key -> load("/retail/lastnames.txt", null));
     }
-
+    
+    @Override
+    public String[] getDependencies()
+    {
+        return new String[]{ "stores" };
+    }
+    
+    @Override
+    public String getClusterKey()
+    {
+        return "StoreId";
+    }
+    
+    @Override
+    public Schema getSchema()
+    {
+        return new Schema()
+                .add("id", Schema.INT)
+                .add("StoreId", Schema.INT)
+                .add("Firstname", Schema.STRING)
+                .add("Lastname", Schema.STRING)
+                .add("Sex", Schema.STRING);
+    }
+    
     @Override
     public void generate()
     {
-        CachedIterable males = getFirstnames("Male");
-        CachedIterable females = getFirstnames("Female");
-        CachedIterable lastnames = getLastnames();
+        WeightedSampler<String> males = getFirstnames("Male");
+        WeightedSampler<String> females = getFirstnames("Female");
+        WeightedSampler<String> lastnames = getLastnames();
         
         Iterable<JSONObject> stores = Context.get("stores");
-        CachedIterable name;
+        WeightedSampler<String> name;
         JSONObject record;
         
-        Random male = new WeightedRandom(getRandom().nextLong(), 0.489); // Population is ~51.1% female
-        Random segmentation = new Random(getRandom().nextLong());
-        Random duplicate = new WeightedRandom(getRandom().nextLong(), 0.05); // Allow 5% of duplicate names
+        RandomGenerator male = new WeightedRandom(getRandom().nextLong(), 0.489); // Population is ~51.1% female
+        RandomGenerator segmentation = Randoms.create(getRandom().nextLong());
+        boolean unique = Context.getSetting("uniquenames", false);
         
         int employees;
         int franchise = 0;
         int index = 1;
         boolean sex;
         
-        HashMap<String,Boolean> lookup = new HashMap<>();
+        UniqueCombinations maleNames = null;
+        UniqueCombinations femaleNames = null;
+        UniqueCombinations combinations;
+        long combination;
         String first;
         String last;
         
+        if(unique)
+        {
+            System.out.println("Unique employee names per franchise: " + UniqueCombinations.getCapacity(males.size(), lastnames.size()) + " male / " + UniqueCombinations.getCapacity(females.size(), lastnames.size()) + " female");
+        }
+        
         try(OutputCursor cursor = getOutput().write(new FileTarget(file)))
         {
             cursor.write(new JSONObject("{\"id\":-1,\"StoreId\":-1,\"Firstname\":\"Unknown\",\"Lastname\":\"Unknown\",\"Sex\":\"Unknown\"}"));
@@ -112,10 +132,15 @@ public class Employees extends AbstractGenerator
                 
                 employees = store.getInt("Employees");
                 
-                if(franchise != store.getInt("FranchiseId"))
+                if(franchise != store.getInt("FranchiseId") || (unique && maleNames == null))
                 {
-                    lookup = new HashMap<>();
                     franchise = store.getInt("FranchiseId");
+                    
+                    if(unique)
+                    {
+                        maleNames = new UniqueCombinations(males.size(), lastnames.size(), segmentation.nextLong());
+                        femaleNames = new UniqueCombinations(females.size(), lastnames.size(), segmentation.nextLong());
+                    }
                 }
 
                 for(int i=0; i<employees; i++)
@@ -123,22 +148,27 @@ public class Employees extends AbstractGenerator
                     record = new JSONObject();
                     sex = male.nextBoolean();
                     name = sex ? males : females;
-                    first = getName(name, segmentation.nextInt(name.last().getInt("End")));
-                    last = getName(lastnames, segmentation.nextInt(lastnames.last().getInt("End")));
                     
-// TODO: Need more names for this to work properly
-//                    if(lookup.containsKey(first + " " + last) && !duplicate.nextBoolean())
-//                    {
-//                        while(lookup.containsKey(first + " " + last))
-//                        {
-//                            sex = male.nextBoolean();
-//                            name = sex ? males : females;
-//                            first = getName(name, segmentation.nextInt(name.last().getInt("End")));
-//                            last = getName(lastnames, segmentation.nextInt(lastnames.last().getInt("End")));
-//                        }
-//                    }
-
-                    lookup.put(first + " " + last, Boolean.TRUE);
+                    // Unique names are drawn evenly from every combination of
+                    // first and last name, rather than by popularity
+                    if(unique)
+                    {
+                        combinations = sex ? maleNames : femaleNames;
+                        
+                        if(!combinations.hasNext()) 
+                        {
+                            throw new ConvirganceException("Franchise " + franchise + " has more " + (sex ? "male" : "female") + " employees than the " + combinations.getCapacity() + " unique names available");
+                        }
+                        
+                        combination = combinations.next();
+                        first = name.getValue(combinations.getLeft(combination));
+                        last = lastnames.getValue(combinations.getRight(combination));
+                    }
+                    else
+                    {
+                        first = name.next(segmentation);
+                        last = lastnames.next(segmentation);
+                    }
                     
                     record.put("id", index++);
                     record.put("StoreId", store.get("id"));
@@ -34,7 +34,6 @@ import com.invirgance.datagen.modules.Context;
 import com.invirgance.datagen.util.CachedIterable;
 import java.io.File;
 import java.util.ArrayList;
-import java.util.Random;
 
 /**
  *
@@ -102,6 +101,12 @@ public class Products extends AbstractGenerator
         return (prefix ? prefixes[random.nextInt(prefixes.length)] + " " : "") + names[random.nextInt(names.length)];
     }
     
+    @Override
+    public String[] getDependencies()
+    {
+        return new String[]{ "categories", "brands" };
+    }
+    
     @Override
     public void generate()
     {
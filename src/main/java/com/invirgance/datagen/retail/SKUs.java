@@ -30,7 +30,7 @@ import com.invirgance.convirgance.target.FileTarget;
 import com.invirgance.datagen.modules.Context;
 import com.invirgance.datagen.util.WeightedRandom;
 import java.util.Iterator;
-import java.util.Random;
+import java.util.random.RandomGenerator;
 
 /**
  *
@@ -38,6 +38,18 @@ import java.util.Random;
  */
 public class SKUs extends AbstractGenerator
 {
+    @Override
+    public String[] getDependencies()
+    {
+        return new String[]{ "products" };
+    }
+    
+    @Override
+    public String getClusterKey()
+    {
+        return "ProductId";
+    }
+    
     @Override
     public void generate()
     {
@@ -83,7 +95,7 @@ public class SKUs extends AbstractGenerator
         private JSONArray<JSONObject> selected;
         private WeightedRandom random;
 
-        public Colors(Random random)
+        public Colors(RandomGenerator random)
         {
             JSONObject record;
             
@@ -139,7 +151,7 @@ public class SKUs extends AbstractGenerator
         
         private JSONArray<JSONObject> selected;
 
-        public Sizes(Random random)
+        public Sizes(RandomGenerator random)
         {
             int count = random.nextInt(2, SIZES.length);
             JSONObject record;
@@ -184,7 +196,7 @@ public class SKUs extends AbstractGenerator
         private Colors colors;
         private Sizes sizes;
         
-        public Attributes(JSONObject product, Random random)
+        public Attributes(JSONObject product, RandomGenerator random)
         {
             size = random.nextBoolean();
             color = random.nextBoolean();
@@ -22,21 +22,41 @@ SOFTWARE.
 package com.invirgance.datagen.retail;
 
 import com.invirgance.convirgance.ConvirganceException;
+import com.invirgance.convirgance.input.JBINInput;
 import com.invirgance.convirgance.json.JSONArray;
 import com.invirgance.convirgance.json.JSONObject;
+import com.invirgance.convirgance.output.JBINOutput;
+import com.invirgance.convirgance.output.Output;
 import com.invirgance.convirgance.output.OutputCursor;
+import com.invirgance.convirgance.source.FileSource;
 import com.invirgance.convirgance.target.FileTarget;
 import com.invirgance.convirgance.transform.filter.EqualsFilter;
-import com.invirgance.convirgance.transform.filter.Filter;
 import com.invirgance.convirgance.transform.filter.NotFilter;
 import com.invirgance.datagen.modules.Context;
+import com.invirgance.datagen.modules.Shard;
 import com.invirgance.datagen.util.CachedIterable;
+import com.invirgance.datagen.util.ColumnCache;
+import com.invirgance.datagen.util.ConcatenatedOutput;
+import com.invirgance.datagen.util.CounterRandom;
+import com.invirgance.datagen.util.Randoms;
+import com.invirgance.datagen.util.RowCursor;
+import com.invirgance.datagen.util.RowWriter;
+import com.invirgance.datagen.util.Schema;
+import com.invirgance.datagen.util.Seeds;
 import com.invirgance.datagen.util.WeightedRandom;
+import java.io.File;
+import java.io.IOException;
 import java.text.NumberFormat;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Iterator;
-import java.util.Random;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.random.RandomGenerator;
 
 /**
  *
@@ -44,6 +64,25 @@ import java.util.Random;
  */
 public class Sales extends AbstractGenerator
 {
+    // The columns of a sale line, in the order they are written
+    private static final Schema SCHEMA = new Schema()
+            .add("id", Schema.LONG)
+            .add("FranchiseId", Schema.INT)
+            .add("StoreId", Schema.INT)
+            .add("BrandId", Schema.INT)
+            .add("CategoryId", Schema.INT)
+            .add("ProductId", Schema.INT)
+            .add("SkuId", Schema.INT)
+            .add("DateId", Schema.INT)
+            .add("TimeId", Schema.INT)
+            .add("ZipCodeId", Schema.INT)
+            .add("CheckoutEmployeeId", Schema.INT)
+            .add("Receipt", Schema.STRING)
+            .add("Quantity", Schema.INT)
+            .add("UnitPrice", Schema.DOUBLE)
+            .add("DiscountPrice", Schema.DOUBLE)
+            .add("TotalPrice", Schema.DOUBLE);
+    
     private int days;
     private CachedIterable employees;
 
@@ -84,7 +123,7 @@ public class Sales extends AbstractGenerator
         return total;
     }
 
-    private int[] generateCustomers(int count)
+    private int[] generateCustomers(int count, RandomGenerator random)
     {
         int[] customers = new int[24];
         int total;
@@ -119,184 +158,570 @@ public class Sales extends AbstractGenerator
         return customers;
     }
     
+    @Override
+    public String[] getDependencies()
+    {
+        return new String[]{ "franchises", "stores", "employees", "products", "skus" };
+    }
+    
+    @Override
+    public boolean isSharded()
+    {
+        return true;
+    }
+    
+    @Override
+    public Schema getSchema()
+    {
+        return SCHEMA;
+    }
+    
+    // Every day of the calendar has its own DateId
+    @Override
+    public long getCardinality(String column)
+    {
+        if(column.equals("DateId")) return days;
+        
+        return 0;
+    }
+    
+    /**
+     * The number of sale ids reserved for each store. Store n is assigned 
+     * the ids from n * range + 1 to n * range + range - 1. Defaults to a 
+     * power of ten that comfortably covers the configured number of days.
+     */
+    public long getStoreIdRange()
+    {
+        long range = 10;
+        
+        while(range < days * 20000L) range *= 10;
+        
+        return Context.getSetting("storeidrange", range);
+    }
+    
+    private long generateStore(OutputCursor cursor, JSONObject store, Selection selection, CachedIterable employees, Date base, RandomGenerator random, long index, long limit)
+    {
+        int[] customers = generateCustomers(selection.products.length / 32, random);
+        String receiptPrefix = Integer.toString(random.nextInt(1000, 10000));
+        Scheduling scheduling = new Scheduling(days, store.getInt("id"), employees, base, random);
+        int zipCodeId = ZipCodes.getZipCodeId(store.getString("CountryCode"), store.getInt("ZipCode"));
+        Sale sale;
+        
+        for(JSONObject customer : new Customers(customers, this.days, receiptPrefix, scheduling.getSchedule(), base))
+        {
+            sale = new Sale(customer, store, zipCodeId, selection, random);
+            
+            while(sale.hasNext())
+            {
+                if(index > limit) throw new ConvirganceException("Store " + store.get("id") + " generated more sales than its id range allows. Increase the storeidrange setting.");
+                
+                sale.next();
+                sale.write(cursor, index++);
+            }
+        }
+        
+        return index;
+    }
+    
+    /**
+     * Generates the sales of a store in counter mode. Every random decision
+     * made after the store is set up is derived from the key of the store
+     * and the day, minute, customer and line it belongs to, and sale ids are
+     * numbered from a fixed block for each day. Any range of days therefore
+     * comes out the same as it does in a full run. Returns the number of 
+     * sales written.
+     */
+    private long generateStore(OutputCursor cursor, JSONObject store, Selection selection, CachedIterable employees, Date base, long key, long start, long ids, Slice slice)
+    {
+        RandomGenerator random = Randoms.create(key);
+        int[] customers = generateCustomers(selection.products.length / 32, random);
+        String receiptPrefix = Integer.toString(random.nextInt(1000, 10000));
+        Scheduling scheduling = new Scheduling(days, store.getInt("id"), employees, base, random);
+        int zipCodeId = ZipCodes.getZipCodeId(store.getString("CountryCode"), store.getInt("ZipCode"));
+        Customers schedule = new Customers(customers, slice.first, slice.last, receiptPrefix, scheduling.getSchedule(slice.first, slice.last, key), base, key);
+        long perDay = ids / days;
+        Sale sale;
+        long count = 0;
+        long index = 0;
+        int day = -1;
+        
+        for(JSONObject customer : schedule)
+        {
+            if(schedule.getDay() != day)
+            {
+                day = schedule.getDay();
+                index = start + (day * perDay);
+            }
+            
+            sale = new Sale(customer, store, zipCodeId, selection, schedule.getSaleKey());
+            
+            while(sale.hasNext())
+            {
+                if(index >= start + ((day + 1) * perDay)) throw new ConvirganceException("Store " + store.get("id") + " generated more sales on day " + day + " than its id range allows. Increase the storeidrange setting.");
+                
+                sale.next();
+                sale.write(cursor, index++);
+                count++;
+            }
+        }
+        
+        return count;
+    }
+    
     @Override
     public void generate()
     {
         Iterable<JSONObject> franchises = Context.get("franchises");
         Iterable<JSONObject> stores = Context.get("stores");
         CachedIterable employees = getEmployees();
-        CachedIterable products = new CachedIterable(Context.get("products"));
-        Iterable<JSONObject> skus = Context.get("skus");
-        
-        CachedIterable selectedProducts;
-        CachedIterable selectedSkus;
+        ColumnCache products = new ColumnCache(Context.get("products"), "id", "Price", "BrandId", "CategoryId");
+        ColumnCache skus = new ColumnCache(Context.get("skus"), "id", "ProductId");
         
-        String receiptPrefix;
-        int[] customers;
-        int index = 1;
-        int count;
-        
-        String storeText = "";
-        long lastUpdate = 0;
-        int storeCount;
-        
-        Scheduling scheduling;
+        // Every store shares the same calendar, even if the run crosses midnight
+        Date base = getStartDate(days);
+        Slice slice = new Slice(base);
         
         System.out.println("Generating " + days + " days of data...");
         
         try(OutputCursor cursor = getOutput().write(new FileTarget(file)))
         {            
+            generatePartitioned(cursor, franchises, stores, employees, products, skus, base, slice);
+        }
+        catch(ConvirganceException e)
+        {
+            throw e;
+        }
+        catch(Exception e)
+        {
+            throw new ConvirganceException(e);
+        }
+    }
+    
+    /**
+     * Generates each store as an independent task on a work stealing pool. 
+     * Franchises and stores draw from their own random streams derived from
+     * the seed and their ids, and each store takes its sale ids from a fixed 
+     * range. The output is therefore the same for any number of threads, 
+     * and a serial run is simply a run on one thread. Stores are generated
+     * into part files which are appended to the output in store order. Where the output allows, the part files are encoded in
+     * the output format by the worker threads and copied to the output file
+     * without being decoded.
+     */
+    private void generatePartitioned(OutputCursor cursor, Iterable<JSONObject> franchises, Iterable<JSONObject> stores, CachedIterable employees, ColumnCache products, ColumnCache skus, Date base, Slice slice)
+    {
+        long seed = random.nextLong();
+        long range = getStoreIdRange();
+        int threads = slice.isPartitioned() ? Math.max(1, Context.getSetting("threads", Runtime.getRuntime().availableProcessors())) : 1;
+        
+        File directory = new File(file.getPath() + ".parts");
+        ArrayDeque<Partition> pending = new ArrayDeque<>();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        
+        Selection selection;
+        Partition partition;
+        int franchiseId;
+        long ordinal = 0;
+        
+        // Output that can take part files as they are always uses them, so
+        // that the bytes written do not depend on the number of threads
+        boolean parts = (threads > 1 || cursor instanceof ConcatenatedOutput.Cursor);
+        
+        if(parts) directory.mkdirs();
+        
+        slice.setStores(franchises, stores);
+        
+        try
+        {
             for(JSONObject franchise : franchises)
             {
-                if(franchise.getInt("id") < 0) continue;
+                franchiseId = franchise.getInt("id");
                 
-                selectedProducts = products.getFiltered(new SelectionFilter(franchise, random));
-                selectedSkus = new CachedIterable(new InFilter("ProductId", selectedProducts.toStringArray("id")).transform(skus));
-                count = index;
-                storeCount = 0;
-                
-                System.out.print(franchise.getString("Name") + ": " + NumberFormat.getInstance().format(selectedProducts.size()) + " products / " + NumberFormat.getInstance().format(selectedSkus.size()) + " skus / ");
-                
-                for(JSONObject store : new EqualsFilter("FranchiseId", franchise.get("id")).transform(stores))
+                if(franchiseId < 0) continue;
+
+                selection = null;
+
+                for(JSONObject store : getRange(stores, "FranchiseId", franchise.getInt("id")))
                 {
-                    if(lastUpdate+1000 < System.currentTimeMillis()) 
-                    {
-                        lastUpdate = System.currentTimeMillis();
-                        storeText = NumberFormat.getInstance().format(storeCount) + " stores / " + NumberFormat.getInstance().format(index - count) + " sales";
-                        System.out.print(storeText);
-                    }
+                    if(!slice.contains(store.getInt("id"), ordinal++)) continue;
                     
-                    customers = generateCustomers(selectedProducts.size() / 32);
-                    receiptPrefix = Integer.toString(random.nextInt(1000, 10000));
-                    scheduling = new Scheduling(days, store.getInt("id"), employees);
-
-                    for(JSONObject customer : new Customers(customers, this.days, receiptPrefix, scheduling.getSchedule()))
+                    // Only worked out for franchises with stores in the slice
+                    if(selection == null) selection = new Selection(franchise, products, skus, Randoms.create(Seeds.derive(seed, franchiseId)));
+                    
+                    partition = new Partition(selection, store, seed, range, slice);
+                    
+                    if(parts) 
                     {
-                        for(JSONObject sale : new Sale(customer, store, selectedProducts, selectedSkus))
-                        {
-                            sale.put("id", index++);
-
-                            cursor.write(sale);
-                        }
+                        partition.start(pool, employees, base, new File(directory, store.getInt("id") + ".tmp"), getPartOutput(cursor));
                     }
-                    
-                    if(lastUpdate+1000 < System.currentTimeMillis()) 
+                    else 
                     {
-                        for(int i=0; i<storeText.length(); i++) System.out.print("\b");
+                        partition.generate(cursor, employees, base);
                     }
                     
-                    storeCount++;
-                }
-                
-                if(lastUpdate+1000 >= System.currentTimeMillis()) 
-                {
-                    for(int i=0; i<storeText.length(); i++) System.out.print("\b");
+                    pending.add(partition);
+                    
+                    // Bound the number of part files waiting on disk
+                    while(pending.size() > threads * 4) pending.remove().commit(cursor);
                 }
                 
-                System.out.print(NumberFormat.getInstance().format(franchise.getInt("Stores")) + " stores / ");
-                System.out.println(NumberFormat.getInstance().format(index - count) + " sales");
+                if(selection != null) pending.add(new Partition(selection));
             }
+            
+            while(!pending.isEmpty()) pending.remove().commit(cursor);
         }
-        catch(Exception e)
+        finally
         {
-            throw new ConvirganceException(e);
+            pool.shutdownNow();
+            
+            // Stores still running after a failure may be writing part files
+            try
+            {
+                while(!pool.awaitTermination(1, TimeUnit.MINUTES));
+            }
+            catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            
+            if(directory.exists())
+            {
+                for(File part : directory.listFiles()) part.delete();
+                
+                directory.delete();
+            }
         }
     }
     
-    private class SelectionFilter implements Filter
+    /**
+     * Part files are encoded straight into the output format when the cursor
+     * can append them to the output file as they are. Otherwise they are
+     * JBIN and are read back into the cursor.
+     */
+    private Output getPartOutput(OutputCursor cursor)
     {
-        private Random random;
-        private int total;
-        private int count;
+        if(cursor instanceof ConcatenatedOutput.Cursor) return ((ConcatenatedOutput.Cursor)cursor).getOutput();
+        
+        return new JBINOutput();
+    }
+    
+    /**
+     * The part of the data to generate and how. In counter mode (the counter
+     * setting) every store and day can be generated on its own, so a run can
+     * be limited to a list of stores (storeids, comma separated) and a range
+     * of dates (fromdate and todate, inclusive, in yyyy-MM-dd format) and 
+     * still match the same records in a full run. Limiting the stores works
+     * in every mode, since every store has its own stream. A partitioned 
+     * run (the partitioned setting) generates the stores on the threads 
+     * setting number of threads, and any other run on one. A sharded run (the shard setting) is always partitioned and generates a
+     * contiguous run of the stores, in the order they are written.
+     */
+    private class Slice
+    {
+        private boolean counter;
+        private int[] stores;
+        private int first;
+        private int last;
+        private Shard shard;
+        private long start;
+        private long end = Long.MAX_VALUE;
 
-        public SelectionFilter(JSONObject franchise, Random random)
+        public Slice(Date base)
+        {
+            String storeIds = Context.getSetting("storeids", null);
+            String from = Context.getSetting("fromdate", null);
+            String to = Context.getSetting("todate", null);
+            String[] ids;
+            
+            this.counter = Context.getSetting("counter", false);
+            this.shard = Shard.getCurrent();
+            this.first = 0;
+            this.last = days;
+            
+            if(storeIds != null)
+            {
+                ids = storeIds.split(",");
+                stores = new int[ids.length];
+                
+                for(int i=0; i<ids.length; i++) stores[i] = Integer.parseInt(ids[i].trim());
+                
+                Arrays.sort(stores);
+            }
+            
+            if(from != null) first = Math.max(first, getDay(base, from));
+            if(to != null) last = Math.min(last, getDay(base, to) + 1);
+            
+            if((from != null || to != null) && !counter) throw new ConvirganceException("The fromdate and todate settings require counter mode");
+            
+            if(first >= last) 
+            {
+                System.out.println("No days of the calendar fall between " + from + " and " + to);
+                
+                last = first;
+            }
+        }
+        
+        private int getDay(Date base, String date)
         {
-            this.random = new WeightedRandom(random.nextLong(), 0.25);
-            this.total = franchise.getInt("Products");
-            this.count = 0;
+            return (int)Math.round((parseDate(date).getTime() - base.getTime()) / (double)DAY);
         }
         
-        @Override
-        public boolean test(JSONObject record)
+        public boolean isPartitioned()
         {
-            if(record.getInt("id") < 0) return false;
-            if(count >= total) return false;
+            return (counter || shard != null || Context.getSetting("partitioned", false));
+        }
+        
+        /**
+         * Works out the run of stores belonging to the shard. Stores are 
+         * counted in the same order generatePartitioned() visits them.
+         */
+        public void setStores(Iterable<JSONObject> franchises, Iterable<JSONObject> stores)
+        {
+            long total = 0;
             
-            if(random.nextBoolean())
+            if(shard == null) return;
+            
+            for(JSONObject franchise : franchises)
             {
-                count++;
+                if(franchise.getInt("id") < 0) continue;
                 
-                return true;
+                for(JSONObject store : getRange(stores, "FranchiseId", franchise.getInt("id"))) total++;
             }
             
-            return false;
+            start = shard.getStart(total);
+            end = shard.getEnd(total);
+            
+            System.out.println("Shard " + shard.getIndex() + " of " + shard.getCount() + ": stores " + start + " to " + (end - 1) + " of " + total);
         }
-    }
-    
-    private class InFilter implements Filter
-    {
-        private HashMap<String,Boolean> lookup;
-        private String key;
         
-        public InFilter(String key, String[] values)
+        /**
+         * True if the store, at the given position in the order stores are
+         * generated, is part of the slice.
+         */
+        public boolean contains(int store, long ordinal)
         {
-            this.key = key;
-            this.lookup = new HashMap<>();
+            if(ordinal < start || ordinal >= end) return false;
             
-            for(String value : values) lookup.put(value, Boolean.TRUE);
+            return (stores == null || Arrays.binarySearch(stores, store) >= 0);
         }
+    }
+    
+    /**
+     * The products and SKUs a franchise carries, as rows of the product and
+     * SKU caches.
+     */
+    class Selection
+    {
+        private JSONObject franchise;
+        private ColumnCache productCache;
+        private ColumnCache skuCache;
+        private int[] products;
+        private int[] skus;
         
-        @Override
-        public boolean test(JSONObject record)
+        private int stores;
+        private long sales;
+
+        public Selection(JSONObject franchise, ColumnCache products, ColumnCache skus, RandomGenerator random)
         {
-            return lookup.containsKey(record.getString(key));
+            WeightedRandom selector = new WeightedRandom(random.nextLong(), 0.25);
+            boolean[] selected = new boolean[products.size()];
+            int total = franchise.getInt("Products");
+            int productId = products.getColumn("id");
+            int skuProductId = skus.getColumn("ProductId");
+            int count = 0;
+            int row;
+            
+            this.franchise = franchise;
+            this.productCache = products;
+            this.skuCache = skus;
+            this.products = new int[Math.min(total, products.size())];
+            
+            for(int i=0; i<products.size() && count < total; i++)
+            {
+                if(products.getInt(productId, i) < 0) continue;
+                
+                if(selector.nextBoolean())
+                {
+                    selected[i] = true;
+                    this.products[count++] = i;
+                }
+            }
+            
+            this.products = Arrays.copyOf(this.products, count);
+            this.skus = new int[skus.size()];
+            count = 0;
+            
+            for(int i=0; i<skus.size(); i++)
+            {
+                row = products.find(skus.getInt(skuProductId, i));
+                
+                if(row >= 0 && selected[row]) this.skus[count++] = i;
+            }
+            
+            this.skus = Arrays.copyOf(this.skus, count);
         }
     }
     
-    private class Sale implements Iterable<JSONObject>
+    private class Partition
     {
-        private JSONArray<JSONObject> lines = new JSONArray<>();
+        private Selection selection;
+        private JSONObject store;
+        private long seed;
+        private long start;
+        private long limit;
         
-        public Sale(JSONObject customer, JSONObject store, CachedIterable products, CachedIterable skus)
+        private Slice slice;
+        
+        private File part;
+        private ForkJoinTask<Long> task;
+        private long count;
+
+        // Marks the end of a franchise
+        public Partition(Selection selection)
+        {
+            this.selection = selection;
+        }
+        
+        public Partition(Selection selection, JSONObject store, long seed, long range, Slice slice)
         {
-            double goal = random.nextDouble(12.0, 500.0);
-            double total = 0;
-            double price;
+            int id = store.getInt("id");
             
-            JSONObject record;
-            JSONObject product;
-            JSONObject sku;
-            int quantity;
+            this.selection = selection;
+            this.store = store;
+            this.seed = Seeds.derive(seed, selection.franchise.getInt("id"), id);
+            this.start = id * range + 1;
+            this.limit = id * range + range - 1;
+            this.slice = slice;
+        }
+        
+        private long generateStore(OutputCursor cursor, CachedIterable employees, Date base)
+        {
+            if(slice.counter) return Sales.this.generateStore(cursor, store, selection, employees, base, seed, start, limit - start + 1, slice);
             
-            while(total < goal)
+            return Sales.this.generateStore(cursor, store, selection, employees, base, Randoms.create(seed), start, limit) - start;
+        }
+        
+        public void generate(OutputCursor cursor, CachedIterable employees, Date base)
+        {
+            this.count = generateStore(cursor, employees, base);
+        }
+        
+        public void start(ForkJoinPool pool, CachedIterable employees, Date base, File part, Output output)
+        {
+            this.part = part;
+            
+            this.task = pool.submit(() -> {
+                try(OutputCursor cursor = output.write(new FileTarget(part)))
+                {
+                    return generateStore(cursor, employees, base);
+                }
+            });
+        }
+        
+        public void commit(OutputCursor cursor)
+        {
+            if(store == null)
             {
-                record = new JSONObject(customer);
-                sku = skus.get(random.nextInt(skus.size()));
-                product = products.find(sku.getInt("ProductId"));
-                quantity = generateQuantity(product, sku, random);
-                
-                price = product.getDouble("Price");
-                total += price * quantity;
+                System.out.print(selection.franchise.getString("Name") + ": " + NumberFormat.getInstance().format(selection.products.length) + " products / " + NumberFormat.getInstance().format(selection.skus.length) + " skus / ");
+                System.out.print(NumberFormat.getInstance().format(selection.stores) + " stores / ");
+                System.out.println(NumberFormat.getInstance().format(selection.sales) + " sales");
+                return;
+            }
+            
+            if(task != null)
+            {
+                try
+                {
+                    this.count = task.get();
+                }
+                catch(ExecutionException e)
+                {
+                    if(e.getCause() instanceof RuntimeException) throw (RuntimeException)e.getCause();
+                    
+                    throw new ConvirganceException(e.getCause());
+                }
+                catch(InterruptedException e)
+                {
+                    throw new ConvirganceException(e);
+                }
                 
-                record.put("FranchiseId", store.get("FranchiseId"));
-                record.put("StoreId", store.get("id"));
-                record.put("BrandId", product.get("BrandId"));
-                record.put("CategoryId", product.get("CategoryId"));
-                record.put("ProductId", sku.get("ProductId"));
-                record.put("SkuId", sku.get("id"));
-                record.put("ZipCodeId", ZipCodes.getZipCodeId(store.getString("CountryCode"), store.getInt("ZipCode")));
-                record.put("Quantity", quantity);
-                record.put("UnitPrice", price);
-                record.put("DiscountPrice", price);
-                record.put("TotalPrice", price * quantity);
+                if(cursor instanceof ConcatenatedOutput.Cursor) ((ConcatenatedOutput.Cursor)cursor).append(part);
+                else for(JSONObject record : new JBINInput().read(new FileSource(part))) cursor.write(record);
                 
-                lines.add(record);
+                part.delete();
             }
+            
+            selection.stores++;
+            selection.sales += count;
+        }
+    }
+    
+    /**
+     * The lines of one sale. Each call to next() works out the next line,
+     * which is then written with write(). Lines are written straight to the
+     * row writer of a typed cursor, and built as records otherwise.
+     */
+    class Sale
+    {
+        private JSONObject customer;
+        private JSONObject store;
+        private int zipCodeId;
+        private Selection selection;
+        private RandomGenerator random;
+        private double goal;
+        
+        private boolean counter;
+        private long key;
+        
+        private ColumnCache products;
+        private ColumnCache skus;
+        private int skuId;
+        private int skuProductId;
+        private int productPrice;
+        private int productBrandId;
+        private int productCategoryId;
+        
+        private double total = 0;
+        private int line = 0;
+        
+        private int brandId;
+        private int categoryId;
+        private int productId;
+        private int sku;
+        private int quantity;
+        private double price;
+        
+        public Sale(JSONObject customer, JSONObject store, int zipCodeId, Selection selection, RandomGenerator random)
+        {
+            this.customer = customer;
+            this.store = store;
+            this.zipCodeId = zipCodeId;
+            this.selection = selection;
+            this.random = random;
+            this.goal = random.nextDouble(12.0, 500.0);
+            
+            this.products = selection.productCache;
+            this.skus = selection.skuCache;
+            this.skuId = skus.getColumn("id");
+            this.skuProductId = skus.getColumn("ProductId");
+            this.productPrice = products.getColumn("Price");
+            this.productBrandId = products.getColumn("BrandId");
+            this.productCategoryId = products.getColumn("CategoryId");
+        }
+        
+        /**
+         * A sale in counter mode. The goal and each line draw from their own
+         * counter streams derived from the key of the sale.
+         */
+        public Sale(JSONObject customer, JSONObject store, int zipCodeId, Selection selection, long key)
+        {
+            this(customer, store, zipCodeId, selection, new CounterRandom(key));
+            
+            this.counter = true;
+            this.key = key;
         }
         
-        private int generateQuantity(JSONObject product, JSONObject sku, Random random)
+        private int generateQuantity(double price, RandomGenerator random)
         {
-            double price = product.getDouble("Price");
             double probability = random.nextDouble();
             
             // We try to create a real-world distribution of quantities. Cheaper
@@ -308,75 +733,154 @@ public class Sales extends AbstractGenerator
             else return 1;
         }
         
-        @Override
-        public Iterator<JSONObject> iterator()
+        public boolean hasNext()
         {
-            return lines.iterator();
+            return (total < goal);
         }
-    }
-    
-    private class Customers implements Iterable<JSONObject>
-    {
-        private static final long DAY = 1000 * 60 * 60 * 24;
         
-        private JSONArray<JSONObject> records;
-        private int start;
+        public void next()
+        {
+            RandomGenerator random = counter ? new CounterRandom(Seeds.derive(key, line)) : this.random;
+            int index;
+            int product;
+
+            if(!hasNext()) throw new NoSuchElementException();
 
-        public Customers(int[] customers, int days, String receiptPrefix, JSONArray schedule)
+            line++;
+            index = selection.skus[random.nextInt(selection.skus.length)];
+            productId = skus.getInt(skuProductId, index);
+            product = products.find(productId);
+            price = products.getDouble(productPrice, product);
+            quantity = generateQuantity(price, random);
+            brandId = products.getInt(productBrandId, product);
+            categoryId = products.getInt(productCategoryId, product);
+            sku = skus.getInt(skuId, index);
+
+            total += price * quantity;
+        }
+        
+        /**
+         * Writes the current line with the given sale id.
+         */
+        public void write(OutputCursor cursor, long id)
         {
-            Date base = new Date(new Date().getTime() - (DAY * days));
-            Date date;
-            
-            JSONArray<JSONObject> today;
             JSONObject record;
-            JSONObject employee;
-            
-            int count;
-            int receipt = 1000000;
-            
-            this.records = new JSONArray<>();
             
-            for(int day=0; day<days; day++)
+            if(cursor instanceof RowCursor && SCHEMA.equals(((RowCursor)cursor).getSchema()))
             {
-                date = new Date(base.getTime() + (day * DAY));
-                today = schedule.getJSONArray(day);
-
-                for(int hour=0; hour<24; hour++)
+                try
                 {
-                    for(int minute=0; minute<60; minute++)
-                    {
-                        count = customers[hour]/60;
-
-                        for(int i=0; i<count; i++)
-                        {
-                            record = new JSONObject(true);
-                            employee = findEmployee(today, hour, minute);
-
-                            // Sales are lost because staff can't keep up
-                            if(employee == null) break;
-
-                            record.put("id", null);
-                            record.put("FranchiseId", null);
-                            record.put("StoreId", null);
-                            record.put("BrandId", null);
-                            record.put("CategoryId", null);
-                            record.put("ProductId", null);
-                            record.put("SkuId", null);
-                            record.put("DateId", ((date.getYear() + 1900) * 10000) + ((date.getMonth() + 1) * 100) + date.getDate());
-                            record.put("TimeId", (hour * 100) + minute);
-                            record.put("ZipCodeId", null);
-                            record.put("CheckoutEmployeeId", employee.get("id"));
-                            record.put("Receipt", receiptPrefix + (receipt++));
-                            record.put("Quantity", null);
-                            record.put("UnitPrice", null);
-                            record.put("DiscountPrice", null);
-                            record.put("TotalPrice", null);
-
-                            records.add(record);
-                        }
-                    }
+                    write(((RowCursor)cursor).getWriter(), id);
                 }
+                catch(IOException e)
+                {
+                    throw new ConvirganceException(e);
+                }
+                
+                return;
             }
+            
+            record = new JSONObject(customer);
+            
+            record.put("id", id);
+            record.put("FranchiseId", store.get("FranchiseId"));
+            record.put("StoreId", store.get("id"));
+            record.put("BrandId", brandId);
+            record.put("CategoryId", categoryId);
+            record.put("ProductId", productId);
+            record.put("SkuId", sku);
+            record.put("ZipCodeId", zipCodeId);
+            record.put("Quantity", quantity);
+            record.put("UnitPrice", price);
+            record.put("DiscountPrice", price);
+            record.put("TotalPrice", price * quantity);
+
+            cursor.write(record);
+        }
+        
+        // In the order of SCHEMA
+        private void write(RowWriter writer, long id) throws IOException
+        {
+            writer.writeLong(id);
+            writer.writeInt(store.getInt("FranchiseId"));
+            writer.writeInt(store.getInt("id"));
+            writer.writeInt(brandId);
+            writer.writeInt(categoryId);
+            writer.writeInt(productId);
+            writer.writeInt(sku);
+            writer.writeInt(customer.getInt("DateId"));
+            writer.writeInt(customer.getInt("TimeId"));
+            writer.writeInt(zipCodeId);
+            writer.writeInt(customer.getInt("CheckoutEmployeeId"));
+            writer.writeString(customer.getString("Receipt"));
+            writer.writeInt(quantity);
+            writer.writeDouble(price);
+            writer.writeDouble(price);
+            writer.writeDouble(price * quantity);
+            writer.endRow();
+        }
+    }
+    
+    /**
+     * The customers of a store, minute by minute. Customers are generated as
+     * they are iterated so that only one day of the schedule is held at a 
+     * time. Can only be iterated once.
+     */
+    class Customers implements Iterable<JSONObject>
+    {
+        private int[] customers;
+        private int first;
+        private int days;
+        private String receiptPrefix;
+        private Iterator<JSONArray<JSONObject>> schedule;
+        private Date base;
+        private int start;
+        
+        private boolean counter;
+        private long key;
+        
+        // Position of the customer last returned
+        private int day;
+        private long saleKey;
+
+        public Customers(int[] customers, int days, String receiptPrefix, Iterator<JSONArray<JSONObject>> schedule, Date base)
+        {
+            this.customers = customers;
+            this.days = days;
+            this.receiptPrefix = receiptPrefix;
+            this.schedule = schedule;
+            this.base = base;
+        }
+        
+        /**
+         * Customers for the days from first up to last in counter mode. Each
+         * customer is keyed by store, day, minute and position in the minute,
+         * and receipts are numbered from the same position rather than a 
+         * running count.
+         */
+        public Customers(int[] customers, int first, int last, String receiptPrefix, Iterator<JSONArray<JSONObject>> schedule, Date base, long key)
+        {
+            this(customers, last, receiptPrefix, schedule, base);
+            
+            if(last > 100000) throw new ConvirganceException("Counter mode receipts only allow for 100,000 days");
+            
+            this.first = first;
+            this.counter = true;
+            this.key = key;
+        }
+        
+        public int getDay()
+        {
+            return day;
+        }
+        
+        /**
+         * The key of the sale made by the customer last returned, in counter
+         * mode.
+         */
+        public long getSaleKey()
+        {
+            return saleKey;
         }
         
         private JSONObject findEmployee(JSONArray<JSONObject> today, int hour, int minute)
@@ -410,33 +914,144 @@ public class Sales extends AbstractGenerator
         @Override
         public Iterator<JSONObject> iterator()
         {
-            return records.iterator();
+            return new Iterator<JSONObject>() {
+                
+                private int day = first;
+                private int hour = 0;
+                private int minute = 0;
+                private int index = 0;
+                private int receipt = 1000000;
+                
+                private Date date = new Date(base.getTime() + (first * DAY));
+                private JSONArray<JSONObject> today = (days > first) ? schedule.next() : null;
+                
+                private int nextDay;
+                private long nextKey;
+                private JSONObject next = advance();
+                
+                private JSONObject advance()
+                {
+                    JSONObject record;
+                    JSONObject employee;
+                    int count;
+                    
+                    while(day < days)
+                    {
+                        count = customers[hour]/60;
+                        
+                        if(index < count)
+                        {
+                            employee = findEmployee(today, hour, minute);
+                            
+                            if(employee != null)
+                            {
+                                record = new JSONObject(true);
+                                index++;
+                                
+                                record.put("id", null);
+                                record.put("FranchiseId", null);
+                                record.put("StoreId", null);
+                                record.put("BrandId", null);
+                                record.put("CategoryId", null);
+                                record.put("ProductId", null);
+                                record.put("SkuId", null);
+                                record.put("DateId", ((date.getYear() + 1900) * 10000) + ((date.getMonth() + 1) * 100) + date.getDate());
+                                record.put("TimeId", (hour * 100) + minute);
+                                record.put("ZipCodeId", null);
+                                record.put("CheckoutEmployeeId", employee.get("id"));
+                                
+                                if(counter)
+                                {
+                                    // Receipts must keep a fixed width to stay unique
+                                    if(index > 999) throw new ConvirganceException("More than 999 customers in one minute cannot be given receipts in counter mode");
+                                    
+                                    nextKey = Seeds.derive(key, day, (hour * 60) + minute, index);
+                                    record.put("Receipt", receiptPrefix + String.format("%05d%04d%03d", day, (hour * 60) + minute, index));
+                                }
+                                else
+                                {
+                                    record.put("Receipt", receiptPrefix + (receipt++));
+                                }
+                                
+                                nextDay = day;
+                                record.put("Quantity", null);
+                                record.put("UnitPrice", null);
+                                record.put("DiscountPrice", null);
+                                record.put("TotalPrice", null);
+                                
+                                return record;
+                            }
+                            
+                            // Sales are lost because staff can't keep up
+                        }
+                        
+                        index = 0;
+                        
+                        if(++minute < 60) continue;
+                        
+                        minute = 0;
+                        
+                        if(++hour < 24) continue;
+                        
+                        hour = 0;
+                        
+                        if(++day < days)
+                        {
+                            date = new Date(base.getTime() + (day * DAY));
+                            today = schedule.next();
+                        }
+                    }
+                    
+                    return null;
+                }
+                
+                @Override
+                public boolean hasNext()
+                {
+                    return (next != null);
+                }
+
+                @Override
+                public JSONObject next()
+                {
+                    JSONObject record = next;
+                    
+                    if(record == null) throw new NoSuchElementException();
+                    
+                    Customers.this.day = nextDay;
+                    Customers.this.saleKey = nextKey;
+                    
+                    next = advance();
+                    
+                    return record;
+                }
+            };
         }
     }
     
-    private class Scheduling
+    class Scheduling
     {
-        private static final long DAY = 1000 * 60 * 60 * 24;
-        
         private Date base;
         private int days;
         private int storeId;
         private CachedIterable employees;
+        private RandomGenerator random;
 
-        public Scheduling(int days, int storeId, CachedIterable employees)
+        public Scheduling(int days, int storeId, CachedIterable employees, Date base, RandomGenerator random)
         {
-            this.base = new Date(new Date().getTime() - (DAY * days));
+            this.base = base;
             this.days = days;
             this.storeId = storeId;
             this.employees = employees;
+            this.random = random;
         }
         
         public CachedIterable getStaffing()
         {
             CachedIterable staffing = this.employees.getGroup("StoreId", storeId);
-            Random checkout = new WeightedRandom(getRandom().nextLong(), 0.2); // Only 20% of staff are on checkout
-            Random timeofday = new Random(getRandom().nextLong());
-            Random checkoutTime = new Random(getRandom().nextLong());
+            RandomGenerator checkout = new WeightedRandom(random.nextLong(), 0.2); // Only 20% of staff are on checkout
+            RandomGenerator timeofday = Randoms.create(random.nextLong());
+            RandomGenerator checkoutTime = Randoms.create(random.nextLong());
             int offset = 0;
             
             JSONArray<Boolean> workdays;
@@ -471,32 +1086,84 @@ public class Sales extends AbstractGenerator
             return staffing.getFiltered(new EqualsFilter("Checkout", true));
         }
         
-        public JSONArray getSchedule()
+        private JSONArray<JSONObject> getToday(CachedIterable staffing, int day, RandomGenerator leave)
+        {
+            Date date = new Date(base.getTime() + (DAY * day));
+            JSONArray<JSONObject> today = new JSONArray<>();
+
+            for(JSONObject staff : staffing)
+            {
+                if(!leave.nextBoolean() && staff.getJSONArray("Workdays").getBoolean(date.getDay()))
+                {
+                    today.add(staff);
+                }
+            }
+
+            return today;
+        }
+        
+        /**
+         * Returns the checkout staff working each day, one day at a time. The
+         * staffing and the random streams are set up immediately, but each 
+         * day is only worked out when it is requested.
+         */
+        public Iterator<JSONArray<JSONObject>> getSchedule()
         {
             CachedIterable staffing = getStaffing();
-            JSONArray schedules = new JSONArray();
-            JSONArray today;
-            Date date;
+            RandomGenerator leave = new WeightedRandom(random.nextLong(), 0.05); // 5% chance that someone is on leave
             
-            Random leave = new WeightedRandom(getRandom().nextLong(), 0.05); // 5% chance that someone is on leave
+            return new Iterator<JSONArray<JSONObject>>() {
+                
+                private int day = 0;
+                
+                @Override
+                public boolean hasNext()
+                {
+                    return (day < days);
+                }
+
+                @Override
+                public JSONArray<JSONObject> next()
+                {
+                    return getToday(staffing, day++, leave);
+                }
+            };
+        }
+        
+        /**
+         * Returns the checkout staff working each day from first up to last.
+         * Leave is drawn from a counter stream for each day, and the checkout
+         * state of the staff is reset each morning, so any day can be worked
+         * out without the days before it.
+         */
+        public Iterator<JSONArray<JSONObject>> getSchedule(int first, int last, long key)
+        {
+            CachedIterable staffing = getStaffing();
             
-            for(int day=0; day<days; day++)
-            {
-                date = new Date(base.getTime() + (DAY * day));
-                today = new JSONArray();
+            return new Iterator<JSONArray<JSONObject>>() {
                 
-                for(JSONObject staff : staffing)
+                private int day = first;
+                
+                @Override
+                public boolean hasNext()
                 {
-                    if(!leave.nextBoolean() && staff.getJSONArray("Workdays").getBoolean(date.getDay()))
+                    return (day < last);
+                }
+
+                @Override
+                public JSONArray<JSONObject> next()
+                {
+                    RandomGenerator leave = new WeightedRandom(new CounterRandom(Seeds.derive(key, day)), 0.05);
+                    
+                    for(JSONObject staff : staffing)
                     {
-                        today.add(staff);
+                        staff.remove("LastHour");
+                        staff.remove("LastMinute");
                     }
+                    
+                    return getToday(staffing, day++, leave);
                 }
-                
-                schedules.add(today);
-            }
-            
-            return schedules;
+            };
         }
     }
 }
@@ -25,9 +25,8 @@ import com.invirgance.convirgance.ConvirganceException;
 import com.invirgance.convirgance.json.JSONObject;
 import com.invirgance.convirgance.output.OutputCursor;
 import com.invirgance.convirgance.target.FileTarget;
-import com.invirgance.convirgance.transform.filter.EqualsFilter;
 import com.invirgance.datagen.modules.Context;
-import com.invirgance.datagen.util.CachedIterable;
+import com.invirgance.datagen.util.ColumnCache;
 
 /**
  *
@@ -44,18 +43,36 @@ public class Stores extends AbstractGenerator
         throw new IllegalArgumentException("Unrecognized country " + country);
     }
     
+    @Override
+    public String[] getDependencies()
+    {
+        return new String[]{ "franchises", "zipcodes" };
+    }
+    
+    @Override
+    public String getClusterKey()
+    {
+        return "FranchiseId";
+    }
+    
     @Override
     public void generate()
     {
         Iterable<JSONObject> franchises = Context.get("franchises");
-        CachedIterable zipcodes = new CachedIterable(Context.get("zipcodes"));
+        ColumnCache zipcodes = new ColumnCache(Context.get("zipcodes"), "ZipCode", "CountryCode", "LocaleName", "CityName");
+        
+        int zipCode = zipcodes.getColumn("ZipCode");
+        int countryCode = zipcodes.getColumn("CountryCode");
+        int localeName = zipcodes.getColumn("LocaleName");
+        int cityName = zipcodes.getColumn("CityName");
         
-        CachedIterable us = zipcodes.getFiltered(new EqualsFilter("CountryCode", "US"));
-        CachedIterable japan = zipcodes.getFiltered(new EqualsFilter("CountryCode", "JP"));
-        CachedIterable lookup;
+        int[] us = zipcodes.select(countryCode, "US");
+        int[] japan = zipcodes.select(countryCode, "JP");
+        int[] lookup;
         
         JSONObject store;
-        JSONObject zipcode;
+        int zipcode;
+        String locale;
         
         String country;
         int index = 1;
@@ -87,14 +104,15 @@ public class Stores extends AbstractGenerator
                     else if(country.equals("JP")) lookup = japan;
                     else throw new IllegalArgumentException("Unknown country code: " + country);
                     
-                    zipcode = lookup.get(random.nextInt(lookup.size()));
+                    zipcode = lookup[random.nextInt(lookup.length)];
+                    locale = zipcodes.isNull(localeName, zipcode) ? zipcodes.getString(cityName, zipcode) : zipcodes.getString(localeName, zipcode);
                     store = new JSONObject();
                     
                     store.put("id", index++);
                     store.put("StoreNumber", String.format("%05d", index));
-                    store.put("Name", zipcode.getString("LocaleName", zipcode.getString("CityName")) + " - Store #" + String.format("%05d", index));
-                    store.put("ZipCode", zipcode.get("ZipCode"));
-                    store.put("CountryCode", zipcode.get("CountryCode"));
+                    store.put("Name", locale + " - Store #" + String.format("%05d", index));
+                    store.put("ZipCode", zipcodes.get(zipCode, zipcode));
+                    store.put("CountryCode", zipcodes.get(countryCode, zipcode));
                     store.put("FranchiseId", franchise.get("id"));
                     store.put("Employees", employees);
                     
@@ -0,0 +1,530 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import com.invirgance.convirgance.ConvirganceException;
+import com.invirgance.convirgance.output.Output;
+import com.invirgance.convirgance.target.Target;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Writes Arrow IPC files, or streams. Rows are collected into record batches
+ * of a fixed number of rows, held in the Arrow memory layout, and written out
+ * as they fill. Memory is bounded by the batch size no matter how large the
+ * table. Every column is nullable. Bodies are not compressed, so that the 
+ * files can be memory mapped and read without any decoding.
+ * <br><br>
+ * Tables without a schema have their columns worked out from the records of
+ * the first batch.
+ * 
+ * @author jbanes
+ */
+public class ArrowOutput implements Output
+{
+    private static final byte[] MAGIC = "ARROW1".getBytes(StandardCharsets.US_ASCII);
+    private static final int CONTINUATION = 0xFFFFFFFF;
+    
+    private static final int V5 = 4;
+    
+    // Message header types
+    private static final int SCHEMA = 1;
+    private static final int RECORD_BATCH = 3;
+    
+    // Field types
+    private static final int INT = 2;
+    private static final int FLOATING_POINT = 3;
+    private static final int UTF8 = 5;
+    
+    private static final int DOUBLE = 2;
+    
+    // The rows the buffers of a column start out with
+    private static final int CAPACITY = 1024;
+    
+    private Schema schema;
+    private int batchSize;
+    private boolean stream;
+
+    public ArrowOutput(Schema schema)
+    {
+        this(schema, 1 << 16, false);
+    }
+    
+    /**
+     * @param schema the columns of the table, or null to work them out from
+     *        the first batch
+     * @param batchSize the number of rows in a record batch
+     * @param stream true to write the IPC stream format rather than the file
+     *        format. Streams have no footer, so they cannot be read at 
+     *        random, but can be read before they are finished.
+     */
+    public ArrowOutput(Schema schema, int batchSize, boolean stream)
+    {
+        if(batchSize < 1) throw new IllegalArgumentException("Batch size must be at least 1: " + batchSize);
+        
+        this.schema = schema;
+        this.batchSize = batchSize;
+        this.stream = stream;
+    }
+
+    @Override
+    public Cursor write(Target target)
+    {
+        return new Cursor(target.getOutputStream());
+    }
+    
+    private static int align(long size)
+    {
+        return (int)((size + 7) & ~7L);
+    }
+    
+    private static int createSchema(FlatBufferBuilder builder, Schema schema)
+    {
+        int[] fields = new int[schema.size()];
+        int children = builder.createVector();
+        int name;
+        int type;
+        
+        for(int i=0; i<fields.length; i++)
+        {
+            name = builder.createString(schema.getName(i));
+            
+            switch(schema.getType(i))
+            {
+                case Schema.INT:
+                case Schema.LONG:
+                    builder.startTable(2);
+                    builder.addInt(0, (schema.getType(i) == Schema.INT) ? 32 : 64);
+                    builder.addBoolean(1, true);
+                    break;
+                
+                case Schema.DOUBLE:
+                    builder.startTable(1);
+                    builder.addShort(0, DOUBLE);
+                    break;
+                    
+                default:
+                    builder.startTable(0);
+            }
+            
+            type = builder.endTable();
+            
+            builder.startTable(7);
+            builder.addOffset(0, name);
+            builder.addOffset(3, type);
+            builder.addOffset(5, children);
+            builder.addBoolean(1, true);
+            builder.addByte(2, getType(schema.getType(i)));
+            
+            fields[i] = builder.endTable();
+        }
+        
+        children = builder.createVector(fields);
+        
+        builder.startTable(4);
+        builder.addOffset(1, children);
+        builder.addShort(0, 0);
+        
+        return builder.endTable();
+    }
+    
+    private static int getType(int type)
+    {
+        switch(type)
+        {
+            case Schema.INT:
+            case Schema.LONG:
+                return INT;
+                
+            case Schema.DOUBLE:
+                return FLOATING_POINT;
+                
+            default:
+                return UTF8;
+        }
+    }
+    
+    private static byte[] createMessage(FlatBufferBuilder builder, int type, int header, long bodyLength)
+    {
+        builder.startTable(5);
+        builder.addLong(3, bodyLength);
+        builder.addOffset(2, header);
+        builder.addShort(0, V5);
+        builder.addByte(1, type);
+        
+        return builder.finish(builder.endTable());
+    }
+    
+    public class Cursor extends TypedCursor
+    {
+        private OutputStream out;
+        private long position;
+        
+        private Column[] columns;
+        private int rows;
+        
+        // Offset, metadata length and body length of every record batch
+        private ArrayList<long[]> blocks = new ArrayList<>();
+
+        private Cursor(OutputStream out)
+        {
+            super(batchSize);
+            
+            this.out = new BufferedOutputStream(out, 1 << 16);
+            
+            try
+            {
+                if(!stream) writeBytes(Arrays.copyOf(MAGIC, 8));
+                if(schema != null) setSchema(schema);
+            }
+            catch(IOException e)
+            {
+                throw new ConvirganceException(e);
+            }
+        }
+        
+        @Override
+        protected void start(Schema schema) throws IOException
+        {
+            FlatBufferBuilder builder = new FlatBufferBuilder();
+            
+            this.columns = new Column[schema.size()];
+            
+            for(int i=0; i<columns.length; i++) columns[i] = new Column(schema.getName(i), schema.getType(i));
+            
+            writeMessage(createMessage(builder, SCHEMA, createSchema(builder, schema), 0));
+        }
+        
+        private void writeBytes(byte[] bytes) throws IOException
+        {
+            out.write(bytes);
+            position += bytes.length;
+        }
+        
+        private void writeInt32(int value) throws IOException
+        {
+            out.write(value);
+            out.write(value >>> 8);
+            out.write(value >>> 16);
+            out.write(value >>> 24);
+            
+            position += 4;
+        }
+        
+        private void pad(long size) throws IOException
+        {
+            for(long i=size; i<align(size); i++) out.write(0);
+            
+            position += align(size) - size;
+        }
+        
+        // Writes the metadata of a message with its continuation marker and
+        // length, padded so that the body is aligned. Returns the length of 
+        // all of it.
+        private int writeMessage(byte[] metadata) throws IOException
+        {
+            int length = align(metadata.length + 8) - 8;
+            
+            writeInt32(CONTINUATION);
+            writeInt32(length);
+            writeBytes(metadata);
+            pad(metadata.length);
+            
+            return length + 8;
+        }
+        
+        @Override
+        public void writeNull() throws IOException
+        {
+            columns[next()].addNull();
+        }
+
+        @Override
+        public void writeInt(int value) throws IOException
+        {
+            columns[next(Schema.INT)].addInt(rows, value);
+        }
+
+        @Override
+        public void writeLong(long value) throws IOException
+        {
+            columns[next(Schema.LONG)].addLong(rows, value);
+        }
+
+        @Override
+        public void writeDouble(double value) throws IOException
+        {
+            columns[next(Schema.DOUBLE)].addDouble(rows, value);
+        }
+
+        @Override
+        public void writeString(String value) throws IOException
+        {
+            if(value == null) columns[next()].addNull();
+            else columns[next(Schema.STRING)].addString(rows, value);
+        }
+
+        @Override
+        protected void finishRow() throws IOException
+        {
+            if(++rows >= batchSize) flush();
+        }
+        
+        private void flush() throws IOException
+        {
+            FlatBufferBuilder builder = new FlatBufferBuilder();
+            ArrayList<ByteBuffer> buffers = new ArrayList<>();
+            long[] offsets;
+            long offset = position;
+            long body = 0;
+            int nodes;
+            int layout;
+            int metadata;
+            
+            for(Column column : columns) column.getBuffers(rows, buffers);
+            
+            offsets = new long[buffers.size()];
+            
+            for(int i=0; i<offsets.length; i++)
+            {
+                offsets[i] = body;
+                body += align(buffers.get(i).remaining());
+            }
+            
+            // Vectors of structs are written back to front
+            builder.startVector(16, buffers.size(), 8);
+            
+            for(int i=offsets.length-1; i>=0; i--) builder.putStruct(offsets[i], buffers.get(i).remaining());
+            
+            layout = builder.endVector();
+            
+            builder.startVector(16, columns.length, 8);
+            
+            for(int i=columns.length-1; i>=0; i--) builder.putStruct(rows, columns[i].nulls);
+            
+            nodes = builder.endVector();
+            
+            builder.startTable(5);
+            builder.addLong(0, rows);
+            builder.addOffset(1, nodes);
+            builder.addOffset(2, layout);
+            
+            metadata = writeMessage(createMessage(builder, RECORD_BATCH, builder.endTable(), body));
+            
+            for(ByteBuffer buffer : buffers)
+            {
+                out.write(buffer.array(), buffer.position(), buffer.remaining());
+                
+                position += buffer.remaining();
+                
+                pad(buffer.remaining());
+            }
+            
+            for(Column column : columns) column.reset();
+            
+            blocks.add(new long[]{ offset, metadata, body });
+            
+            rows = 0;
+        }
+
+        @Override
+        protected void finish() throws IOException
+        {
+            FlatBufferBuilder builder = new FlatBufferBuilder();
+            byte[] footer;
+            int schema;
+            int batches;
+            
+            if(rows > 0) flush();
+            
+            // End of stream
+            writeInt32(CONTINUATION);
+            writeInt32(0);
+            
+            if(!stream)
+            {
+                schema = createSchema(builder, getSchema());
+                
+                builder.startVector(24, blocks.size(), 8);
+                
+                for(int i=blocks.size()-1; i>=0; i--) builder.putStruct(blocks.get(i));
+                
+                batches = builder.endVector();
+                
+                builder.startTable(5);
+                builder.addOffset(1, schema);
+                builder.addOffset(3, batches);
+                builder.addShort(0, V5);
+                
+                footer = builder.finish(builder.endTable());
+                
+                writeBytes(footer);
+                writeInt32(footer.length);
+                writeBytes(MAGIC);
+            }
+            
+            out.close();
+        }
+    }
+    
+    // The values of one column of the current batch, laid out as Arrow 
+    // buffers: a validity bitmap, offsets for strings, and the values. The
+    // buffers start small and grow as rows are added, so that the many 
+    // files of a partitioned layout do not each hold a full batch.
+    private class Column
+    {
+        private String name;
+        private int type;
+        
+        private byte[] validity = new byte[CAPACITY / 8];
+        private ByteBuffer values;
+        private ByteBuffer offsets;
+        private int nulls;
+
+        public Column(String name, int type)
+        {
+            this.name = name;
+            this.type = type;
+            
+            switch(type)
+            {
+                case Schema.INT:
+                    values = ByteBuffer.allocate(CAPACITY * 4);
+                    break;
+                    
+                case Schema.STRING:
+                    offsets = ByteBuffer.allocate(CAPACITY * 4).order(ByteOrder.LITTLE_ENDIAN);
+                    values = ByteBuffer.allocate(CAPACITY * 16);
+                    
+                    offsets.putInt(0);
+                    break;
+                    
+                default:
+                    values = ByteBuffer.allocate(CAPACITY * 8);
+            }
+            
+            values.order(ByteOrder.LITTLE_ENDIAN);
+        }
+        
+        private ByteBuffer grow(ByteBuffer buffer, int length)
+        {
+            if(buffer.remaining() >= length) return buffer;
+            
+            return ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + length)).order(ByteOrder.LITTLE_ENDIAN).put(buffer.flip());
+        }
+        
+        private void define(int row)
+        {
+            if((row >>> 3) >= validity.length) validity = Arrays.copyOf(validity, Math.max(validity.length * 2, (row >>> 3) + 1));
+            
+            validity[row >>> 3] |= 1 << (row & 7);
+        }
+        
+        public void reset()
+        {
+            Arrays.fill(validity, (byte)0);
+            values.clear();
+            nulls = 0;
+            
+            if(offsets != null) offsets.clear().putInt(0);
+        }
+        
+        private void check(int type)
+        {
+            if(this.type != type) throw new IllegalStateException("Column " + name + " does not hold values of type " + type);
+        }
+        
+        public void addNull()
+        {
+            nulls++;
+            
+            switch(type)
+            {
+                case Schema.INT:
+                    values = grow(values, 4).putInt(0);
+                    break;
+                    
+                case Schema.STRING:
+                    offsets = grow(offsets, 4).putInt(values.position());
+                    break;
+                    
+                default:
+                    values = grow(values, 8).putLong(0);
+            }
+        }
+        
+        public void addInt(int row, int value)
+        {
+            check(Schema.INT);
+            define(row);
+            
+            values = grow(values, 4).putInt(value);
+        }
+        
+        public void addLong(int row, long value)
+        {
+            check(Schema.LONG);
+            define(row);
+            
+            values = grow(values, 8).putLong(value);
+        }
+        
+        public void addDouble(int row, double value)
+        {
+            check(Schema.DOUBLE);
+            define(row);
+            
+            values = grow(values, 8).putDouble(value);
+        }
+        
+        public void addString(int row, String value)
+        {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            
+            check(Schema.STRING);
+            define(row);
+            
+            values = grow(values, bytes.length).put(bytes);
+            offsets = grow(offsets, 4).putInt(values.position());
+        }
+        
+        // Adds the buffers of the column to the list, ready to be written. The
+        // validity bitmap is left empty if there are no nulls.
+        public void getBuffers(int rows, ArrayList<ByteBuffer> buffers)
+        {
+            // Trailing nulls leave no bits set, so may be past the bitmap
+            if(validity.length < (rows + 7) / 8) validity = Arrays.copyOf(validity, (rows + 7) / 8);
+            
+            buffers.add(ByteBuffer.wrap(validity, 0, (nulls == 0) ? 0 : (rows + 7) / 8));
+            
+            if(offsets != null) buffers.add(ByteBuffer.wrap(offsets.array(), 0, offsets.position()));
+            
+            buffers.add(ByteBuffer.wrap(values.array(), 0, values.position()));
+        }
+    }
+}
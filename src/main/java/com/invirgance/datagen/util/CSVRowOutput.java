@@ -0,0 +1,125 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import com.invirgance.convirgance.ConvirganceException;
+import com.invirgance.convirgance.json.JSONObject;
+import com.invirgance.convirgance.output.Output;
+import com.invirgance.convirgance.target.Target;
+import java.io.IOException;
+
+/**
+ * Writes CSV with a {@link CSVRowWriter} in the column order of a schema. 
+ * Records written to the cursor are encoded by the types in the schema, and
+ * missing values are left empty. Generators that know the schema of their
+ * rows can skip building records and write values straight to the row 
+ * writer of the cursor. The header is written with the first row.
+ * 
+ * @author jbanes
+ */
+public class CSVRowOutput implements Output
+{
+    private Schema schema;
+    private char delimiter;
+
+    public CSVRowOutput(Schema schema)
+    {
+        this(schema, ',');
+    }
+    
+    public CSVRowOutput(Schema schema, char delimiter)
+    {
+        this.schema = schema;
+        this.delimiter = delimiter;
+    }
+
+    public Schema getSchema()
+    {
+        return schema;
+    }
+    
+    @Override
+    public Cursor write(Target target)
+    {
+        return new Cursor(new CSVRowWriter(target.getOutputStream(), delimiter));
+    }
+    
+    public class Cursor implements RowCursor
+    {
+        private CSVRowWriter writer;
+        private boolean header;
+
+        private Cursor(CSVRowWriter writer)
+        {
+            this.writer = writer;
+        }
+        
+        @Override
+        public Schema getSchema()
+        {
+            return schema;
+        }
+        
+        @Override
+        public CSVRowWriter getWriter()
+        {
+            try
+            {
+                if(!header) writer.writeHeader(schema);
+            }
+            catch(IOException e)
+            {
+                throw new ConvirganceException(e);
+            }
+            
+            header = true;
+            
+            return writer;
+        }
+        
+        @Override
+        public void write(JSONObject record)
+        {
+            try
+            {
+                RowCursor.write(record, schema, getWriter());
+            }
+            catch(IOException e)
+            {
+                throw new ConvirganceException(e);
+            }
+        }
+
+        @Override
+        public void close()
+        {
+            try
+            {
+                writer.close();
+            }
+            catch(IOException e)
+            {
+                throw new ConvirganceException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes delimited rows of typed values straight into a reusable buffer. 
+ * Numbers are formatted by hand and strings are encoded as UTF-8 a character
+ * at a time, so writing a row allocates nothing. Doubles are written as 
+ * Double.toString() would write them. Values are quoted only when they hold
+ * the delimiter, a quote or a line break. Rows end with a line feed.
+ * 
+ * @author jbanes
+ */
+public class CSVRowWriter implements RowWriter
+{
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int NUMBER_SIZE = 32;
+    
+    // Decimals with up to 15 significant digits map to distinct doubles
+    private static final double MAX_EXACT = 1e15;
+    
+    private static final double[] POWERS = new double[16];
+    private static final long[] LONG_POWERS = new long[16];
+    
+    static
+    {
+        POWERS[0] = 1;
+        LONG_POWERS[0] = 1;
+        
+        for(int i=1; i<POWERS.length; i++)
+        {
+            POWERS[i] = POWERS[i - 1] * 10;
+            LONG_POWERS[i] = LONG_POWERS[i - 1] * 10;
+        }
+    }
+    
+    private OutputStream out;
+    private byte delimiter;
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private byte[] digits = new byte[20];
+    private int position;
+    private int column;
+
+    public CSVRowWriter(OutputStream out, char delimiter)
+    {
+        if(delimiter > 127) throw new IllegalArgumentException("Delimiter must be ASCII: " + delimiter);
+        
+        this.out = out;
+        this.delimiter = (byte)delimiter;
+    }
+    
+    private void ensure(int length) throws IOException
+    {
+        if(position + length > buffer.length) flush();
+    }
+    
+    private void next() throws IOException
+    {
+        ensure(NUMBER_SIZE);
+        
+        if(column++ > 0) buffer[position++] = delimiter;
+    }
+    
+    public void writeHeader(Schema schema) throws IOException
+    {
+        for(int i=0; i<schema.size(); i++) writeString(schema.getName(i));
+        
+        endRow();
+    }
+    
+    @Override
+    public void writeNull() throws IOException
+    {
+        next();
+    }
+    
+    @Override
+    public void writeInt(int value) throws IOException
+    {
+        writeLong(value);
+    }
+    
+    @Override
+    public void writeLong(long value) throws IOException
+    {
+        next();
+        appendLong(value);
+    }
+    
+    private void appendLong(long value)
+    {
+        int count = 0;
+        
+        if(value == Long.MIN_VALUE)
+        {
+            appendASCII(Long.toString(value));
+            return;
+        }
+        
+        if(value < 0)
+        {
+            buffer[position++] = '-';
+            value = -value;
+        }
+        
+        do
+        {
+            digits[count++] = (byte)('0' + (value % 10));
+            value /= 10;
+        }
+        while(value > 0);
+        
+        while(count > 0) buffer[position++] = digits[--count];
+    }
+    
+    private void appendASCII(String text)
+    {
+        for(int i=0; i<text.length(); i++) buffer[position++] = (byte)text.charAt(i);
+    }
+    
+    @Override
+    public void writeDouble(double value) throws IOException
+    {
+        double absolute = Math.abs(value);
+        double scaled;
+        long mantissa;
+        long fraction;
+        int count;
+        
+        next();
+        
+        if(value == 0 && Double.doubleToRawLongBits(value) == 0)
+        {
+            appendASCII("0.0");
+            return;
+        }
+        
+        // Double.toString() writes plain decimals from 10^-3 up to 10^7. Look
+        // for the fewest decimal places that give back the same double.
+        if(absolute >= 1e-3 && absolute < 1e7)
+        {
+            for(int places=1; places<POWERS.length; places++)
+            {
+                scaled = absolute * POWERS[places];
+                
+                if(scaled >= MAX_EXACT) break;
+                
+                mantissa = Math.round(scaled);
+                
+                if(mantissa / POWERS[places] != absolute) continue;
+                
+                if(value < 0) buffer[position++] = '-';
+                
+                appendLong(mantissa / LONG_POWERS[places]);
+                buffer[position++] = '.';
+                
+                fraction = mantissa % LONG_POWERS[places];
+                
+                for(count=places-1; count>0 && fraction < LONG_POWERS[count]; count--) buffer[position++] = '0';
+                
+                appendLong(fraction);
+                return;
+            }
+        }
+        
+        // Zero, very large or small values and the rare values needing 16 or 
+        // more digits
+        appendASCII(Double.toString(value));
+    }
+    
+    @Override
+    public void writeString(String value) throws IOException
+    {
+        boolean quote = false;
+        char c;
+        
+        if(value == null)
+        {
+            writeNull();
+            return;
+        }
+        
+        next();
+        
+        for(int i=0; i<value.length() && !quote; i++)
+        {
+            c = value.charAt(i);
+            quote = (c == delimiter || c == '"' || c == '\n' || c == '\r');
+        }
+        
+        if(quote) buffer[position++] = '"';
+        
+        for(int i=0; i<value.length(); i++)
+        {
+            ensure(8);
+            
+            c = value.charAt(i);
+            
+            if(c < 0x80)
+            {
+                if(c == '"') buffer[position++] = '"';
+                
+                buffer[position++] = (byte)c;
+            }
+            else if(c < 0x800)
+            {
+                buffer[position++] = (byte)(0xC0 | (c >> 6));
+                buffer[position++] = (byte)(0x80 | (c & 0x3F));
+            }
+            else if(Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1)))
+            {
+                appendCodePoint(Character.toCodePoint(c, value.charAt(++i)));
+            }
+            else if(Character.isSurrogate(c))
+            {
+                buffer[position++] = '?'; // Unpaired, as the JDK encoder does
+            }
+            else
+            {
+                buffer[position++] = (byte)(0xE0 | (c >> 12));
+                buffer[position++] = (byte)(0x80 | ((c >> 6) & 0x3F));
+                buffer[position++] = (byte)(0x80 | (c & 0x3F));
+            }
+        }
+        
+        ensure(1);
+        
+        if(quote) buffer[position++] = '"';
+    }
+    
+    private void appendCodePoint(int code)
+    {
+        buffer[position++] = (byte)(0xF0 | (code >> 18));
+        buffer[position++] = (byte)(0x80 | ((code >> 12) & 0x3F));
+        buffer[position++] = (byte)(0x80 | ((code >> 6) & 0x3F));
+        buffer[position++] = (byte)(0x80 | (code & 0x3F));
+    }
+    
+    @Override
+    public void endRow() throws IOException
+    {
+        ensure(1);
+        
+        buffer[position++] = '\n';
+        column = 0;
+    }
+    
+    public void flush() throws IOException
+    {
+        out.write(buffer, 0, position);
+        
+        position = 0;
+    }
+    
+    public void close() throws IOException
+    {
+        flush();
+        out.close();
+    }
+}
@@ -25,8 +25,12 @@ import com.invirgance.convirgance.json.JSONArray;
 import com.invirgance.convirgance.json.JSONObject;
 import com.invirgance.convirgance.transform.filter.Filter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  *
@@ -35,10 +39,14 @@ import java.util.Iterator;
 public class CachedIterable implements Iterable<JSONObject>
 {
     private JSONArray<JSONObject> cache;
-    private JSONObject[] lookup;
-    private int floor;
+    private volatile IdIndex index;
     
-    private HashMap<String,JSONArray<JSONObject>[]> groups;
+    // Set when this is a view over a group of rows in another cache
+    private int[] rows;
+    private int offset;
+    private int length;
+    
+    private ConcurrentHashMap<String,GroupIndex> groups = new ConcurrentHashMap<>();
     
     public CachedIterable(Iterable<JSONObject> iterable)
     {
@@ -55,99 +63,224 @@ public class CachedIterable implements Iterable<JSONObject>
             cache.add(record);
         }
     }
+    
+    private CachedIterable(JSONArray<JSONObject> cache, int[] rows, int offset, int length)
+    {
+        this.cache = cache;
+        this.rows = rows;
+        this.offset = offset;
+        this.length = length;
+    }
 
     @Override
     public Iterator<JSONObject> iterator()
     {
-        return cache.iterator();
+        if(rows == null) return cache.iterator();
+        
+        return new Iterator<JSONObject>() {
+            
+            private int index = 0;
+            
+            @Override
+            public boolean hasNext()
+            {
+                return (index < length);
+            }
+
+            @Override
+            public JSONObject next()
+            {
+                if(index >= length) throw new NoSuchElementException();
+                
+                return cache.get(rows[offset + index++]);
+            }
+        };
     }
     
     public JSONObject get(int index)
     {
-        return this.cache.get(index);
+        if(rows == null) return this.cache.get(index);
+        if(index < 0 || index >= length) throw new IndexOutOfBoundsException(index);
+        
+        return this.cache.get(rows[offset + index]);
     }
     
-    private JSONObject find(int id, int min, int max)
+    // Synchronized so that caches shared between threads build the index once
+    private synchronized IdIndex getIndex()
     {
-        int offset = ((max-min) >> 1) + min;
-        JSONObject record = cache.get(offset);
-        int recordId = record.getInt("id");
+        IdIndex index = this.index;
+        int[] ids;
         
-        if(recordId == id) return record;
-        if(min >= max) throw new IllegalArgumentException("id " + id + " not found in cache!");
-        if(id < recordId) return find(id, min, offset); 
-        if(id > recordId) return find(id, offset, max); 
+        if(index == null)
+        {
+            ids = new int[size()];
+            
+            for(int i=0; i<ids.length; i++) ids[i] = get(i).getInt("id");
+            
+            index = IdIndex.build(ids, ids.length);
             
-        throw new IllegalArgumentException("id " + id + " not found in cache!");
+            this.index = index;
+        }
+        
+        return index;
     }
     
+    /**
+     * Returns the record with the given id, or null if there is no such 
+     * record. The id index is built on the first call.
+     */
     public JSONObject find(int id)
     {
-        int size = cache.get(cache.size()-1).getInt("id") - cache.get(0).getInt("id") + 1;
+        IdIndex index = this.index;
+        int row;
         
-        if(size > (1024 * 1024)) return find(id, 0, cache.size());
+        if(index == null) index = getIndex();
         
-        if(lookup == null)
-        {
-            lookup = new JSONObject[size+1];
-            floor = cache.get(0).getInt("id");
-
-            for(JSONObject record : cache) lookup[record.getInt("id") - floor] = record;
-        }
+        row = index.find(id);
         
-        return lookup[id - floor];
+        return (row < 0) ? null : get(row);
     }
     
     public JSONObject first()
     {
-        if(cache.size() < 1) return null;
+        if(size() < 1) return null;
         
-        return cache.get(0);
+        return get(0);
     }
     
     public JSONObject last()
     {
-        if(cache.size() < 1) return null;
+        if(size() < 1) return null;
         
-        return cache.get(cache.size()-1);
+        return get(size()-1);
     }
     
     public int size()
     {
-        return cache.size();
+        return (rows == null) ? cache.size() : length;
     }
     
+    /**
+     * Returns a view of the records matching the filter. The records are not
+     * copied; the view only holds the positions of the matching rows.
+     */
     public CachedIterable getFiltered(Filter filter)
     {
-        return new CachedIterable(filter.transform(cache));
+        int size = size();
+        int[] selected = new int[size];
+        int count = 0;
+        
+        for(int i=0; i<size; i++)
+        {
+            if(filter.test(get(i))) selected[count++] = (rows == null) ? i : rows[offset + i];
+        }
+        
+        return new CachedIterable(cache, Arrays.copyOf(selected, count), 0, count);
+    }
+    
+    /**
+     * Returns a view of the records present in both this and the other view.
+     * Both must be views of the same cache. Records are returned in the order
+     * of the underlying cache.
+     */
+    public CachedIterable and(CachedIterable other)
+    {
+        BitSet selection = getSelection(other);
+        
+        selection.and(other.getSelection(this));
+        
+        return getView(selection);
     }
     
-    public CachedIterable getGroup(String key, int value)
+    /**
+     * Returns a view of the records present in either this or the other view.
+     * Both must be views of the same cache. Records are returned in the order
+     * of the underlying cache.
+     */
+    public CachedIterable or(CachedIterable other)
+    {
+        BitSet selection = getSelection(other);
+        
+        selection.or(other.getSelection(this));
+        
+        return getView(selection);
+    }
+    
+    private BitSet getSelection(CachedIterable other)
     {
-        JSONArray<JSONObject>[] lookup;
-        int id;
+        BitSet selection = new BitSet(cache.size());
         
-        if(groups == null) groups = new HashMap<>();
+        if(this.cache != other.cache) throw new IllegalArgumentException("Views must share the same cache");
+        if(rows == null) selection.set(0, cache.size());
+        else for(int i=0; i<length; i++) selection.set(rows[offset + i]);
         
-        if(!groups.containsKey(key))
+        return selection;
+    }
+    
+    private CachedIterable getView(BitSet selection)
+    {
+        int[] selected = new int[selection.cardinality()];
+        int index = 0;
+        
+        for(int row=selection.nextSetBit(0); row>=0; row=selection.nextSetBit(row+1))
         {
-            lookup = new JSONArray[last().getInt(key)+1];
+            selected[index++] = row;
+        }
+        
+        return new CachedIterable(cache, selected, 0, selected.length);
+    }
+    
+    // Synchronized so that caches shared between threads build each index once
+    private synchronized GroupIndex getGroups(String key)
+    {
+        GroupIndex index = groups.get(key);
+        int[] keys;
+        
+        if(index == null)
+        {
+            keys = new int[size()];
             
-            groups.put(key, lookup);
+            for(int i=0; i<keys.length; i++) keys[i] = get(i).getInt(key);
             
-            for(JSONObject record : this)
-            {
-                id = record.getInt(key);
-                
-                if(lookup[id] == null) lookup[id] = new JSONArray<>();
-                
-                lookup[id].add(record);
-            }
+            index = new GroupIndex(keys, keys.length);
+            
+            groups.put(key, index);
         }
         
-        lookup = groups.get(key);
+        return index;
+    }
+    
+    /**
+     * Returns a view of the records whose key has the given value, in their
+     * original order. The records are not copied. An index is built for each
+     * key on first use, so any number of keys can be grouped on one cache. 
+     * Keys do not need to be sorted.
+     */
+    public CachedIterable getGroup(String key, int value)
+    {
+        GroupIndex index = groups.get(key);
+        int[] rows;
+        int group;
+        
+        if(index == null) index = getGroups(key);
+        
+        group = index.indexOf(value);
+        
+        if(group < 0) return new CachedIterable(cache, new int[0], 0, 0);
+        
+        rows = index.getRows();
+        
+        // Views of views resolve straight to the underlying cache
+        if(this.rows != null)
+        {
+            rows = Arrays.copyOfRange(rows, index.getOffset(group), index.getOffset(group) + index.getSize(group));
+            
+            for(int i=0; i<rows.length; i++) rows[i] = this.rows[this.offset + rows[i]];
+            
+            return new CachedIterable(cache, rows, 0, rows.length);
+        }
         
-        return new CachedIterable(lookup[value]);
+        return new CachedIterable(cache, rows, index.getOffset(group), index.getSize(group));
     }
     
     public String[] toStringArray(String key)
@@ -0,0 +1,380 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import com.invirgance.convirgance.json.JSONObject;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Column oriented alternative to CachedIterable. Each requested key is held 
+ * in a typed array (int, long, double or dictionary encoded strings) so that
+ * generators can read values by row without hash lookups or boxing. The type
+ * of each column is inferred from the values it holds, widening from int to
+ * long to double to string as needed.
+ * 
+ * @author jbanes
+ */
+public class ColumnCache implements Iterable<JSONObject>
+{
+    public static final int INT = 0;
+    public static final int LONG = 1;
+    public static final int DOUBLE = 2;
+    public static final int STRING = 3;
+    
+    private String[] names;
+    private Column[] columns;
+    private int size;
+    
+    private IdIndex index;
+
+    public ColumnCache(Iterable<JSONObject> iterable, String... names)
+    {
+        this.names = names;
+        this.columns = new Column[names.length];
+        
+        for(int i=0; i<names.length; i++) columns[i] = new Column();
+        
+        for(JSONObject record : iterable)
+        {
+            for(int i=0; i<names.length; i++) columns[i].add(size, record.get(names[i]));
+            
+            size++;
+        }
+        
+        for(Column column : columns) column.trim(size);
+        
+        // Built up front so that lookups from multiple threads need no locking
+        for(int i=0; i<names.length; i++)
+        {
+            if(names[i].equals("id") && columns[i].type == INT && columns[i].nulls == null) 
+            {
+                index = IdIndex.build(columns[i].ints, size);
+            }
+        }
+    }
+    
+    public int size()
+    {
+        return size;
+    }
+    
+    public String[] getColumns()
+    {
+        return names.clone();
+    }
+    
+    public int getColumn(String name)
+    {
+        for(int i=0; i<names.length; i++)
+        {
+            if(names[i].equals(name)) return i;
+        }
+        
+        throw new IllegalArgumentException("Column " + name + " is not cached");
+    }
+    
+    public int getType(int column)
+    {
+        return columns[column].type;
+    }
+    
+    /**
+     * Returns the row holding the given id, or -1 if there is no such row.
+     * Requires an "id" column holding unique, non-null ints.
+     */
+    public int find(int id)
+    {
+        if(index == null) throw new IllegalStateException("No usable id column is cached");
+        
+        return index.find(id);
+    }
+    
+    /**
+     * Returns the rows where the column is equal to the value, in row order.
+     */
+    public int[] select(int column, Object value)
+    {
+        Column data = columns[column];
+        int[] selected = new int[size];
+        int count = 0;
+        Integer code;
+        
+        if(data.type == STRING && value != null)
+        {
+            code = data.codes.get(value.toString());
+            
+            if(code == null) return new int[0];
+            
+            for(int i=0; i<size; i++)
+            {
+                if(data.strings[i] == code && !isNull(column, i)) selected[count++] = i;
+            }
+            
+            return Arrays.copyOf(selected, count);
+        }
+        
+        for(int i=0; i<size; i++)
+        {
+            if(value == null ? isNull(column, i) : value.equals(get(column, i))) selected[count++] = i;
+        }
+        
+        return Arrays.copyOf(selected, count);
+    }
+    
+    public boolean isNull(int column, int row)
+    {
+        BitSet nulls = columns[column].nulls;
+        
+        return (nulls != null && nulls.get(row));
+    }
+    
+    public int getInt(int column, int row)
+    {
+        Column data = columns[column];
+        
+        switch(data.type)
+        {
+            case INT: return data.ints[row];
+            case LONG: return (int)data.longs[row];
+            case DOUBLE: return (int)data.doubles[row];
+            default: return isNull(column, row) ? 0 : Integer.parseInt(data.dictionary[data.strings[row]]);
+        }
+    }
+    
+    public long getLong(int column, int row)
+    {
+        Column data = columns[column];
+        
+        switch(data.type)
+        {
+            case INT: return data.ints[row];
+            case LONG: return data.longs[row];
+            case DOUBLE: return (long)data.doubles[row];
+            default: return isNull(column, row) ? 0 : Long.parseLong(data.dictionary[data.strings[row]]);
+        }
+    }
+    
+    public double getDouble(int column, int row)
+    {
+        Column data = columns[column];
+        
+        switch(data.type)
+        {
+            case INT: return data.ints[row];
+            case LONG: return data.longs[row];
+            case DOUBLE: return data.doubles[row];
+            default: return isNull(column, row) ? 0 : Double.parseDouble(data.dictionary[data.strings[row]]);
+        }
+    }
+    
+    public String getString(int column, int row)
+    {
+        Column data = columns[column];
+        
+        if(isNull(column, row)) return null;
+        
+        switch(data.type)
+        {
+            case INT: return Integer.toString(data.ints[row]);
+            case LONG: return Long.toString(data.longs[row]);
+            case DOUBLE: return Double.toString(data.doubles[row]);
+            default: return data.dictionary[data.strings[row]];
+        }
+    }
+    
+    /**
+     * Returns the value boxed in the same type it was read as.
+     */
+    public Object get(int column, int row)
+    {
+        Column data = columns[column];
+        
+        if(isNull(column, row)) return null;
+        
+        switch(data.type)
+        {
+            case INT: return data.ints[row];
+            case LONG: return data.longs[row];
+            case DOUBLE: return data.doubles[row];
+            default: return data.dictionary[data.strings[row]];
+        }
+    }
+    
+    public JSONObject getRecord(int row)
+    {
+        JSONObject record = new JSONObject();
+        
+        for(int i=0; i<names.length; i++) record.put(names[i], get(i, row));
+        
+        return record;
+    }
+
+    @Override
+    public Iterator<JSONObject> iterator()
+    {
+        return new Iterator<JSONObject>() {
+            
+            private int row = 0;
+            
+            @Override
+            public boolean hasNext()
+            {
+                return (row < size);
+            }
+
+            @Override
+            public JSONObject next()
+            {
+                if(row >= size) throw new NoSuchElementException();
+                
+                return getRecord(row++);
+            }
+        };
+    }
+    
+    private static class Column
+    {
+        private int type = INT;
+        private int[] ints = new int[16];
+        private long[] longs;
+        private double[] doubles;
+        private int[] strings;
+        private String[] dictionary;
+        private HashMap<String,Integer> codes;
+        private BitSet nulls;
+        
+        private static int getType(Object value)
+        {
+            if(value instanceof Integer || value instanceof Short || value instanceof Byte) return INT;
+            if(value instanceof Long) return LONG;
+            if(value instanceof Number) return DOUBLE;
+            
+            return STRING;
+        }
+        
+        private void widen(int type, int size)
+        {
+            if(type <= this.type) return;
+            
+            if(type == LONG)
+            {
+                longs = new long[ints.length];
+                
+                for(int i=0; i<size; i++) longs[i] = ints[i];
+            }
+            else if(type == DOUBLE)
+            {
+                doubles = new double[(this.type == INT) ? ints.length : longs.length];
+                
+                for(int i=0; i<size; i++) doubles[i] = (this.type == INT) ? ints[i] : longs[i];
+            }
+            else
+            {
+                strings = new int[size + 16];
+                dictionary = new String[16];
+                codes = new HashMap<>();
+                
+                for(int i=0; i<size; i++)
+                {
+                    if(nulls != null && nulls.get(i)) continue;
+                    
+                    if(this.type == INT) strings[i] = encode(Integer.toString(ints[i]));
+                    else if(this.type == LONG) strings[i] = encode(Long.toString(longs[i]));
+                    else strings[i] = encode(Double.toString(doubles[i]));
+                }
+            }
+            
+            if(type != INT) ints = null;
+            if(type != LONG) longs = null;
+            if(type != DOUBLE) doubles = null;
+            
+            this.type = type;
+        }
+        
+        private int encode(String value)
+        {
+            Integer code = codes.get(value);
+            
+            if(code == null)
+            {
+                code = codes.size();
+                
+                if(code >= dictionary.length) dictionary = Arrays.copyOf(dictionary, dictionary.length * 2);
+                
+                dictionary[code] = value;
+                codes.put(value, code);
+            }
+            
+            return code;
+        }
+        
+        private void grow(int size)
+        {
+            int length = Math.max(16, size * 2);
+            
+            switch(type)
+            {
+                case INT: if(size >= ints.length) ints = Arrays.copyOf(ints, length); break;
+                case LONG: if(size >= longs.length) longs = Arrays.copyOf(longs, length); break;
+                case DOUBLE: if(size >= doubles.length) doubles = Arrays.copyOf(doubles, length); break;
+                default: if(size >= strings.length) strings = Arrays.copyOf(strings, length);
+            }
+        }
+        
+        public void add(int row, Object value)
+        {
+            if(value == null)
+            {
+                if(nulls == null) nulls = new BitSet();
+                
+                nulls.set(row);
+                grow(row);
+                
+                return;
+            }
+            
+            widen(getType(value), row);
+            grow(row);
+            
+            switch(type)
+            {
+                case INT: ints[row] = ((Number)value).intValue(); break;
+                case LONG: longs[row] = ((Number)value).longValue(); break;
+                case DOUBLE: doubles[row] = ((Number)value).doubleValue(); break;
+                default: strings[row] = encode(value.toString());
+            }
+        }
+        
+        public void trim(int size)
+        {
+            if(ints != null) ints = Arrays.copyOf(ints, size);
+            if(longs != null) longs = Arrays.copyOf(longs, size);
+            if(doubles != null) doubles = Arrays.copyOf(doubles, size);
+            if(strings != null) strings = Arrays.copyOf(strings, size);
+            if(dictionary != null) dictionary = Arrays.copyOf(dictionary, codes.size());
+        }
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import com.invirgance.convirgance.ConvirganceException;
+import com.invirgance.convirgance.json.JSONObject;
+import com.invirgance.convirgance.output.Output;
+import com.invirgance.convirgance.output.OutputCursor;
+import com.invirgance.convirgance.target.Target;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a file that can be built from part files encoded in parallel. The
+ * parts are complete files in the output format, written by the output 
+ * returned from the cursor's getOutput(), and are appended to the file in order with 
+ * FileChannel.transferTo() so the bytes never pass through the JVM. Only 
+ * the first CSV header is kept. JSON parts written as arrays are joined 
+ * into a single array, while parts written one record per line are simply
+ * concatenated.
+ * <br><br>
+ * Records may also be written to the cursor directly, but not mixed with 
+ * appended parts. The target passed to write() is not used.
+ * 
+ * @author jbanes
+ */
+public class ConcatenatedOutput implements Output
+{
+    private Output output;
+    private String format;
+    private File file;
+    private boolean header;
+
+    public ConcatenatedOutput(Output output, String format, File file)
+    {
+        this(output, format, file, true);
+    }
+    
+    /**
+     * The header may be turned off for CSV files that are appended to a 
+     * file which already has one.
+     */
+    public ConcatenatedOutput(Output output, String format, File file, boolean header)
+    {
+        if(!isSupported(format)) throw new IllegalArgumentException("Parts cannot be concatenated in format " + format);
+        
+        this.output = output;
+        this.format = format;
+        this.file = file;
+        this.header = header;
+    }
+    
+    public static boolean isSupported(String format)
+    {
+        return (format.equals("csv") || format.equals("json"));
+    }
+    
+    @Override
+    public Cursor write(Target target)
+    {
+        try
+        {
+            return new Cursor(FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING));
+        }
+        catch(IOException e)
+        {
+            throw new ConvirganceException(e);
+        }
+    }
+    
+    public class Cursor implements OutputCursor
+    {
+        private FileChannel channel;
+        private OutputCursor cursor;
+        private boolean appended;
+        private boolean array;
+        private boolean first = true;
+
+        private Cursor(FileChannel channel)
+        {
+            this.channel = channel;
+        }
+        
+        /**
+         * The output to encode part files with.
+         */
+        public Output getOutput()
+        {
+            return output;
+        }
+        
+        private OutputCursor getCursor()
+        {
+            OutputStream out = Channels.newOutputStream(channel);
+            Target target = () -> out;
+            
+            if(appended) throw new IllegalStateException("Records cannot be written after parts have been appended");
+            
+            if(cursor == null) cursor = output.write(header ? target : new HeaderlessTarget(target));
+            
+            return cursor;
+        }
+        
+        private byte read(FileChannel in, long position) throws IOException
+        {
+            ByteBuffer buffer = ByteBuffer.allocate(1);
+            
+            if(in.read(buffer, position) < 1) throw new IOException("Unexpected end of part file at " + position);
+            
+            return buffer.get(0);
+        }
+        
+        private long indexOf(FileChannel in, long position, long end, byte value) throws IOException
+        {
+            ByteBuffer buffer = ByteBuffer.allocate(8192);
+            int read;
+            
+            while(position < end)
+            {
+                buffer.clear();
+                
+                if((read = in.read(buffer, position)) < 1) break;
+                
+                for(int i=0; i<read; i++)
+                {
+                    if(buffer.get(i) == value) return position + i;
+                }
+                
+                position += read;
+            }
+            
+            return end;
+        }
+        
+        private long skipWhitespace(FileChannel in, long position, long end) throws IOException
+        {
+            while(position < end && Character.isWhitespace(read(in, position))) position++;
+            
+            return position;
+        }
+        
+        private void write(String text) throws IOException
+        {
+            ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+            
+            while(buffer.hasRemaining()) channel.write(buffer);
+        }
+        
+        private void transfer(FileChannel in, long position, long end) throws IOException
+        {
+            while(position < end) position += in.transferTo(position, end - position, channel);
+        }
+        
+        private void appendCSV(FileChannel in, long size) throws IOException
+        {
+            long position = 0;
+            
+            // Skip the header of every part but the first
+            if(!first || !header) position = indexOf(in, 0, size, (byte)'\n') + 1;
+            
+            if(position >= size) return;
+            
+            transfer(in, position, size);
+            
+            first = false;
+        }
+        
+        private void appendJSON(FileChannel in, long size) throws IOException
+        {
+            long start = skipWhitespace(in, 0, size);
+            long end = size;
+            
+            if(start >= size) return;
+            
+            if(read(in, start) != '[')
+            {
+                transfer(in, 0, size);
+                
+                first = false;
+                return;
+            }
+            
+            // Unwrap the array and join the records with a comma
+            while(end > start && Character.isWhitespace(read(in, end - 1))) end--;
+            
+            if(end <= start + 1 || read(in, end - 1) != ']') throw new IOException("Part file is not a complete JSON array");
+            
+            end--;
+            start++;
+            
+            if(skipWhitespace(in, start, end) >= end) return;
+            
+            write(first ? "[" : ",");
+            transfer(in, start, end);
+            
+            array = true;
+            first = false;
+        }
+        
+        /**
+         * Appends a part file encoded with getOutput(). Empty parts are 
+         * skipped.
+         */
+        public void append(File part)
+        {
+            if(cursor != null) throw new IllegalStateException("Parts cannot be appended after records have been written");
+            
+            appended = true;
+            
+            try(FileChannel in = FileChannel.open(part.toPath(), StandardOpenOption.READ))
+            {
+                if(format.equals("csv")) appendCSV(in, in.size());
+                else appendJSON(in, in.size());
+            }
+            catch(IOException e)
+            {
+                throw new ConvirganceException(e);
+            }
+        }
+        
+        @Override
+        public void write(JSONObject record)
+        {
+            getCursor().write(record);
+        }
+
+        @Override
+        public void close()
+        {
+            try
+            {
+                if(array) write("]");
+                
+                // Let the output write an empty file in its own format
+                if(first && cursor == null)
+                {
+                    appended = false;
+                    getCursor();
+                }
+                
+                if(cursor != null) cursor.close();
+            }
+            catch(IOException e)
+            {
+                throw new ConvirganceException(e);
+            }
+            finally
+            {
+                try
+                {
+                    channel.close();
+                }
+                catch(IOException e)
+                {
+                    throw new ConvirganceException(e);
+                }
+            }
+        }
+    }
+}
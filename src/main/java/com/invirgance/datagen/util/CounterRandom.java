@@ -0,0 +1,60 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Counter based random generator. The nth value is a pure function of the 
+ * key and n, so a generator for any position in the data can be created 
+ * directly from the keys that identify it (see {@link Seeds#derive}) 
+ * without replaying the values before it. Each value is the SplitMix64 
+ * finalizer applied to the key plus n times the golden gamma.
+ * 
+ * @author jbanes
+ */
+public class CounterRandom implements RandomGenerator
+{
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    
+    private long key;
+    private long counter;
+
+    public CounterRandom(long key)
+    {
+        this.key = key;
+    }
+    
+    /**
+     * Returns the value at the given position of the stream for the key.
+     */
+    public static long get(long key, long counter)
+    {
+        return Seeds.mix(key + (counter + 1) * GOLDEN_GAMMA);
+    }
+
+    @Override
+    public long nextLong()
+    {
+        return get(key, counter++);
+    }
+}
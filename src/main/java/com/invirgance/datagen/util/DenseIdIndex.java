@@ -0,0 +1,65 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import java.util.Arrays;
+
+/**
+ * Index holding a row for every id between the lowest and highest id. A
+ * lookup is a single array read.
+ * 
+ * @author jbanes
+ */
+public class DenseIdIndex implements IdIndex
+{
+    private int floor;
+    private int[] rows;
+
+    public DenseIdIndex(int[] ids, int size)
+    {
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        
+        for(int i=0; i<size; i++)
+        {
+            min = Math.min(min, ids[i]);
+            max = Math.max(max, ids[i]);
+        }
+        
+        this.floor = min;
+        this.rows = new int[(size > 0) ? (int)((long)max - min + 1) : 0];
+        
+        Arrays.fill(rows, -1);
+        
+        for(int i=0; i<size; i++) rows[ids[i] - floor] = i;
+    }
+
+    @Override
+    public int find(int id)
+    {
+        int index = id - floor;
+        
+        if(index < 0 || index >= rows.length) return -1;
+        
+        return rows[index];
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+/**
+ * Keyed, bijective shuffle of the numbers from 0 up to a size. A balanced 
+ * Feistel network permutes the smallest even power of two covering the size,
+ * and results outside the range are fed back through the network until they
+ * land inside it (cycle walking). The domain is never more than four times 
+ * the size, so each lookup takes a handful of rounds and no memory.
+ * 
+ * @author jbanes
+ */
+public class FeistelPermutation
+{
+    private static final int ROUNDS = 4;
+    
+    private long size;
+    private int half;
+    private long mask;
+    private long[] keys = new long[ROUNDS];
+
+    public FeistelPermutation(long size, long seed)
+    {
+        int bits = 2;
+        
+        if(size < 1) throw new IllegalArgumentException("Size must be at least 1: " + size);
+        if(size > (1L << 62)) throw new IllegalArgumentException("Size is too large: " + size);
+        
+        while(bits < 62 && (1L << bits) < size) bits += 2;
+        
+        this.size = size;
+        this.half = bits / 2;
+        this.mask = (1L << half) - 1;
+        
+        for(int i=0; i<ROUNDS; i++) keys[i] = Seeds.derive(seed, i);
+    }
+    
+    public long size()
+    {
+        return size;
+    }
+    
+    private long encrypt(long value)
+    {
+        long left = value >>> half;
+        long right = value & mask;
+        long swap;
+        
+        for(int i=0; i<ROUNDS; i++)
+        {
+            swap = right;
+            right = left ^ (Seeds.mix(right ^ keys[i]) & mask);
+            left = swap;
+        }
+        
+        return (left << half) | right;
+    }
+    
+    /**
+     * Returns the position the index is shuffled to. Every index in the range
+     * maps to a different position in the range.
+     */
+    public long get(long index)
+    {
+        long value = index;
+        
+        if(index < 0 || index >= size) throw new IndexOutOfBoundsException("Index " + index + " of " + size);
+        
+        do
+        {
+            value = encrypt(value);
+        }
+        while(value >= size);
+        
+        return value;
+    }
+}
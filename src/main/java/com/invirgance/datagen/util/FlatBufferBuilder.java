@@ -0,0 +1,286 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Builds FlatBuffers, as used for the metadata of Arrow IPC messages. Like 
+ * the reference builder, the buffer is filled from the back, so objects must
+ * be finished before the tables that refer to them are started. Offsets are
+ * counted from the end of the buffer. Only the parts of the format that 
+ * Arrow needs are provided, and every field is written even when it holds
+ * the default value.
+ * 
+ * @author jbanes
+ */
+public class FlatBufferBuilder
+{
+    private byte[] buffer;
+    private int space;
+    private int alignment = 1;
+    
+    private int[] vtable;
+    private int start;
+    private int elements;
+
+    public FlatBufferBuilder()
+    {
+        this(1024);
+    }
+    
+    public FlatBufferBuilder(int capacity)
+    {
+        this.buffer = new byte[capacity];
+        this.space = capacity;
+    }
+    
+    /**
+     * The offset of the last thing written, counted from the end of the 
+     * buffer.
+     */
+    public int offset()
+    {
+        return buffer.length - space;
+    }
+    
+    private void grow(int size)
+    {
+        int length = buffer.length;
+        int capacity = Math.max(length, 16);
+        byte[] grown;
+        
+        while(capacity - offset() < size) capacity *= 2;
+        
+        grown = new byte[capacity];
+        
+        System.arraycopy(buffer, 0, grown, capacity - length, length);
+        
+        buffer = grown;
+        space += capacity - length;
+    }
+    
+    private void pad(int count)
+    {
+        for(int i=0; i<count; i++) buffer[--space] = 0;
+    }
+    
+    // Pads so that a value of the given size is aligned once the additional 
+    // bytes after it have been written
+    private void prep(int size, int additional)
+    {
+        int padding = (-(offset() + additional)) & (size - 1);
+        
+        if(size > alignment) alignment = size;
+        if(space < padding + size + additional) grow(padding + size + additional);
+        
+        pad(padding);
+    }
+    
+    private void putByte(int value)
+    {
+        buffer[--space] = (byte)value;
+    }
+    
+    private void putShort(int value)
+    {
+        putByte(value >>> 8);
+        putByte(value);
+    }
+    
+    private void putInt(int value)
+    {
+        putShort(value >>> 16);
+        putShort(value);
+    }
+    
+    private void putLong(long value)
+    {
+        putInt((int)(value >>> 32));
+        putInt((int)value);
+    }
+    
+    private void putOffset(int offset)
+    {
+        prep(4, 0);
+        putInt(offset() - offset + 4);
+    }
+    
+    public int createString(String value)
+    {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        
+        prep(4, bytes.length + 1);
+        putByte(0);
+        
+        space -= bytes.length;
+        System.arraycopy(bytes, 0, buffer, space, bytes.length);
+        
+        putInt(bytes.length);
+        
+        return offset();
+    }
+    
+    /**
+     * Creates a vector of the objects at the offsets, such as tables or 
+     * strings.
+     */
+    public int createVector(int... offsets)
+    {
+        prep(4, offsets.length * 4);
+        
+        for(int i=offsets.length-1; i>=0; i--) putOffset(offsets[i]);
+        
+        putInt(offsets.length);
+        
+        return offset();
+    }
+    
+    /**
+     * Starts a vector of structs. The structs are then added with putStruct()
+     * in reverse order, followed by endVector().
+     */
+    public void startVector(int size, int count, int alignment)
+    {
+        elements = count;
+        
+        prep(4, size * count);
+        prep(alignment, size * count);
+    }
+    
+    public int endVector()
+    {
+        putInt(elements);
+        
+        return offset();
+    }
+    
+    /**
+     * Writes a struct of longs and ints, given in the order they are laid 
+     * out. Ints are padded to eight bytes so that the longs that follow are
+     * aligned.
+     */
+    public void putStruct(long... values)
+    {
+        prep(8, (values.length - 1) * 8);
+        
+        for(int i=values.length-1; i>=0; i--) putLong(values[i]);
+    }
+    
+    public void startTable(int fields)
+    {
+        vtable = new int[fields];
+        start = offset();
+    }
+    
+    public FlatBufferBuilder addByte(int field, int value)
+    {
+        prep(1, 0);
+        putByte(value);
+        vtable[field] = offset();
+        
+        return this;
+    }
+    
+    public FlatBufferBuilder addBoolean(int field, boolean value)
+    {
+        return addByte(field, value ? 1 : 0);
+    }
+    
+    public FlatBufferBuilder addShort(int field, int value)
+    {
+        prep(2, 0);
+        putShort(value);
+        vtable[field] = offset();
+        
+        return this;
+    }
+    
+    public FlatBufferBuilder addInt(int field, int value)
+    {
+        prep(4, 0);
+        putInt(value);
+        vtable[field] = offset();
+        
+        return this;
+    }
+    
+    public FlatBufferBuilder addLong(int field, long value)
+    {
+        prep(8, 0);
+        putLong(value);
+        vtable[field] = offset();
+        
+        return this;
+    }
+    
+    public FlatBufferBuilder addOffset(int field, int offset)
+    {
+        putOffset(offset);
+        vtable[field] = offset();
+        
+        return this;
+    }
+    
+    /**
+     * Finishes the table and writes its vtable in front of it. Returns the
+     * offset of the table.
+     */
+    public int endTable()
+    {
+        int table;
+        
+        prep(4, 0);
+        putInt(0);
+        
+        table = offset();
+        
+        if(space < (vtable.length + 2) * 2) grow((vtable.length + 2) * 2);
+        
+        for(int i=vtable.length-1; i>=0; i--) putShort((vtable[i] == 0) ? 0 : table - vtable[i]);
+        
+        putShort(table - start);
+        putShort((vtable.length + 2) * 2);
+        
+        // The table points back to its vtable
+        buffer[buffer.length - table] = (byte)(offset() - table);
+        buffer[buffer.length - table + 1] = (byte)((offset() - table) >>> 8);
+        buffer[buffer.length - table + 2] = (byte)((offset() - table) >>> 16);
+        buffer[buffer.length - table + 3] = (byte)((offset() - table) >>> 24);
+        
+        vtable = null;
+        
+        return table;
+    }
+    
+    /**
+     * Writes the offset of the root table and returns the finished buffer.
+     */
+    public byte[] finish(int root)
+    {
+        prep(alignment, 4);
+        putOffset(root);
+        
+        return Arrays.copyOfRange(buffer, space, buffer.length);
+    }
+}
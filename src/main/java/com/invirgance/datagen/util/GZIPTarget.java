@@ -0,0 +1,56 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import com.invirgance.convirgance.target.Target;
+import java.io.OutputStream;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compresses everything written to the target with gzip, a block at a time
+ * on the threads of the pool. See {@link ParallelGZIPOutputStream}.
+ * 
+ * @author jbanes
+ */
+public class GZIPTarget implements Target
+{
+    private Target target;
+    private ForkJoinPool pool;
+    private int blockSize;
+    private int level;
+    private int window;
+
+    public GZIPTarget(Target target, ForkJoinPool pool, int blockSize, int level, int window)
+    {
+        this.target = target;
+        this.pool = pool;
+        this.blockSize = blockSize;
+        this.level = level;
+        this.window = window;
+    }
+
+    @Override
+    public OutputStream getOutputStream()
+    {
+        return new ParallelGZIPOutputStream(target.getOutputStream(), pool, blockSize, level, window);
+    }
+}
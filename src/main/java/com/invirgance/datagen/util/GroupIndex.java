@@ -0,0 +1,112 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import java.util.Arrays;
+
+/**
+ * Compressed sparse row index of the rows sharing each value of a key. The
+ * rows of every group are held back to back in a single array, in their 
+ * original order, with the start of each group recorded in an offsets 
+ * array. Keys do not need to be sorted or contiguous. Immutable once built.
+ * 
+ * @author jbanes
+ */
+public final class GroupIndex
+{
+    private final int[] offsets;
+    private final int[] rows;
+    private final IdIndex values;
+    
+    /**
+     * Builds the index from the key of each row.
+     */
+    public GroupIndex(int[] keys, int size)
+    {
+        long[] pairs = new long[size];
+        int[] distinct = new int[size];
+        int[] starts = new int[size+1];
+        int groups = 0;
+        int key;
+        
+        // Sort (key, row) pairs so that rows stay in order within a group
+        for(int i=0; i<size; i++) 
+        {
+            pairs[i] = ((long)(keys[i] ^ Integer.MIN_VALUE) << 32) | i;
+        }
+        
+        Arrays.sort(pairs);
+        
+        this.rows = new int[size];
+        
+        for(int i=0; i<size; i++)
+        {
+            key = (int)(pairs[i] >>> 32) ^ Integer.MIN_VALUE;
+            rows[i] = (int)pairs[i];
+            
+            if(groups == 0 || distinct[groups-1] != key)
+            {
+                distinct[groups] = key;
+                starts[groups++] = i;
+            }
+        }
+        
+        starts[groups] = size;
+        
+        this.offsets = Arrays.copyOf(starts, groups+1);
+        this.values = IdIndex.build(distinct, groups);
+    }
+    
+    /**
+     * Returns the group holding the key, or -1 if no row has the key.
+     */
+    public int indexOf(int key)
+    {
+        return values.find(key);
+    }
+    
+    public int getGroupCount()
+    {
+        return offsets.length - 1;
+    }
+    
+    /**
+     * Returns the position in {@link #getRows()} of the first row of the group.
+     */
+    public int getOffset(int group)
+    {
+        return offsets[group];
+    }
+    
+    public int getSize(int group)
+    {
+        return offsets[group+1] - offsets[group];
+    }
+    
+    /**
+     * Returns the shared row array. Callers must not modify it.
+     */
+    public int[] getRows()
+    {
+        return rows;
+    }
+}
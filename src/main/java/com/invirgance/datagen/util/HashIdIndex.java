@@ -0,0 +1,79 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+/**
+ * Open addressing hash table from id to row using linear probing. The table
+ * is kept at most half full so that probe sequences stay short.
+ * 
+ * @author jbanes
+ */
+public class HashIdIndex implements IdIndex
+{
+    private int[] keys;
+    private int[] rows; // Row + 1 so that zero marks an empty slot
+    private int mask;
+    private int shift;
+
+    public HashIdIndex(int[] ids, int size)
+    {
+        int capacity = Integer.highestOneBit(Math.max(size, 1) * 2 - 1) << 1;
+        int slot;
+        
+        this.keys = new int[capacity];
+        this.rows = new int[capacity];
+        this.mask = capacity - 1;
+        this.shift = 32 - Integer.numberOfTrailingZeros(capacity);
+        
+        for(int i=0; i<size; i++)
+        {
+            slot = slot(ids[i]);
+            
+            while(rows[slot] != 0 && keys[slot] != ids[i]) slot = (slot + 1) & mask;
+            
+            keys[slot] = ids[i];
+            rows[slot] = i + 1;
+        }
+    }
+    
+    // Fibonacci hashing spreads sequential and strided ids across the table
+    private int slot(int id)
+    {
+        return (int)((id * 0x9E3779B97F4A7C15L) >>> 32 >>> shift) & mask;
+    }
+
+    @Override
+    public int find(int id)
+    {
+        int slot = slot(id);
+        int row;
+        
+        while((row = rows[slot]) != 0)
+        {
+            if(keys[slot] == id) return row - 1;
+            
+            slot = (slot + 1) & mask;
+        }
+        
+        return -1;
+    }
+}
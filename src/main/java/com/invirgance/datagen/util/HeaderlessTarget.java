@@ -0,0 +1,73 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import com.invirgance.convirgance.target.Target;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Drops everything up to and including the first line break written to the
+ * target. Used to leave the header row out of files that are appended to 
+ * another file that already has one.
+ * 
+ * @author jbanes
+ */
+public class HeaderlessTarget implements Target
+{
+    private Target target;
+
+    public HeaderlessTarget(Target target)
+    {
+        this.target = target;
+    }
+
+    @Override
+    public OutputStream getOutputStream()
+    {
+        return new FilterOutputStream(target.getOutputStream()) {
+            
+            private boolean header = true;
+            
+            @Override
+            public void write(int b) throws IOException
+            {
+                if(!header) out.write(b);
+                else if(b == '\n') header = false;
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException
+            {
+                int end = offset + length;
+                
+                while(header && offset < end)
+                {
+                    if(bytes[offset++] == '\n') header = false;
+                }
+                
+                if(offset < end) out.write(bytes, offset, end - offset);
+            }
+        };
+    }
+}
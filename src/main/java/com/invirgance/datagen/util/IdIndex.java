@@ -0,0 +1,62 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+/**
+ * Maps the integer ids of a cached table to the rows holding them. Indexes
+ * are immutable once built and can be shared freely between threads.
+ * 
+ * @author jbanes
+ */
+public interface IdIndex
+{
+    /**
+     * Returns the row holding the id, or -1 if the id is not in the index.
+     * If an id appears more than once, the last row holding it is returned.
+     */
+    public int find(int id);
+    
+    /**
+     * Builds the index best suited to the ids given. Ids spanning a range no
+     * more than four times the number of rows use a dense array. Very small
+     * tables use a sorted array, and everything else uses a hash table.
+     */
+    public static IdIndex build(int[] ids, int size)
+    {
+        long min = Integer.MAX_VALUE;
+        long max = Integer.MIN_VALUE;
+        long span;
+        
+        for(int i=0; i<size; i++)
+        {
+            min = Math.min(min, ids[i]);
+            max = Math.max(max, ids[i]);
+        }
+        
+        span = max - min + 1;
+        
+        if(size > 0 && (span <= 1024 || span <= size * 4L)) return new DenseIdIndex(ids, size);
+        if(size <= 64) return new SortedIdIndex(ids, size);
+        
+        return new HashIdIndex(ids, size);
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import com.invirgance.convirgance.ConvirganceException;
+import com.invirgance.convirgance.json.JSONObject;
+import com.invirgance.convirgance.output.Output;
+import com.invirgance.convirgance.output.OutputCursor;
+import com.invirgance.convirgance.target.Target;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+
+/**
+ * Writes records through another output, starting a new encoded segment 
+ * every time the value of the key changes or the segment reaches the block
+ * size. When the cursor is closed, a {@link RangeIndex} of the segments is
+ * written to the index file. Records with a missing key are indexed under 
+ * {@link Integer#MIN_VALUE}. The key may be null to only split into blocks.
+ * <br><br>
+ * Segments may be LZ4 compressed. Each segment is then a block holding the
+ * length of the encoded segment as a little endian int, followed by the 
+ * compressed bytes, so that segments can still be found and decoded one at
+ * a time.
+ * 
+ * @author jbanes
+ */
+public class IndexedOutput implements Output
+{
+    private Output output;
+    private String key;
+    private File index;
+    private int blockSize;
+    private boolean compressed;
+
+    public IndexedOutput(Output output, String key, File index)
+    {
+        this(output, key, index, Integer.MAX_VALUE);
+    }
+    
+    public IndexedOutput(Output output, String key, File index, int blockSize)
+    {
+        this(output, key, index, blockSize, false);
+    }
+    
+    public IndexedOutput(Output output, String key, File index, int blockSize, boolean compressed)
+    {
+        if(blockSize < 1) throw new IllegalArgumentException("Block size must be at least 1: " + blockSize);
+        
+        this.output = output;
+        this.key = key;
+        this.index = index;
+        this.blockSize = blockSize;
+        this.compressed = compressed;
+    }
+
+    @Override
+    public OutputCursor write(Target target)
+    {
+        CountingOutputStream out = new CountingOutputStream(target.getOutputStream());
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        Target segment = compressed ? () -> buffer : () -> out;
+        
+        return new OutputCursor() {
+            
+            private ArrayList<RangeIndex.Range> ranges = new ArrayList<>();
+            private OutputCursor cursor;
+            private byte[] block = new byte[0];
+            
+            private int current;
+            private long row;
+            private long start;
+            private long offset;
+            
+            private void compress() throws IOException
+            {
+                byte[] data = buffer.toByteArray();
+                int length;
+                
+                if(block.length < LZ4.getMaxCompressedLength(data.length) + 4) block = new byte[LZ4.getMaxCompressedLength(data.length) + 4];
+                
+                length = LZ4.compress(data, 0, data.length, block, 4);
+                
+                for(int i=0; i<4; i++) block[i] = (byte)(data.length >>> (i * 8));
+                
+                out.write(block, 0, length + 4);
+                buffer.reset();
+            }
+            
+            private void flush()
+            {
+                if(cursor == null) return;
+                
+                cursor.close();
+                
+                try
+                {
+                    if(compressed) compress();
+                }
+                catch(IOException e)
+                {
+                    throw new ConvirganceException(e);
+                }
+                
+                ranges.add(new RangeIndex.Range(current, start, (int)(row - start), offset, out.count - offset));
+                
+                cursor = null;
+            }
+            
+            @Override
+            public void write(JSONObject record)
+            {
+                Object value = (key == null) ? null : record.get(key);
+                int id = (value instanceof Number) ? ((Number)value).intValue() : Integer.MIN_VALUE;
+                
+                if(cursor != null && (id != current || row - start >= blockSize)) flush();
+                
+                if(cursor == null)
+                {
+                    current = id;
+                    start = row;
+                    offset = out.count;
+                    cursor = output.write(segment);
+                }
+                
+                cursor.write(record);
+                row++;
+            }
+
+            @Override
+            public void close()
+            {
+                try
+                {
+                    flush();
+                    out.finish();
+                }
+                catch(IOException e)
+                {
+                    throw new ConvirganceException(e);
+                }
+                
+                new RangeIndex(key, ranges.toArray(RangeIndex.Range[]::new), compressed).write(index);
+            }
+        };
+    }
+    
+    // Counts the bytes written and ignores close() from the segment cursors
+    private static class CountingOutputStream extends FilterOutputStream
+    {
+        private long count;
+
+        public CountingOutputStream(OutputStream out)
+        {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException
+        {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            flush();
+        }
+        
+        public void finish() throws IOException
+        {
+            out.close();
+        }
+    }
+}
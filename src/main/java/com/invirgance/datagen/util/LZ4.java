@@ -0,0 +1,228 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+/**
+ * Compresses and decompresses the LZ4 block format. Compression is a single
+ * greedy pass over a small hash table of recent positions, which trades some
+ * ratio for speed in the same way as the reference fast mode. Runs of bytes
+ * with no matches are skipped over more quickly the longer they get, so 
+ * data that does not compress costs little time.
+ * 
+ * @author jbanes
+ */
+public class LZ4
+{
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;
+    private static final int MF_LIMIT = 12;
+    private static final int MAX_DISTANCE = 65535;
+    private static final int HASH_LOG = 12;
+    
+    /**
+     * The most bytes a block of the given length can compress to.
+     */
+    public static int getMaxCompressedLength(int length)
+    {
+        return length + (length / 255) + 16;
+    }
+    
+    private static int readInt(byte[] bytes, int offset)
+    {
+        return (bytes[offset] & 0xFF) | ((bytes[offset+1] & 0xFF) << 8) | ((bytes[offset+2] & 0xFF) << 16) | (bytes[offset+3] << 24);
+    }
+    
+    private static int hash(int value)
+    {
+        return (value * -1640531535) >>> (32 - HASH_LOG);
+    }
+    
+    private static int writeLength(byte[] dest, int offset, int length)
+    {
+        while(length >= 255)
+        {
+            dest[offset++] = (byte)255;
+            length -= 255;
+        }
+        
+        dest[offset++] = (byte)length;
+        
+        return offset;
+    }
+    
+    private static int writeLiterals(byte[] dest, int offset, int token, byte[] src, int start, int length)
+    {
+        dest[token] = (byte)(Math.min(length, 15) << 4);
+        
+        if(length >= 15) offset = writeLength(dest, offset, length - 15);
+        
+        System.arraycopy(src, start, dest, offset, length);
+        
+        return offset + length;
+    }
+    
+    /**
+     * Compresses the bytes into dest, which must have room for 
+     * {@link #getMaxCompressedLength(int)} bytes. Returns the compressed
+     * length.
+     */
+    public static int compress(byte[] src, int offset, int length, byte[] dest, int destOffset)
+    {
+        int end = offset + length;
+        int matchLimit = end - LAST_LITERALS;
+        int limit = end - MF_LIMIT;
+        int[] table = new int[1 << HASH_LOG];
+        int anchor = offset;
+        int position = offset + 1;
+        int out = destOffset;
+        int token;
+        int match;
+        int size;
+        int sequence;
+        int hash;
+        
+        while(position < limit)
+        {
+            sequence = readInt(src, position);
+            hash = hash(sequence);
+            match = table[hash] - 1 + offset;
+            
+            // Positions are stored plus one so that zero means empty
+            table[hash] = position - offset + 1;
+            
+            if(match < offset || position - match > MAX_DISTANCE || readInt(src, match) != sequence)
+            {
+                position += 1 + ((position - anchor) >>> 6);
+                continue;
+            }
+            
+            size = MIN_MATCH;
+            
+            while(position + size < matchLimit && src[match + size] == src[position + size]) size++;
+            
+            while(position > anchor && match > offset && src[position - 1] == src[match - 1])
+            {
+                position--;
+                match--;
+                size++;
+            }
+            
+            token = out;
+            out = writeLiterals(dest, out + 1, token, src, anchor, position - anchor);
+            
+            dest[out++] = (byte)(position - match);
+            dest[out++] = (byte)((position - match) >>> 8);
+            dest[token] |= (byte)Math.min(size - MIN_MATCH, 15);
+            
+            if(size - MIN_MATCH >= 15) out = writeLength(dest, out, size - MIN_MATCH - 15);
+            
+            position += size;
+            anchor = position;
+        }
+        
+        out = writeLiterals(dest, out + 1, out, src, anchor, end - anchor);
+        
+        return out - destOffset;
+    }
+    
+    private static IllegalArgumentException corrupt()
+    {
+        return new IllegalArgumentException("Corrupt LZ4 block");
+    }
+    
+    /**
+     * Decompresses a block into dest, which must be exactly the length of 
+     * the original data.
+     */
+    public static void decompress(byte[] src, int offset, int length, byte[] dest)
+    {
+        int end = offset + length;
+        int out = 0;
+        int token;
+        int size;
+        int distance;
+        int b;
+        
+        while(offset < end)
+        {
+            token = src[offset++] & 0xFF;
+            size = token >>> 4;
+            
+            if(size == 15)
+            {
+                do
+                {
+                    if(offset >= end) throw corrupt();
+                    
+                    b = src[offset++] & 0xFF;
+                    size += b;
+                }
+                while(b == 255);
+            }
+            
+            if(size > end - offset || size > dest.length - out) throw corrupt();
+            
+            System.arraycopy(src, offset, dest, out, size);
+            
+            offset += size;
+            out += size;
+            
+            // The last sequence has only literals
+            if(offset >= end) break;
+            if(end - offset < 2) throw corrupt();
+            
+            distance = (src[offset] & 0xFF) | ((src[offset+1] & 0xFF) << 8);
+            offset += 2;
+            size = token & 15;
+            
+            if(size == 15)
+            {
+                do
+                {
+                    if(offset >= end) throw corrupt();
+                    
+                    b = src[offset++] & 0xFF;
+                    size += b;
+                }
+                while(b == 255);
+            }
+            
+            size += MIN_MATCH;
+            
+            if(distance == 0 || distance > out || size > dest.length - out) throw corrupt();
+            
+            // Matches may overlap the bytes they produce, repeating them
+            if(distance >= size) 
+            {
+                System.arraycopy(dest, out - distance, dest, out, size);
+            }
+            else
+            {
+                for(int i=0; i<size; i++) dest[out + i] = dest[out - distance + i];
+            }
+            
+            out += size;
+        }
+        
+        if(out != dest.length) throw corrupt();
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import com.invirgance.convirgance.ConvirganceException;
+import com.invirgance.convirgance.input.JBINInput;
+import com.invirgance.convirgance.json.JSONObject;
+import com.invirgance.convirgance.source.Source;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Read only, memory mapped view of a temp table written by 
+ * {@link IndexedOutput}. The file is mapped once and shared by every reader,
+ * leaving the caching of the data to the operating system page cache. The
+ * range index locates each segment in the mapping, allowing single rows and
+ * key ranges to be read without scanning the table. Compressed segments 
+ * are decompressed as they are read. Safe for use by many threads at once.
+ * 
+ * @author jbanes
+ */
+public class MappedTable implements Iterable<JSONObject>
+{
+    // Keeps each mapping well inside the 2GB limit of a ByteBuffer
+    private static final long REGION_SIZE = 1L << 30;
+    
+    private RangeIndex index;
+    private MappedByteBuffer[] regions;
+    private int[] region;
+    private long[] start;
+
+    public MappedTable(File file, RangeIndex index)
+    {
+        RangeIndex.Range[] ranges = index.getRanges();
+        ArrayList<MappedByteBuffer> list = new ArrayList<>();
+        long offset = 0;
+        long end = 0;
+        
+        this.index = index;
+        this.region = new int[ranges.length];
+        this.start = new long[ranges.length];
+        
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            // Group segments into regions, never splitting a segment
+            for(int i=0; i<ranges.length; i++)
+            {
+                if(ranges[i].length > Integer.MAX_VALUE) throw new ConvirganceException("Segment " + i + " of " + file + " is too large to map");
+                
+                if(ranges[i].offset + ranges[i].length - offset > REGION_SIZE && i > 0)
+                {
+                    list.add(channel.map(FileChannel.MapMode.READ_ONLY, offset, end - offset));
+                    
+                    offset = ranges[i].offset;
+                }
+                
+                region[i] = list.size();
+                start[i] = ranges[i].offset - offset;
+                end = ranges[i].offset + ranges[i].length;
+            }
+            
+            if(ranges.length > 0) list.add(channel.map(FileChannel.MapMode.READ_ONLY, offset, end - offset));
+            
+            this.regions = list.toArray(MappedByteBuffer[]::new);
+        }
+        catch(IOException e)
+        {
+            throw new ConvirganceException(e);
+        }
+    }
+    
+    public RangeIndex getIndex()
+    {
+        return index;
+    }
+    
+    public long size()
+    {
+        return index.getRows();
+    }
+    
+    /**
+     * Returns the bytes of a segment. Each call gets its own buffer so that
+     * threads do not share a position.
+     */
+    private ByteBuffer getSegment(int segment)
+    {
+        ByteBuffer buffer = regions[region[segment]].duplicate();
+        
+        buffer.position((int)start[segment]);
+        buffer.limit((int)(start[segment] + index.getRanges()[segment].length));
+        
+        return buffer.slice();
+    }
+    
+    private static ByteBuffer decompress(ByteBuffer segment)
+    {
+        byte[] block = new byte[segment.remaining()];
+        byte[] data;
+        
+        segment.get(block);
+        
+        if(block.length < 4) throw new ConvirganceException("Truncated LZ4 block");
+        
+        data = new byte[(block[0] & 0xFF) | ((block[1] & 0xFF) << 8) | ((block[2] & 0xFF) << 16) | ((block[3] & 0xFF) << 24)];
+        
+        LZ4.decompress(block, 4, block.length - 4, data);
+        
+        return ByteBuffer.wrap(data);
+    }
+    
+    private Iterator<JSONObject> read(int segment)
+    {
+        ByteBuffer buffer = getSegment(segment);
+        
+        if(index.isCompressed()) buffer = decompress(buffer);
+        
+        return new JBINInput().read(new BufferSource(buffer)).iterator();
+    }
+    
+    private Iterable<JSONObject> read(int[] segments)
+    {
+        return () -> new Iterator<JSONObject>() {
+            
+            private int index = 0;
+            private Iterator<JSONObject> current = Collections.emptyIterator();
+            
+            @Override
+            public boolean hasNext()
+            {
+                while(!current.hasNext() && index < segments.length) current = read(segments[index++]);
+                
+                return current.hasNext();
+            }
+
+            @Override
+            public JSONObject next()
+            {
+                if(!hasNext()) throw new NoSuchElementException();
+                
+                return current.next();
+            }
+        };
+    }
+    
+    /**
+     * Returns the row at the given position. Only the segment holding the 
+     * row is decoded.
+     */
+    public JSONObject get(long row)
+    {
+        int segment = index.findRow(row);
+        Iterator<JSONObject> iterator;
+        
+        if(segment < 0) throw new IndexOutOfBoundsException("Row " + row + " of " + size());
+        
+        iterator = read(segment);
+        
+        for(long i=index.getRanges()[segment].row; i<row; i++) iterator.next();
+        
+        return iterator.next();
+    }
+    
+    /**
+     * Returns the rows whose cluster key has the given value.
+     */
+    public Iterable<JSONObject> getRange(int value)
+    {
+        RangeIndex.Range[] ranges = index.find(value);
+        int[] segments = new int[ranges.length];
+        
+        for(int i=0; i<ranges.length; i++) segments[i] = index.findRow(ranges[i].row);
+        
+        return read(segments);
+    }
+
+    @Override
+    public Iterator<JSONObject> iterator()
+    {
+        int[] segments = new int[index.getRanges().length];
+        
+        for(int i=0; i<segments.length; i++) segments[i] = i;
+        
+        return read(segments).iterator();
+    }
+    
+    private static class BufferSource implements Source
+    {
+        private ByteBuffer buffer;
+
+        public BufferSource(ByteBuffer buffer)
+        {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public InputStream getInputStream()
+        {
+            ByteBuffer buffer = this.buffer.duplicate();
+            
+            return new InputStream() {
+                
+                @Override
+                public int read()
+                {
+                    return buffer.hasRemaining() ? (buffer.get() & 0xFF) : -1;
+                }
+
+                @Override
+                public int read(byte[] bytes, int offset, int length)
+                {
+                    if(length == 0) return 0;
+                    if(!buffer.hasRemaining()) return -1;
+                    
+                    length = Math.min(length, buffer.remaining());
+                    
+                    buffer.get(bytes, offset, length);
+                    
+                    return length;
+                }
+
+                @Override
+                public int available()
+                {
+                    return buffer.remaining();
+                }
+            };
+        }
+    }
+}
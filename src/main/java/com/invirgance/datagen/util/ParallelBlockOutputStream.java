@@ -0,0 +1,160 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Compresses on many threads at once, in the manner of pigz. The data is 
+ * cut into blocks that are compressed independently by {@link #compress}, 
+ * each into a self contained unit of the format such as a gzip member or a
+ * zstd frame, and written out in order. Each block starts without a 
+ * dictionary, so large blocks keep the loss in ratio small.
+ * <br><br>
+ * At most the given number of blocks are compressed at a time. Once they 
+ * are, writes wait for the oldest to finish. Flushing does not cut the 
+ * current block short.
+ * 
+ * @author jbanes
+ */
+public abstract class ParallelBlockOutputStream extends OutputStream
+{
+    private OutputStream out;
+    private ForkJoinPool pool;
+    private int window;
+    
+    private byte[] block;
+    private int size;
+    private long blocks;
+    private boolean closed;
+    
+    private ArrayDeque<ForkJoinTask<byte[]>> pending = new ArrayDeque<>();
+
+    /**
+     * @param out the stream the compressed data is written to
+     * @param pool the threads the blocks are compressed on
+     * @param blockSize the number of bytes compressed as one unit
+     * @param window the number of blocks that may be compressing at once
+     */
+    public ParallelBlockOutputStream(OutputStream out, ForkJoinPool pool, int blockSize, int window)
+    {
+        if(blockSize < 1) throw new IllegalArgumentException("Block size must be at least 1: " + blockSize);
+        if(window < 1) throw new IllegalArgumentException("At least one block must be allowed to compress: " + window);
+        
+        this.out = out;
+        this.pool = pool;
+        this.window = window;
+        this.block = new byte[blockSize];
+    }
+    
+    /**
+     * Compresses the first length bytes of data into a unit that can be 
+     * decompressed on its own. Called on the threads of the pool.
+     */
+    protected abstract byte[] compress(byte[] data, int length) throws IOException;
+    
+    private void drain() throws IOException
+    {
+        try
+        {
+            out.write(pending.poll().join());
+        }
+        catch(RuntimeException e)
+        {
+            throw new IOException("Compression failed", e);
+        }
+    }
+    
+    private void submit() throws IOException
+    {
+        byte[] data = block;
+        int length = size;
+        
+        pending.add(pool.submit(() -> compress(data, length)));
+        
+        block = new byte[block.length];
+        size = 0;
+        blocks++;
+        
+        while(pending.size() > window) drain();
+    }
+
+    @Override
+    public void write(int b) throws IOException
+    {
+        if(closed) throw new IOException("Stream is closed");
+        if(size >= block.length) submit();
+        
+        block[size++] = (byte)b;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException
+    {
+        int count;
+        
+        if(closed) throw new IOException("Stream is closed");
+        
+        while(length > 0)
+        {
+            if(size >= block.length) submit();
+            
+            count = Math.min(length, block.length - size);
+            
+            System.arraycopy(bytes, offset, block, size, count);
+            
+            size += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException
+    {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if(closed) return;
+        
+        closed = true;
+        
+        try
+        {
+            // An empty file still needs one unit to be valid, as with gzip
+            if(size > 0 || blocks == 0) submit();
+            
+            while(!pending.isEmpty()) drain();
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+}
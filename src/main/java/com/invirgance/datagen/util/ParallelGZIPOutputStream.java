@@ -0,0 +1,70 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses to gzip on many threads at once. Each block is written as a 
+ * complete gzip member. A series of members is a valid gzip file that 
+ * gunzip, zcat and GZIPInputStream read as one. See 
+ * {@link ParallelBlockOutputStream}.
+ * 
+ * @author jbanes
+ */
+public class ParallelGZIPOutputStream extends ParallelBlockOutputStream
+{
+    private int level;
+
+    /**
+     * @param out the stream the compressed data is written to
+     * @param pool the threads the blocks are compressed on
+     * @param blockSize the number of bytes compressed as one member
+     * @param level the Deflater compression level, from 1 to 9
+     * @param window the number of blocks that may be compressing at once
+     */
+    public ParallelGZIPOutputStream(OutputStream out, ForkJoinPool pool, int blockSize, int level, int window)
+    {
+        super(out, pool, blockSize, window);
+        
+        if(level < 1 || level > 9) throw new IllegalArgumentException("Compression level must be from 1 to 9: " + level);
+        
+        this.level = level;
+    }
+    
+    @Override
+    protected byte[] compress(byte[] data, int length) throws IOException
+    {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(length / 4 + 64);
+        
+        try(GZIPOutputStream out = new GZIPOutputStream(buffer, 1 << 16) {{ def.setLevel(level); }})
+        {
+            out.write(data, 0, length);
+        }
+        
+        return buffer.toByteArray();
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import com.github.luben.zstd.Zstd;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compresses to Zstandard on many threads at once. Each block is written as
+ * an independent zstd frame. A series of frames is a valid zstd file that
+ * zstd -d, zstdcat and ZstdInputStream read as one, and since every frame 
+ * records its size, readers can also split the file at frame boundaries and
+ * decompress the pieces in parallel. See {@link ParallelBlockOutputStream}.
+ * 
+ * @author jbanes
+ */
+public class ParallelZstdOutputStream extends ParallelBlockOutputStream
+{
+    private int level;
+
+    /**
+     * @param out the stream the compressed data is written to
+     * @param pool the threads the blocks are compressed on
+     * @param blockSize the number of bytes compressed as one frame
+     * @param level the zstd compression level, from 1 to 22
+     * @param window the number of blocks that may be compressing at once
+     */
+    public ParallelZstdOutputStream(OutputStream out, ForkJoinPool pool, int blockSize, int level, int window)
+    {
+        super(out, pool, blockSize, window);
+        
+        if(level < 1 || level > 22) throw new IllegalArgumentException("Compression level must be from 1 to 22: " + level);
+        
+        this.level = level;
+    }
+    
+    @Override
+    protected byte[] compress(byte[] data, int length) throws IOException
+    {
+        byte[] buffer = new byte[(int)Zstd.compressBound(length)];
+        long count = Zstd.compressByteArray(buffer, 0, buffer.length, data, 0, length, level);
+        
+        if(Zstd.isError(count)) throw new IOException("Zstandard compression failed: " + Zstd.getErrorName(count));
+        
+        return Arrays.copyOf(buffer, (int)count);
+    }
+}
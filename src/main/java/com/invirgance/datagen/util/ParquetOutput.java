@@ -0,0 +1,761 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import com.invirgance.convirgance.ConvirganceException;
+import com.invirgance.convirgance.output.Output;
+import com.invirgance.convirgance.target.Target;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes Parquet files. Rows are collected into row groups of a fixed number
+ * of rows, held as typed columns, and written out a column chunk at a time.
+ * Columns with few distinct values in a row group are dictionary encoded, 
+ * and the rest are written plain. Every column is optional so that nulls can
+ * be written. Pages are compressed with GZIP, or not at all, since those are
+ * the codecs the JDK provides.
+ * <br><br>
+ * Tables without a schema have their columns worked out from the records of
+ * the first row group.
+ * <br><br>
+ * Many files may be written through one output at once, as with a 
+ * partitioned layout. A budget can be given for the rows buffered by all of
+ * them together. Once it is used up, a file holding at least its share of 
+ * the budget writes out its row group early, and trims its buffers.
+ * 
+ * @author jbanes
+ */
+public class ParquetOutput implements Output
+{
+    public static final int UNCOMPRESSED = 0;
+    public static final int GZIP = 2;
+    
+    private static final byte[] MAGIC = "PAR1".getBytes(StandardCharsets.US_ASCII);
+    private static final int PAGE_ROWS = 1 << 16;
+    private static final int MAX_DICTIONARY = 1 << 16;
+    private static final int MAX_DICTIONARY_BYTES = 1 << 20;
+    private static final int CAPACITY = 1024;
+    
+    // Parquet physical types
+    private static final int INT32 = 1;
+    private static final int INT64 = 2;
+    private static final int DOUBLE = 5;
+    private static final int BYTE_ARRAY = 6;
+    
+    // Parquet encodings
+    private static final int PLAIN = 0;
+    private static final int PLAIN_DICTIONARY = 2;
+    private static final int RLE = 3;
+    
+    private static final int DATA_PAGE = 0;
+    private static final int DICTIONARY_PAGE = 2;
+    
+    private static final int OPTIONAL = 1;
+    private static final int UTF8 = 0;
+    
+    private Schema schema;
+    private int rowGroupSize;
+    private int codec;
+    private long bufferRows;
+    
+    // The rows buffered and the files open across every cursor
+    private AtomicLong buffered = new AtomicLong();
+    private AtomicInteger open = new AtomicInteger();
+
+    public ParquetOutput(Schema schema)
+    {
+        this(schema, 1 << 17, GZIP);
+    }
+    
+    public ParquetOutput(Schema schema, int rowGroupSize, int codec)
+    {
+        this(schema, rowGroupSize, codec, Long.MAX_VALUE);
+    }
+    
+    /**
+     * @param schema the columns, or null to work them out from the records
+     * @param rowGroupSize the number of rows in a full row group
+     * @param codec the codec the pages are compressed with
+     * @param bufferRows the most rows buffered by all open files together
+     */
+    public ParquetOutput(Schema schema, int rowGroupSize, int codec, long bufferRows)
+    {
+        if(rowGroupSize < 1) throw new IllegalArgumentException("Row group size must be at least 1: " + rowGroupSize);
+        if(codec != UNCOMPRESSED && codec != GZIP) throw new IllegalArgumentException("Unknown codec " + codec);
+        if(bufferRows < 1) throw new IllegalArgumentException("Buffer must hold at least 1 row: " + bufferRows);
+        
+        this.schema = schema;
+        this.rowGroupSize = rowGroupSize;
+        this.codec = codec;
+        this.bufferRows = bufferRows;
+    }
+    
+    /**
+     * The number of rows currently buffered by all the open files.
+     */
+    public long getBuffered()
+    {
+        return buffered.get();
+    }
+    
+    /**
+     * Looks up a codec by name. Only gzip and none are available, since the 
+     * others need native libraries.
+     */
+    public static int getCodec(String name)
+    {
+        switch(name.toLowerCase())
+        {
+            case "gzip":
+                return GZIP;
+                
+            case "none":
+            case "uncompressed":
+                return UNCOMPRESSED;
+                
+            default:
+                throw new ConvirganceException("Unsupported parquet codec " + name + ". Use gzip or none.");
+        }
+    }
+
+    @Override
+    public Cursor write(Target target)
+    {
+        return new Cursor(target.getOutputStream());
+    }
+    
+    public class Cursor extends TypedCursor
+    {
+        private OutputStream out;
+        private long position;
+        
+        private Column[] columns;
+        private int rows;
+        
+        private ArrayList<RowGroup> groups = new ArrayList<>();
+        private long total;
+
+        private Cursor(OutputStream out)
+        {
+            super(rowGroupSize);
+            
+            this.out = new BufferedOutputStream(out, 1 << 16);
+            
+            open.incrementAndGet();
+            
+            try
+            {
+                writeBytes(MAGIC);
+                
+                if(schema != null) setSchema(schema);
+            }
+            catch(IOException e)
+            {
+                throw new ConvirganceException(e);
+            }
+        }
+        
+        @Override
+        protected void start(Schema schema)
+        {
+            this.columns = new Column[schema.size()];
+            
+            for(int i=0; i<columns.length; i++) columns[i] = new Column(schema.getName(i), schema.getType(i));
+        }
+        
+        private void writeBytes(byte[] bytes) throws IOException
+        {
+            out.write(bytes);
+            position += bytes.length;
+        }
+
+        @Override
+        public void writeNull() throws IOException
+        {
+            columns[next()].addNull();
+        }
+
+        @Override
+        public void writeInt(int value) throws IOException
+        {
+            columns[next(Schema.INT)].addLong(value);
+        }
+
+        @Override
+        public void writeLong(long value) throws IOException
+        {
+            columns[next(Schema.LONG)].addLong(value);
+        }
+
+        @Override
+        public void writeDouble(double value) throws IOException
+        {
+            columns[next(Schema.DOUBLE)].addLong(Double.doubleToRawLongBits(value));
+        }
+
+        @Override
+        public void writeString(String value) throws IOException
+        {
+            if(value == null) columns[next()].addNull();
+            else columns[next(Schema.STRING)].addString(value);
+        }
+
+        @Override
+        protected void finishRow() throws IOException
+        {
+            long total = buffered.incrementAndGet();
+            
+            if(++rows >= rowGroupSize) flush();
+            else if(total > bufferRows && rows >= bufferRows / Math.max(1, open.get())) flush();
+        }
+        
+        private void flush() throws IOException
+        {
+            RowGroup group = new RowGroup(rows, columns.length);
+            
+            for(int i=0; i<columns.length; i++)
+            {
+                group.chunks[i] = columns[i].write(this);
+                group.size += group.chunks[i].uncompressed;
+            }
+            
+            groups.add(group);
+            
+            // Files sharing a budget give back the memory of their columns
+            if(bufferRows < Long.MAX_VALUE)
+            {
+                for(Column column : columns) column.trim();
+            }
+            
+            buffered.addAndGet(-rows);
+            
+            total += rows;
+            rows = 0;
+        }
+
+        @Override
+        protected void finish() throws IOException
+        {
+            byte[] footer;
+            
+            if(rows > 0) flush();
+            
+            open.decrementAndGet();
+            
+            footer = getFooter();
+            
+            writeBytes(footer);
+            writeBytes(new byte[]{ (byte)footer.length, (byte)(footer.length >>> 8), (byte)(footer.length >>> 16), (byte)(footer.length >>> 24) });
+            writeBytes(MAGIC);
+            
+            out.close();
+        }
+        
+        private byte[] getFooter()
+        {
+            ThriftWriter writer = new ThriftWriter();
+            
+            writer.beginStruct();
+            writer.writeI32(1, 1);
+            
+            writer.beginList(2, ThriftWriter.STRUCT, columns.length + 1);
+            writer.beginStruct().writeString(4, "schema").writeI32(5, columns.length).endStruct();
+            
+            for(Column column : columns)
+            {
+                writer.beginStruct();
+                writer.writeI32(1, column.getPhysicalType());
+                writer.writeI32(3, OPTIONAL);
+                writer.writeString(4, column.name);
+                
+                if(column.type == Schema.STRING) writer.writeI32(6, UTF8);
+                
+                writer.endStruct();
+            }
+            
+            writer.writeI64(3, total);
+            writer.beginList(4, ThriftWriter.STRUCT, groups.size());
+            
+            for(RowGroup group : groups) group.write(writer);
+            
+            writer.writeString(6, "datagen");
+            writer.endStruct();
+            
+            return writer.toByteArray();
+        }
+    }
+    
+    private static byte[] compress(ByteArrayOutputStream data, int codec) throws IOException
+    {
+        ByteArrayOutputStream buffer;
+        
+        if(codec == UNCOMPRESSED) return data.toByteArray();
+        
+        buffer = new ByteArrayOutputStream(data.size() / 2 + 64);
+        
+        try(GZIPOutputStream out = new GZIPOutputStream(buffer, 1 << 16))
+        {
+            data.writeTo(out);
+        }
+        
+        return buffer.toByteArray();
+    }
+    
+    private static void writeInt(ByteArrayOutputStream out, int value)
+    {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+    
+    private static void writeLong(ByteArrayOutputStream out, long value)
+    {
+        for(int i=0; i<8; i++) out.write((int)(value >>> (i * 8)));
+    }
+    
+    // The values of one column of the current row group. Numbers are held as
+    // longs, with doubles as their bits, so that one dictionary serves all.
+    private class Column
+    {
+        private String name;
+        private int type;
+        
+        private boolean[] defined = new boolean[CAPACITY];
+        private int count;
+        
+        private long[] numbers;
+        private String[] strings;
+        private int size;
+        
+        private boolean dictionary = true;
+        private LongIntMap numberIndex;
+        private HashMap<String,Integer> stringIndex;
+        private long[] numberValues;
+        private String[] stringValues;
+        private int[] indices;
+        private int entries;
+        private long dictionaryBytes;
+
+        public Column(String name, int type)
+        {
+            this.name = name;
+            this.type = type;
+            
+            if(type == Schema.STRING) strings = new String[CAPACITY];
+            else numbers = new long[CAPACITY];
+            
+            indices = new int[CAPACITY];
+            
+            reset();
+        }
+        
+        /**
+         * Shrinks the buffers back to their starting size once the row group
+         * has been written.
+         */
+        public void trim()
+        {
+            if(defined.length > CAPACITY) defined = new boolean[CAPACITY];
+            if(indices.length > CAPACITY) indices = new int[CAPACITY];
+            if(strings != null && strings.length > CAPACITY) strings = new String[CAPACITY];
+            if(numbers != null && numbers.length > CAPACITY) numbers = new long[CAPACITY];
+        }
+        
+        private void reset()
+        {
+            count = 0;
+            size = 0;
+            entries = 0;
+            dictionaryBytes = 0;
+            dictionary = true;
+            
+            if(type == Schema.STRING) 
+            {
+                stringIndex = new HashMap<>();
+                stringValues = new String[64];
+                Arrays.fill(strings, null);
+            }
+            else 
+            {
+                numberIndex = new LongIntMap();
+                numberValues = new long[64];
+            }
+        }
+        
+        public int getPhysicalType()
+        {
+            switch(type)
+            {
+                case Schema.INT:
+                    return INT32;
+                    
+                case Schema.LONG:
+                    return INT64;
+                    
+                case Schema.DOUBLE:
+                    return DOUBLE;
+                    
+                default:
+                    return BYTE_ARRAY;
+            }
+        }
+        
+        private void define(boolean value)
+        {
+            if(count >= defined.length) defined = Arrays.copyOf(defined, defined.length * 2);
+            
+            defined[count++] = value;
+        }
+        
+        public void addNull()
+        {
+            define(false);
+        }
+        
+        private void addIndex(int index)
+        {
+            if(size >= indices.length) indices = Arrays.copyOf(indices, indices.length * 2);
+            
+            indices[size] = index;
+        }
+        
+        public void addLong(long value)
+        {
+            int index;
+            
+            if(type == Schema.STRING) throw new IllegalStateException("Column " + name + " holds strings");
+            
+            define(true);
+            
+            if(size >= numbers.length) numbers = Arrays.copyOf(numbers, numbers.length * 2);
+            
+            if(dictionary)
+            {
+                index = numberIndex.get(value);
+                
+                if(index < 0)
+                {
+                    index = entries++;
+                    
+                    if(index >= numberValues.length) numberValues = Arrays.copyOf(numberValues, numberValues.length * 2);
+                    
+                    numberValues[index] = value;
+                    numberIndex.put(value, index);
+                    
+                    // Too many distinct values for a dictionary to help
+                    if(entries > MAX_DICTIONARY || entries > rowGroupSize / 2 + 1) dictionary = false;
+                }
+                
+                addIndex(index);
+            }
+            
+            numbers[size++] = value;
+        }
+        
+        public void addString(String value)
+        {
+            Integer index;
+            
+            if(type != Schema.STRING) throw new IllegalStateException("Column " + name + " holds numbers");
+            
+            define(true);
+            
+            if(size >= strings.length) strings = Arrays.copyOf(strings, strings.length * 2);
+            
+            if(dictionary)
+            {
+                index = stringIndex.get(value);
+                
+                if(index == null)
+                {
+                    index = entries++;
+                    
+                    if(index >= stringValues.length) stringValues = Arrays.copyOf(stringValues, stringValues.length * 2);
+                    
+                    stringValues[index] = value;
+                    stringIndex.put(value, index);
+                    dictionaryBytes += value.length() + 4;
+                    
+                    if(entries > MAX_DICTIONARY || dictionaryBytes > MAX_DICTIONARY_BYTES || entries > rowGroupSize / 2 + 1) dictionary = false;
+                }
+                
+                addIndex(index);
+            }
+            
+            strings[size++] = value;
+        }
+        
+        private void writePlain(ByteArrayOutputStream out, long number, String string)
+        {
+            byte[] bytes;
+            
+            switch(type)
+            {
+                case Schema.INT:
+                    writeInt(out, (int)number);
+                    break;
+                    
+                case Schema.STRING:
+                    bytes = string.getBytes(StandardCharsets.UTF_8);
+                    writeInt(out, bytes.length);
+                    out.write(bytes, 0, bytes.length);
+                    break;
+                    
+                default:
+                    writeLong(out, number);
+            }
+        }
+        
+        private byte[] getPageHeader(int type, int uncompressed, int compressed, int values, int encoding)
+        {
+            ThriftWriter writer = new ThriftWriter();
+            
+            writer.beginStruct();
+            writer.writeI32(1, type);
+            writer.writeI32(2, uncompressed);
+            writer.writeI32(3, compressed);
+            
+            if(type == DICTIONARY_PAGE)
+            {
+                writer.beginStruct(7).writeI32(1, values).writeI32(2, encoding).endStruct();
+            }
+            else
+            {
+                writer.beginStruct(5).writeI32(1, values).writeI32(2, encoding).writeI32(3, RLE).writeI32(4, RLE).endStruct();
+            }
+            
+            writer.endStruct();
+            
+            return writer.toByteArray();
+        }
+        
+        private void writePage(Cursor cursor, Chunk chunk, int type, ByteArrayOutputStream data, int values, int encoding) throws IOException
+        {
+            byte[] compressed = compress(data, codec);
+            byte[] header = getPageHeader(type, data.size(), compressed.length, values, encoding);
+            
+            cursor.writeBytes(header);
+            cursor.writeBytes(compressed);
+            
+            chunk.uncompressed += header.length + data.size();
+            chunk.compressed += header.length + compressed.length;
+        }
+        
+        public Chunk write(Cursor cursor) throws IOException
+        {
+            boolean encoded = (dictionary && entries > 0);
+            Chunk chunk = new Chunk(name, getPhysicalType(), count, encoded ? PLAIN_DICTIONARY : PLAIN);
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            int[] levels = new int[Math.min(count, PAGE_ROWS)];
+            int bitWidth = RLEEncoder.getBitWidth(entries - 1);
+            int value = 0;
+            int rows;
+            int start;
+            int end;
+            
+            chunk.offset = cursor.position;
+            
+            if(encoded)
+            {
+                chunk.dictionaryOffset = cursor.position;
+                
+                for(int i=0; i<entries; i++) writePlain(data, (type == Schema.STRING) ? 0 : numberValues[i], (type == Schema.STRING) ? stringValues[i] : null);
+                
+                writePage(cursor, chunk, DICTIONARY_PAGE, data, entries, PLAIN_DICTIONARY);
+            }
+            
+            chunk.dataOffset = cursor.position;
+            
+            for(int row=0; row<count; row+=PAGE_ROWS)
+            {
+                data.reset();
+                rows = Math.min(PAGE_ROWS, count - row);
+                start = value;
+                
+                for(int i=0; i<rows; i++) 
+                {
+                    levels[i] = defined[row + i] ? 1 : 0;
+                    value += levels[i];
+                }
+                
+                end = value;
+                
+                // Definition levels, prefixed with their length
+                buffer.reset();
+                RLEEncoder.encode(levels, 0, rows, 1, buffer);
+                writeInt(data, buffer.size());
+                buffer.writeTo(data);
+                
+                if(encoded)
+                {
+                    data.write(bitWidth);
+                    RLEEncoder.encode(indices, start, end - start, bitWidth, data);
+                }
+                else
+                {
+                    for(int i=start; i<end; i++) writePlain(data, (type == Schema.STRING) ? 0 : numbers[i], (type == Schema.STRING) ? strings[i] : null);
+                }
+                
+                writePage(cursor, chunk, DATA_PAGE, data, rows, encoded ? PLAIN_DICTIONARY : PLAIN);
+            }
+            
+            reset();
+            
+            return chunk;
+        }
+    }
+    
+    private static class Chunk
+    {
+        private String name;
+        private int type;
+        private long values;
+        private int encoding;
+        private long offset;
+        private long dictionaryOffset = -1;
+        private long dataOffset;
+        private long uncompressed;
+        private long compressed;
+
+        public Chunk(String name, int type, long values, int encoding)
+        {
+            this.name = name;
+            this.type = type;
+            this.values = values;
+            this.encoding = encoding;
+        }
+    }
+    
+    private class RowGroup
+    {
+        private long rows;
+        private long size;
+        private Chunk[] chunks;
+
+        public RowGroup(long rows, int columns)
+        {
+            this.rows = rows;
+            this.chunks = new Chunk[columns];
+        }
+        
+        public void write(ThriftWriter writer)
+        {
+            writer.beginStruct();
+            writer.beginList(1, ThriftWriter.STRUCT, chunks.length);
+            
+            for(Chunk chunk : chunks)
+            {
+                writer.beginStruct();
+                writer.writeI64(2, chunk.offset);
+                writer.beginStruct(3);
+                writer.writeI32(1, chunk.type);
+                writer.beginList(2, ThriftWriter.I32, 2).writeListI32(chunk.encoding).writeListI32(RLE);
+                writer.beginList(3, ThriftWriter.BINARY, 1).writeListString(chunk.name);
+                writer.writeI32(4, codec);
+                writer.writeI64(5, chunk.values);
+                writer.writeI64(6, chunk.uncompressed);
+                writer.writeI64(7, chunk.compressed);
+                writer.writeI64(9, chunk.dataOffset);
+                
+                if(chunk.dictionaryOffset >= 0) writer.writeI64(11, chunk.dictionaryOffset);
+                
+                writer.endStruct();
+                writer.endStruct();
+            }
+            
+            writer.writeI64(2, size);
+            writer.writeI64(3, rows);
+            writer.endStruct();
+        }
+    }
+    
+    // Open addressing map from long to int, returning -1 for missing keys
+    private static class LongIntMap
+    {
+        private long[] keys = new long[256];
+        private int[] values = new int[256];
+        private boolean[] used = new boolean[256];
+        private int size;
+        
+        private int getSlot(long key)
+        {
+            int mask = keys.length - 1;
+            int slot = (int)Seeds.mix(key) & mask;
+            
+            while(used[slot] && keys[slot] != key) slot = (slot + 1) & mask;
+            
+            return slot;
+        }
+        
+        public int get(long key)
+        {
+            int slot = getSlot(key);
+            
+            return used[slot] ? values[slot] : -1;
+        }
+        
+        public void put(long key, int value)
+        {
+            long[] keys;
+            int[] values;
+            boolean[] used;
+            int slot;
+            
+            if((size + 1) * 2 > this.keys.length)
+            {
+                keys = this.keys;
+                values = this.values;
+                used = this.used;
+                
+                this.keys = new long[keys.length * 2];
+                this.values = new int[keys.length * 2];
+                this.used = new boolean[keys.length * 2];
+                this.size = 0;
+                
+                for(int i=0; i<keys.length; i++)
+                {
+                    if(used[i]) put(keys[i], values[i]);
+                }
+            }
+            
+            slot = getSlot(key);
+            
+            if(!this.used[slot]) size++;
+            
+            this.keys[slot] = key;
+            this.values[slot] = value;
+            this.used[slot] = true;
+        }
+    }
+}
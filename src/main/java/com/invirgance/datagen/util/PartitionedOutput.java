@@ -0,0 +1,340 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import com.invirgance.convirgance.ConvirganceException;
+import com.invirgance.convirgance.json.JSONObject;
+import com.invirgance.convirgance.output.Output;
+import com.invirgance.convirgance.output.OutputCursor;
+import com.invirgance.convirgance.target.FileTarget;
+import com.invirgance.convirgance.target.Target;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Writes records into a Hive style directory layout, with a directory per 
+ * value of the partition key (e.g. DateId=20261018/part-00000.csv). The
+ * key is left out of the records, since readers take it from the path.
+ * Each partition has its own writer. When more than the maximum number of
+ * writers are open, the least recently used one is closed and the next
+ * record for that partition starts a new file. A warning is printed the 
+ * first time that happens, since it can leave many small files. Files are
+ * also rolled once they reach the given number of rows or bytes, where 
+ * zero means no limit. The byte count is taken as the encoded output 
+ * reaches the file, so files may run over by the size of the output's 
+ * buffer.
+ * <br><br>
+ * Given the schema of the records, the cursor is a {@link RowCursor}. Rows
+ * written that way are passed on without the key to writers that take rows
+ * of the rest of the schema, and as records to any other writer. 
+ * <br><br>
+ * The target passed to write() is not used.
+ * 
+ * @author jbanes
+ */
+public class PartitionedOutput implements Output
+{
+    public static final String DEFAULT_PARTITION = "__HIVE_DEFAULT_PARTITION__";
+    
+    private Output output;
+    private File directory;
+    private String key;
+    private String prefix;
+    private String extension;
+    private int maxOpen;
+    private long maxRows;
+    private long maxBytes;
+    private Schema schema;
+
+    public PartitionedOutput(Output output, File directory, String key, String prefix, String extension, int maxOpen, long maxRows, long maxBytes)
+    {
+        this(output, directory, key, prefix, extension, maxOpen, maxRows, maxBytes, null);
+    }
+    
+    /**
+     * @param schema the schema of the records, including the key, or null 
+     *               to only take records
+     */
+    public PartitionedOutput(Output output, File directory, String key, String prefix, String extension, int maxOpen, long maxRows, long maxBytes, Schema schema)
+    {
+        if(schema != null && schema.indexOf(key) < 0) throw new IllegalArgumentException("Partition key " + key + " is not in the schema");
+        if(maxOpen < 1) throw new IllegalArgumentException("At least one file must be allowed open: " + maxOpen);
+        if(maxRows < 0 || maxBytes < 0) throw new IllegalArgumentException("Rolling limits cannot be negative");
+        
+        this.output = output;
+        this.directory = directory;
+        this.key = key;
+        this.prefix = prefix;
+        this.extension = extension;
+        this.maxOpen = maxOpen;
+        this.maxRows = maxRows;
+        this.maxBytes = maxBytes;
+        this.schema = schema;
+    }
+    
+    /**
+     * The directory name for a value of the key. Characters with a meaning
+     * in paths or to Hive are escaped as %XX.
+     */
+    public static String getDirectoryName(String key, Object value)
+    {
+        StringBuilder name = new StringBuilder(key).append('=');
+        String text;
+        char c;
+        
+        if(value == null) return name.append(DEFAULT_PARTITION).toString();
+        
+        text = value.toString();
+        
+        for(int i=0; i<text.length(); i++)
+        {
+            c = text.charAt(i);
+            
+            if(c < ' ' || "\"#%'*/:=?\\{[]^".indexOf(c) >= 0) name.append(String.format("%%%02X", (int)c));
+            else name.append(c);
+        }
+        
+        return name.toString();
+    }
+
+    @Override
+    public OutputCursor write(Target target)
+    {
+        return new Cursor();
+    }
+    
+    private class Cursor implements RowCursor
+    {
+        // Access ordered, so the first entry is the least recently used
+        private LinkedHashMap<String,Part> open = new LinkedHashMap<>(16, 0.75f, true);
+        private HashMap<String,Integer> counts = new HashMap<>();
+        private HashSet<String> closed = new HashSet<>();
+        private boolean warned;
+        
+        private RowBuffer row;
+        private Schema partSchema;
+        private int index;
+        
+        // Rows of the same partition tend to come together
+        private Object lastValue;
+        private String lastName;
+        
+        public Cursor()
+        {
+            if(schema == null) return;
+            
+            this.partSchema = schema.without(key);
+            this.index = schema.indexOf(key);
+            this.row = new RowBuffer(schema, 1) {
+                
+                @Override
+                public void endRow() throws IOException
+                {
+                    super.endRow();
+                    
+                    route(this);
+                    clear();
+                }
+            };
+        }
+        
+        private Part open(String name)
+        {
+            Part part;
+            Iterator<Map.Entry<String,Part>> iterator;
+            Map.Entry<String,Part> entry;
+            int count = counts.getOrDefault(name, 0);
+            File parent = new File(directory, name);
+            
+            if(open.size() >= maxOpen)
+            {
+                iterator = open.entrySet().iterator();
+                entry = iterator.next();
+                
+                entry.getValue().close();
+                closed.add(entry.getKey());
+                iterator.remove();
+            }
+            
+            if(closed.remove(name) && !warned)
+            {
+                System.err.println("Warning: more than " + maxOpen + " partitions are being written at once. Partitions will be split into many files.");
+                
+                warned = true;
+            }
+            
+            if(!parent.exists()) parent.mkdirs();
+            
+            part = new Part(new File(parent, String.format("%s-%05d.%s", prefix, count, extension)));
+            
+            counts.put(name, count + 1);
+            open.put(name, part);
+            
+            return part;
+        }
+        
+        private Part get(String name)
+        {
+            Part part = open.get(name);
+            
+            return (part == null) ? open(name) : part;
+        }
+        
+        // Rolls the file once it reaches its limits
+        private void written(String name, Part part)
+        {
+            part.rows++;
+            
+            if((maxRows > 0 && part.rows >= maxRows) || (maxBytes > 0 && part.out.count >= maxBytes))
+            {
+                open.remove(name).close();
+            }
+        }
+        
+        private void route(RowBuffer row) throws IOException
+        {
+            Object value = row.get(0, index);
+            Part part;
+            
+            if(lastName == null || !Objects.equals(value, lastValue))
+            {
+                lastName = getDirectoryName(key, value);
+                lastValue = value;
+            }
+            
+            part = get(lastName);
+            
+            if(part.cursor instanceof RowCursor && partSchema.equals(((RowCursor)part.cursor).getSchema()))
+            {
+                row.write(0, ((RowCursor)part.cursor).getWriter(), index);
+            }
+            else
+            {
+                part.cursor.write(row.getRecord(0, index));
+            }
+            
+            written(lastName, part);
+        }
+        
+        @Override
+        public Schema getSchema()
+        {
+            return schema;
+        }
+        
+        @Override
+        public RowWriter getWriter()
+        {
+            if(row == null) throw new IllegalStateException("Rows cannot be written without a schema");
+            
+            return row;
+        }
+        
+        @Override
+        public void write(JSONObject record)
+        {
+            String name = getDirectoryName(key, record.get(key));
+            Part part = get(name);
+            
+            record = new JSONObject(record);
+            record.remove(key);
+            
+            part.cursor.write(record);
+            
+            written(name, part);
+        }
+        
+        @Override
+        public void close()
+        {
+            ConvirganceException exception = null;
+            
+            for(Part part : open.values())
+            {
+                try
+                {
+                    part.close();
+                }
+                catch(ConvirganceException e)
+                {
+                    if(exception == null) exception = e;
+                }
+            }
+            
+            open.clear();
+            
+            if(exception != null) throw exception;
+        }
+    }
+    
+    private class Part
+    {
+        private CountingOutputStream out;
+        private OutputCursor cursor;
+        private long rows;
+
+        public Part(File file)
+        {
+            FileTarget target = new FileTarget(file);
+            
+            this.out = new CountingOutputStream(target.getOutputStream());
+            this.cursor = output.write(() -> out);
+        }
+        
+        public void close()
+        {
+            cursor.close();
+        }
+    }
+    
+    private static class CountingOutputStream extends FilterOutputStream
+    {
+        private long count;
+
+        public CountingOutputStream(OutputStream out)
+        {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException
+        {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
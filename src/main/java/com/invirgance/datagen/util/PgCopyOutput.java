@@ -0,0 +1,191 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import com.invirgance.convirgance.ConvirganceException;
+import com.invirgance.convirgance.output.Output;
+import com.invirgance.convirgance.target.Target;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes the PostgreSQL binary COPY format, as loaded by 
+ * <code>COPY table FROM file WITH (FORMAT binary)</code>. The server stores
+ * the values as they are sent rather than parsing text, which makes loading
+ * far cheaper than CSV. Ints are sent as integer, longs as bigint, doubles 
+ * as double precision and strings as text.
+ * <br><br>
+ * Tables without a schema have one worked out by the cursor, which is kept
+ * so that the DDL for the table can be written once it is known.
+ * 
+ * @author jbanes
+ */
+public class PgCopyOutput implements Output
+{
+    private static final byte[] SIGNATURE = "PGCOPY\n\377\r\n\0".getBytes(StandardCharsets.ISO_8859_1);
+    private static final int INFER_ROWS = 1 << 16;
+    
+    private volatile Schema schema;
+
+    public PgCopyOutput(Schema schema)
+    {
+        this.schema = schema;
+    }
+    
+    /**
+     * The schema of the table, or null if no rows have been written yet and
+     * the table has no schema of its own.
+     */
+    public Schema getSchema()
+    {
+        return schema;
+    }
+    
+    /**
+     * The PostgreSQL type of a column of the given type.
+     */
+    public static String getType(int type)
+    {
+        switch(type)
+        {
+            case Schema.INT:
+                return "integer";
+                
+            case Schema.LONG:
+                return "bigint";
+                
+            case Schema.DOUBLE:
+                return "double precision";
+                
+            default:
+                return "text";
+        }
+    }
+
+    @Override
+    public Cursor write(Target target)
+    {
+        return new Cursor(target);
+    }
+    
+    public class Cursor extends TypedCursor
+    {
+        private DataOutputStream out;
+
+        private Cursor(Target target)
+        {
+            super(INFER_ROWS);
+            
+            this.out = new DataOutputStream(new BufferedOutputStream(target.getOutputStream(), 1 << 16));
+            
+            try
+            {
+                out.write(SIGNATURE);
+                out.writeInt(0); // Flags
+                out.writeInt(0); // Header extension length
+                
+                if(schema != null) setSchema(schema);
+            }
+            catch(IOException e)
+            {
+                throw new ConvirganceException(e);
+            }
+        }
+        
+        // Kept so that the DDL can be written for a schema worked out here
+        @Override
+        protected void start(Schema schema)
+        {
+            if(PgCopyOutput.this.schema == null) PgCopyOutput.this.schema = schema;
+        }
+        
+        // Every row starts with its number of fields
+        @Override
+        protected void startRow() throws IOException
+        {
+            out.writeShort(getSchema().size());
+        }
+
+        @Override
+        protected void finishRow()
+        {
+        }
+
+        @Override
+        public void writeNull() throws IOException
+        {
+            next();
+            out.writeInt(-1);
+        }
+
+        @Override
+        public void writeInt(int value) throws IOException
+        {
+            next(Schema.INT);
+            out.writeInt(4);
+            out.writeInt(value);
+        }
+
+        @Override
+        public void writeLong(long value) throws IOException
+        {
+            next(Schema.LONG);
+            out.writeInt(8);
+            out.writeLong(value);
+        }
+
+        @Override
+        public void writeDouble(double value) throws IOException
+        {
+            next(Schema.DOUBLE);
+            out.writeInt(8);
+            out.writeDouble(value);
+        }
+
+        @Override
+        public void writeString(String value) throws IOException
+        {
+            byte[] bytes;
+            
+            if(value == null) 
+            {
+                writeNull();
+                return;
+            }
+            
+            bytes = value.getBytes(StandardCharsets.UTF_8);
+            
+            next(Schema.STRING);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        @Override
+        protected void finish() throws IOException
+        {
+            out.writeShort(-1); // Trailer
+            out.close();
+        }
+    }
+}
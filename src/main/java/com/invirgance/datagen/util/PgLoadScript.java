@@ -0,0 +1,140 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import java.util.ArrayList;
+
+/**
+ * Builds the psql scripts that load a set of PostgreSQL binary COPY files.
+ * The schema script creates the tables, the load script copies the files 
+ * into them, and the index script adds the keys and indexes once the data is
+ * in, which is much cheaper than maintaining them row by row. Tables are 
+ * keyed on their id column, and every other column ending in Id is taken to
+ * be a foreign key and indexed.
+ * 
+ * @author jbanes
+ */
+public class PgLoadScript
+{
+    private ArrayList<String> tables = new ArrayList<>();
+    private ArrayList<Schema> schemas = new ArrayList<>();
+    private ArrayList<String> files = new ArrayList<>();
+    
+    /**
+     * Adds a table, and the file holding its rows relative to the directory
+     * psql is run from.
+     */
+    public PgLoadScript add(String table, Schema schema, String file)
+    {
+        tables.add(table);
+        schemas.add(schema);
+        files.add(file);
+        
+        return this;
+    }
+    
+    private static String quote(String identifier)
+    {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+    
+    private static String literal(String value)
+    {
+        return "'" + value.replace("'", "''") + "'";
+    }
+    
+    public String getSchema()
+    {
+        StringBuilder script = new StringBuilder();
+        Schema schema;
+        
+        for(int i=0; i<tables.size(); i++)
+        {
+            schema = schemas.get(i);
+            
+            script.append("DROP TABLE IF EXISTS ").append(quote(tables.get(i))).append(";\n");
+            script.append("CREATE TABLE ").append(quote(tables.get(i))).append(" (");
+            
+            for(int j=0; j<schema.size(); j++)
+            {
+                script.append((j > 0) ? ",\n    " : "\n    ");
+                script.append(quote(schema.getName(j))).append(' ').append(PgCopyOutput.getType(schema.getType(j)));
+            }
+            
+            script.append("\n);\n\n");
+        }
+        
+        return script.toString();
+    }
+    
+    /**
+     * The script that copies the files into the tables. When setup is true 
+     * the script creates the tables first and builds the indexes after, 
+     * using the schema.sql and indexes.sql scripts beside it. The tables are
+     * then created and loaded in one transaction, so the rows can be loaded
+     * frozen and skip being rewritten by the first vacuum.
+     */
+    public String getLoad(boolean setup)
+    {
+        StringBuilder script = new StringBuilder();
+        
+        script.append("-- Run with psql from the directory holding the data files\n");
+        script.append("\\set ON_ERROR_STOP on\n\n");
+        
+        if(setup) script.append("BEGIN;\n\\ir schema.sql\n");
+        else script.append("-- Run schema.sql first, and indexes.sql once every file is loaded\n");
+        
+        for(int i=0; i<tables.size(); i++)
+        {
+            script.append("\\copy ").append(quote(tables.get(i))).append(" FROM ").append(literal(files.get(i)));
+            script.append(setup ? " WITH (FORMAT binary, FREEZE)\n" : " WITH (FORMAT binary)\n");
+        }
+        
+        if(setup) script.append("COMMIT;\n\n\\ir indexes.sql\n");
+        
+        return script.toString();
+    }
+    
+    public String getIndexes()
+    {
+        StringBuilder script = new StringBuilder();
+        Schema schema;
+        String name;
+        
+        for(int i=0; i<tables.size(); i++)
+        {
+            schema = schemas.get(i);
+            
+            for(int j=0; j<schema.size(); j++)
+            {
+                name = schema.getName(j);
+                
+                if(name.equals("id")) script.append("ALTER TABLE ").append(quote(tables.get(i))).append(" ADD PRIMARY KEY (").append(quote(name)).append(");\n");
+                else if(name.endsWith("Id")) script.append("CREATE INDEX ON ").append(quote(tables.get(i))).append(" (").append(quote(name)).append(");\n");
+            }
+        }
+        
+        script.append("\nANALYZE;\n");
+        
+        return script.toString();
+    }
+}
@@ -0,0 +1,545 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import com.invirgance.convirgance.ConvirganceException;
+import com.invirgance.convirgance.json.JSONObject;
+import com.invirgance.convirgance.output.Output;
+import com.invirgance.convirgance.output.OutputCursor;
+import com.invirgance.convirgance.target.Target;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs another output in the background so that generating records, 
+ * encoding them and writing to disk overlap. Records are handed to an 
+ * encoding stage in batches, and the encoded bytes are handed to a writing
+ * stage in chunks. The stages of every pipeline run as tasks on one shared
+ * executor with a thread per processor, so the number of threads does not
+ * grow with the number of open outputs. Each stage runs one task at a time
+ * and never waits on another stage, so pipelines cannot starve each other 
+ * of threads. Only the thread writing records waits, once the given number
+ * of batches or chunks are pending, so a slow disk holds up the generator 
+ * rather than filling memory. Records are written in the order they are 
+ * received and must not be changed once written.
+ * <br><br>
+ * Given a schema, the cursor is also a {@link RowCursor}. Rows are batched
+ * as typed values and passed on as rows when the output's cursor takes the
+ * same schema, or as records otherwise. Rows and records may be mixed.
+ * <br><br>
+ * Errors in either stage are thrown from the next write() or from close().
+ * 
+ * @author jbanes
+ */
+public class PipelinedOutput implements Output
+{
+    private static final int CHUNK_SIZE = 64 * 1024;
+    
+    private static final AtomicInteger threads = new AtomicInteger();
+    
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+        Thread thread = new Thread(runnable, "pipeline-" + threads.incrementAndGet());
+        
+        thread.setDaemon(true);
+        
+        return thread;
+    });
+    
+    private Output output;
+    private int batchSize;
+    private int queueSize;
+    private Executor executor;
+    private Schema schema;
+
+    public PipelinedOutput(Output output)
+    {
+        this(output, 1024, 16);
+    }
+    
+    public PipelinedOutput(Output output, int batchSize, int queueSize)
+    {
+        this(output, null, batchSize, queueSize);
+    }
+    
+    public PipelinedOutput(Output output, Schema schema, int batchSize, int queueSize)
+    {
+        this(output, schema, batchSize, queueSize, EXECUTOR);
+    }
+    
+    public PipelinedOutput(Output output, int batchSize, int queueSize, Executor executor)
+    {
+        this(output, null, batchSize, queueSize, executor);
+    }
+    
+    /**
+     * @param schema    the schema of the rows that may be written, or null
+     *                  to only take records
+     * @param batchSize the number of records or rows handed to the encoder
+     *                  at once
+     * @param queueSize the number of batches, and of encoded chunks, that 
+     *                  can be pending before the thread writing records 
+     *                  waits
+     * @param executor  runs the stages. Stages never block each other, so 
+     *                  any number of pipelines can share a single thread.
+     */
+    public PipelinedOutput(Output output, Schema schema, int batchSize, int queueSize, Executor executor)
+    {
+        if(batchSize < 1) throw new IllegalArgumentException("Batch size must be at least 1: " + batchSize);
+        if(queueSize < 1) throw new IllegalArgumentException("Queue size must be at least 1: " + queueSize);
+        
+        this.output = output;
+        this.batchSize = batchSize;
+        this.queueSize = queueSize;
+        this.executor = executor;
+        this.schema = schema;
+    }
+
+    @Override
+    public OutputCursor write(Target target)
+    {
+        return new Pipeline(target);
+    }
+    
+    /**
+     * Runs tasks one at a time, in the order they are submitted, on the
+     * executor. Nothing is held on the executor while there are no tasks.
+     */
+    private class Stage
+    {
+        private ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private AtomicBoolean running = new AtomicBoolean();
+        
+        public void submit(Runnable task)
+        {
+            tasks.add(task);
+            schedule();
+        }
+        
+        private void schedule()
+        {
+            if(!tasks.isEmpty() && running.compareAndSet(false, true)) executor.execute(this::drain);
+        }
+        
+        private void drain()
+        {
+            Runnable task;
+            
+            try
+            {
+                while((task = tasks.poll()) != null) task.run();
+            }
+            finally
+            {
+                // Picks up tasks submitted while the last one was finishing
+                running.set(false);
+                schedule();
+            }
+        }
+    }
+    
+    private class Pipeline implements RowCursor, RowWriter
+    {
+        private Target target;
+        
+        private Stage encoder = new Stage();
+        private Stage writer = new Stage();
+        private ChunkOutputStream stream = new ChunkOutputStream(this);
+        private CountDownLatch done = new CountDownLatch(1);
+        private volatile Throwable error;
+        
+        // Only used by the encoding and writing stages respectively
+        private OutputCursor cursor;
+        private OutputStream out;
+        
+        // Guarded by this
+        private int batches;
+        private int chunks;
+        
+        private JSONObject[] batch = new JSONObject[batchSize];
+        private int count;
+        
+        // Only one of the records or the rows is pending at a time
+        private RowBuffer rows;
+
+        public Pipeline(Target target)
+        {
+            this.target = target;
+        }
+        
+        private void fail(Throwable t)
+        {
+            if(error == null) error = t;
+        }
+        
+        private void check()
+        {
+            if(error == null) return;
+            
+            if(error instanceof ConvirganceException) throw (ConvirganceException)error;
+            
+            throw new ConvirganceException(error);
+        }
+        
+        private synchronized void release(boolean batch)
+        {
+            if(batch) batches--;
+            else chunks--;
+            
+            notifyAll();
+        }
+        
+        // Waits for room to hand over another batch
+        private synchronized void reserve()
+        {
+            try
+            {
+                while(batches >= queueSize || chunks >= queueSize) wait();
+            }
+            catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                
+                throw new ConvirganceException(e);
+            }
+            
+            batches++;
+        }
+        
+        private void send(JSONObject[] batch)
+        {
+            reserve();
+            encoder.submit(() -> encode(batch));
+        }
+        
+        private void send(RowBuffer rows)
+        {
+            reserve();
+            encoder.submit(() -> encode(rows));
+        }
+        
+        private void sendRecords()
+        {
+            if(count > 0) send(Arrays.copyOf(batch, count));
+            
+            count = 0;
+        }
+        
+        private void sendRows()
+        {
+            if(rows != null && rows.size() > 0) send(rows);
+            
+            rows = null;
+        }
+        
+        // Chunks are only counted here. The thread writing records is the
+        // one that waits for them to drain.
+        private void send(byte[] chunk)
+        {
+            synchronized(this)
+            {
+                chunks++;
+            }
+            
+            writer.submit(() -> write(chunk));
+        }
+        
+        private void encode(JSONObject[] batch)
+        {
+            try
+            {
+                // Stop encoding once either stage has failed
+                if(error != null) return;
+                
+                if(cursor == null) cursor = output.write(() -> stream);
+                
+                for(JSONObject record : batch) cursor.write(record);
+            }
+            catch(Throwable t)
+            {
+                fail(t);
+            }
+            finally
+            {
+                release(true);
+            }
+        }
+        
+        private void encode(RowBuffer rows)
+        {
+            RowWriter writer;
+            
+            try
+            {
+                if(error != null) return;
+                
+                if(cursor == null) cursor = output.write(() -> stream);
+                
+                if(cursor instanceof RowCursor && schema.equals(((RowCursor)cursor).getSchema()))
+                {
+                    writer = ((RowCursor)cursor).getWriter();
+                    
+                    for(int i=0; i<rows.size(); i++) rows.write(i, writer, -1);
+                }
+                else
+                {
+                    for(int i=0; i<rows.size(); i++) cursor.write(rows.getRecord(i, -1));
+                }
+            }
+            catch(Throwable t)
+            {
+                fail(t);
+            }
+            finally
+            {
+                release(true);
+            }
+        }
+        
+        private void finish()
+        {
+            try
+            {
+                if(error == null)
+                {
+                    if(cursor == null) cursor = output.write(() -> stream);
+                    
+                    cursor.close();
+                }
+                
+                stream.close();
+            }
+            catch(Throwable t)
+            {
+                fail(t);
+            }
+            
+            writer.submit(this::closeFile);
+        }
+        
+        private void write(byte[] chunk)
+        {
+            try
+            {
+                if(error != null) return;
+                
+                if(out == null) out = target.getOutputStream();
+                
+                out.write(chunk);
+            }
+            catch(Throwable t)
+            {
+                fail(t);
+            }
+            finally
+            {
+                release(false);
+            }
+        }
+        
+        private void closeFile()
+        {
+            try
+            {
+                if(out == null && error == null) out = target.getOutputStream();
+                if(out != null) out.close();
+            }
+            catch(Throwable t)
+            {
+                fail(t);
+            }
+            finally
+            {
+                done.countDown();
+            }
+        }
+        
+        @Override
+        public Schema getSchema()
+        {
+            return schema;
+        }
+
+        @Override
+        public RowWriter getWriter()
+        {
+            if(schema == null) throw new IllegalStateException("Rows cannot be written without a schema");
+            
+            return this;
+        }
+        
+        private RowBuffer getRows()
+        {
+            if(rows != null) return rows;
+            
+            check();
+            sendRecords();
+            
+            rows = new RowBuffer(schema, batchSize);
+            
+            return rows;
+        }
+
+        @Override
+        public void writeNull() throws IOException
+        {
+            getRows().writeNull();
+        }
+
+        @Override
+        public void writeInt(int value) throws IOException
+        {
+            getRows().writeInt(value);
+        }
+
+        @Override
+        public void writeLong(long value) throws IOException
+        {
+            getRows().writeLong(value);
+        }
+
+        @Override
+        public void writeDouble(double value) throws IOException
+        {
+            getRows().writeDouble(value);
+        }
+
+        @Override
+        public void writeString(String value) throws IOException
+        {
+            getRows().writeString(value);
+        }
+
+        @Override
+        public void endRow() throws IOException
+        {
+            getRows().endRow();
+            
+            if(rows.isFull()) sendRows();
+        }
+        
+        @Override
+        public void write(JSONObject record)
+        {
+            check();
+            sendRows();
+            
+            batch[count++] = record;
+            
+            if(count < batchSize) return;
+            
+            send(batch);
+            
+            batch = new JSONObject[batchSize];
+            count = 0;
+        }
+
+        @Override
+        public void close()
+        {
+            sendRecords();
+            sendRows();
+            
+            encoder.submit(this::finish);
+            
+            try
+            {
+                done.await();
+            }
+            catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                
+                throw new ConvirganceException(e);
+            }
+            
+            check();
+        }
+    }
+    
+    // Collects the encoded bytes into chunks for the writing stage
+    private static class ChunkOutputStream extends OutputStream
+    {
+        private Pipeline pipeline;
+        private byte[] chunk = new byte[CHUNK_SIZE];
+        private int length;
+        private boolean closed;
+
+        public ChunkOutputStream(Pipeline pipeline)
+        {
+            this.pipeline = pipeline;
+        }
+        
+        private void send()
+        {
+            if(length < 1) return;
+            
+            pipeline.send(Arrays.copyOf(chunk, length));
+            
+            length = 0;
+        }
+
+        @Override
+        public void write(int b) throws IOException
+        {
+            if(length >= chunk.length) send();
+            
+            chunk[length++] = (byte)b;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException
+        {
+            int copy;
+            
+            while(length > 0)
+            {
+                if(this.length >= chunk.length) send();
+                
+                copy = Math.min(length, chunk.length - this.length);
+                
+                System.arraycopy(bytes, offset, chunk, this.length, copy);
+                
+                this.length += copy;
+                offset += copy;
+                length -= copy;
+            }
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            if(closed) return;
+            
+            closed = true;
+            
+            send();
+        }
+    }
+}
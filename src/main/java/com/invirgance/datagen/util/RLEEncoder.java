@@ -0,0 +1,128 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * The hybrid of run length encoding and bit packing that Parquet uses for
+ * definition levels and dictionary indices. Runs of eight or more equal 
+ * values are written as a run, and everything else is bit packed in groups
+ * of eight, padded with zeros at the end.
+ * 
+ * @author jbanes
+ */
+public class RLEEncoder
+{
+    private static final int MIN_RUN = 8;
+    
+    /**
+     * The number of bits needed to hold values up to max. At least one bit
+     * is used, since not every reader handles a width of zero.
+     */
+    public static int getBitWidth(int max)
+    {
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(max));
+    }
+    
+    private static void writeVarint(ByteArrayOutputStream out, long value)
+    {
+        while((value & ~0x7FL) != 0)
+        {
+            out.write((int)((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        
+        out.write((int)value);
+    }
+    
+    private static int getRun(int[] values, int index, int end)
+    {
+        int start = index;
+        
+        while(index < end && values[index] == values[start]) index++;
+        
+        return index - start;
+    }
+    
+    public static void encode(int[] values, int offset, int count, int bitWidth, ByteArrayOutputStream out)
+    {
+        int end = offset + count;
+        int index = offset;
+        int run;
+        int groups;
+        int start;
+        
+        while(index < end)
+        {
+            run = getRun(values, index, end);
+            
+            if(run >= MIN_RUN)
+            {
+                writeVarint(out, (long)run << 1);
+                
+                for(int i=0; i<(bitWidth + 7) / 8; i++) out.write(values[index] >>> (i * 8));
+                
+                index += run;
+                continue;
+            }
+            
+            // Bit pack groups of eight until a run starts on a group boundary
+            start = index;
+            groups = 0;
+            
+            do
+            {
+                index = Math.min(index + 8, end);
+                groups++;
+            }
+            while(index < end && getRun(values, index, end) < MIN_RUN);
+            
+            writeVarint(out, ((long)groups << 1) | 1);
+            pack(values, start, index, groups * 8, bitWidth, out);
+        }
+    }
+    
+    // Least significant bit first, padding with zeros past the end
+    private static void pack(int[] values, int start, int end, int count, int bitWidth, ByteArrayOutputStream out)
+    {
+        long buffer = 0;
+        int bits = 0;
+        int value;
+        
+        for(int i=0; i<count; i++)
+        {
+            value = (start + i < end) ? values[start + i] : 0;
+            buffer |= ((long)value & ((1L << bitWidth) - 1)) << bits;
+            bits += bitWidth;
+            
+            while(bits >= 8)
+            {
+                out.write((int)(buffer & 0xFF));
+                buffer >>>= 8;
+                bits -= 8;
+            }
+        }
+        
+        if(bits > 0) out.write((int)(buffer & 0xFF));
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import com.invirgance.convirgance.ConvirganceException;
+import com.invirgance.datagen.modules.Context;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.random.RandomGenerator;
+import java.util.random.RandomGeneratorFactory;
+
+/**
+ * Creates the random number generators used by the generators. The 
+ * algorithm is picked with the random setting and can be any name known to
+ * {@link RandomGeneratorFactory}, such as L64X128MixRandom or 
+ * Xoshiro256PlusPlus. The default, Random, uses {@link java.util.Random}, 
+ * so a seed draws the same numbers it did before the algorithm could be 
+ * chosen. That does not keep the data of a seed the same across versions,
+ * since the generators may draw on those numbers differently, as employee
+ * and brand names do since they were sampled from an alias table and a 
+ * Feistel permutation.
+ * 
+ * @author jbanes
+ */
+public class Randoms
+{
+    public static final String DEFAULT_ALGORITHM = "Random";
+    
+    private static final ConcurrentHashMap<String,RandomGeneratorFactory<RandomGenerator>> factories = new ConcurrentHashMap<>();
+    
+    public static String getAlgorithm()
+    {
+        return Context.getSetting("random", DEFAULT_ALGORITHM);
+    }
+    
+    /**
+     * Creates a generator using the algorithm in the random setting.
+     */
+    public static RandomGenerator create(long seed)
+    {
+        return create(getAlgorithm(), seed);
+    }
+    
+    public static RandomGenerator create(String algorithm, long seed)
+    {
+        if(algorithm.equals(DEFAULT_ALGORITHM)) return new Random(seed);
+        
+        return getFactory(algorithm).create(seed);
+    }
+    
+    private static RandomGeneratorFactory<RandomGenerator> getFactory(String algorithm)
+    {
+        return factories.computeIfAbsent(algorithm, name -> {
+            try
+            {
+                return RandomGeneratorFactory.of(name);
+            }
+            catch(IllegalArgumentException e)
+            {
+                throw new ConvirganceException("Unknown random algorithm: " + name, e);
+            }
+        });
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import com.invirgance.convirgance.ConvirganceException;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Sidecar index of a temp file written in order of a parent key. Each run of
+ * records sharing a key is a separately encoded segment of the file, and the
+ * index records the key, the first row, the number of rows and the byte 
+ * range of every segment. Readers use it to decode only the segments for the
+ * key or rows they want. Long runs are split into several segments, and 
+ * tables without a key are split into blocks alone. The index also records
+ * whether the segments are LZ4 compressed.
+ * 
+ * @author jbanes
+ */
+public final class RangeIndex
+{
+    private static final int MAGIC = 0x52494458; // RIDX
+    
+    private final String key;
+    private final Range[] ranges;
+    private final boolean compressed;
+    private final IdIndex lookup;
+    
+    // Runs of the same key, chained in file order
+    private final int[] next;
+    private final int[] first;
+
+    public RangeIndex(String key, Range[] ranges)
+    {
+        this(key, ranges, false);
+    }
+    
+    public RangeIndex(String key, Range[] ranges, boolean compressed)
+    {
+        int[] keys = new int[ranges.length];
+        int[] last;
+        int group;
+        
+        this.key = key;
+        this.ranges = ranges;
+        this.compressed = compressed;
+        this.next = new int[ranges.length];
+        
+        for(int i=0; i<ranges.length; i++) keys[i] = ranges[i].key;
+        
+        // Map each key to its last run, then walk back to chain the runs
+        this.lookup = IdIndex.build(keys, keys.length);
+        this.first = new int[ranges.length];
+        
+        last = new int[ranges.length];
+        
+        Arrays.fill(next, -1);
+        Arrays.fill(last, -1);
+        
+        for(int i=0; i<ranges.length; i++)
+        {
+            group = lookup.find(keys[i]);
+            
+            if(last[group] < 0) first[group] = i;
+            else next[last[group]] = i;
+            
+            last[group] = i;
+        }
+    }
+    
+    /**
+     * The key the table is clustered on, or null if it only has blocks.
+     */
+    public String getKey()
+    {
+        return key;
+    }
+    
+    public Range[] getRanges()
+    {
+        return ranges;
+    }
+    
+    /**
+     * True if each segment is an LZ4 block, as written by 
+     * {@link IndexedOutput}, rather than the encoded records themselves.
+     */
+    public boolean isCompressed()
+    {
+        return compressed;
+    }
+    
+    /**
+     * The total number of rows in the table.
+     */
+    public long getRows()
+    {
+        if(ranges.length < 1) return 0;
+        
+        return ranges[ranges.length-1].row + ranges[ranges.length-1].count;
+    }
+    
+    /**
+     * Returns the position in {@link #getRanges()} of the segment holding 
+     * the row, or -1 if the row is out of bounds.
+     */
+    public int findRow(long row)
+    {
+        int low = 0;
+        int high = ranges.length - 1;
+        int middle;
+        
+        if(row < 0 || row >= getRows()) return -1;
+        
+        while(low < high)
+        {
+            middle = (low + high + 1) >>> 1;
+            
+            if(ranges[middle].row <= row) low = middle;
+            else high = middle - 1;
+        }
+        
+        return low;
+    }
+    
+    /**
+     * Returns every segment holding the key, in file order. Usually there is 
+     * exactly one, but keys written out of order or with more rows than a
+     * block produce several.
+     */
+    public Range[] find(int value)
+    {
+        ArrayList<Range> list = new ArrayList<>();
+        int index = lookup.find(value);
+        
+        if(index < 0) return new Range[0];
+        
+        for(int i=first[index]; i>=0; i=next[i]) list.add(ranges[i]);
+        
+        return list.toArray(Range[]::new);
+    }
+    
+    public void write(File file)
+    {
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file))))
+        {
+            out.writeInt(MAGIC);
+            out.writeUTF(key == null ? "" : key);
+            out.writeBoolean(compressed);
+            out.writeInt(ranges.length);
+            
+            for(Range range : ranges)
+            {
+                out.writeInt(range.key);
+                out.writeLong(range.row);
+                out.writeInt(range.count);
+                out.writeLong(range.offset);
+                out.writeLong(range.length);
+            }
+        }
+        catch(IOException e)
+        {
+            throw new ConvirganceException(e);
+        }
+    }
+    
+    public static RangeIndex read(File file)
+    {
+        Range[] ranges;
+        String key;
+        boolean compressed;
+        
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+        {
+            if(in.readInt() != MAGIC) throw new ConvirganceException("Not a range index: " + file);
+            
+            key = in.readUTF();
+            key = key.isEmpty() ? null : key;
+            compressed = in.readBoolean();
+            ranges = new Range[in.readInt()];
+            
+            for(int i=0; i<ranges.length; i++)
+            {
+                ranges[i] = new Range(in.readInt(), in.readLong(), in.readInt(), in.readLong(), in.readLong());
+            }
+            
+            return new RangeIndex(key, ranges, compressed);
+        }
+        catch(IOException e)
+        {
+            throw new ConvirganceException(e);
+        }
+    }
+    
+    /**
+     * A run of consecutive records sharing a key.
+     */
+    public static final class Range
+    {
+        public final int key;
+        public final long row;
+        public final int count;
+        public final long offset;
+        public final long length;
+
+        public Range(int key, long row, int count, long offset, long length)
+        {
+            this.key = key;
+            this.row = row;
+            this.count = count;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import com.invirgance.convirgance.json.JSONObject;
+import java.io.IOException;
+
+/**
+ * Holds rows written through {@link RowWriter} as typed values, so that they
+ * can be handed on to another writer without building a record for each.
+ * The values are kept in arrays sized for the given number of rows, which 
+ * are reused once the buffer is cleared. Numbers are kept as longs, with
+ * doubles as their bits.
+ * 
+ * @author jbanes
+ */
+public class RowBuffer implements RowWriter
+{
+    private Schema schema;
+    private int columns;
+    private int capacity;
+    
+    private long[] numbers;
+    private String[] strings;
+    private boolean[] nulls;
+    
+    private int rows;
+    private int column;
+
+    public RowBuffer(Schema schema, int capacity)
+    {
+        if(capacity < 1) throw new IllegalArgumentException("Buffer must hold at least 1 row: " + capacity);
+        
+        this.schema = schema;
+        this.columns = schema.size();
+        this.capacity = capacity;
+        this.numbers = new long[columns * capacity];
+        this.strings = new String[columns * capacity];
+        this.nulls = new boolean[columns * capacity];
+    }
+
+    public Schema getSchema()
+    {
+        return schema;
+    }
+    
+    /**
+     * The number of complete rows held.
+     */
+    public int size()
+    {
+        return rows;
+    }
+    
+    public boolean isFull()
+    {
+        return (rows >= capacity);
+    }
+    
+    public void clear()
+    {
+        if(column > 0) throw new IllegalStateException("A row is partly written");
+        
+        rows = 0;
+    }
+    
+    private int next(int type)
+    {
+        if(rows >= capacity) throw new IllegalStateException("Buffer is full");
+        if(column >= columns) throw new IllegalStateException("Row has more than the " + columns + " columns of the schema");
+        
+        if(type >= 0 && schema.getType(column) != type) 
+        {
+            throw new IllegalStateException("Column " + schema.getName(column) + " does not hold values of type " + type);
+        }
+        
+        return rows * columns + column++;
+    }
+
+    @Override
+    public void writeNull() throws IOException
+    {
+        int index = next(-1);
+        
+        nulls[index] = true;
+        strings[index] = null;
+    }
+
+    @Override
+    public void writeInt(int value) throws IOException
+    {
+        int index = next(Schema.INT);
+        
+        nulls[index] = false;
+        numbers[index] = value;
+    }
+
+    @Override
+    public void writeLong(long value) throws IOException
+    {
+        int index = next(Schema.LONG);
+        
+        nulls[index] = false;
+        numbers[index] = value;
+    }
+
+    @Override
+    public void writeDouble(double value) throws IOException
+    {
+        int index = next(Schema.DOUBLE);
+        
+        nulls[index] = false;
+        numbers[index] = Double.doubleToRawLongBits(value);
+    }
+
+    @Override
+    public void writeString(String value) throws IOException
+    {
+        int index;
+        
+        if(value == null) 
+        {
+            writeNull();
+            return;
+        }
+        
+        index = next(Schema.STRING);
+        nulls[index] = false;
+        strings[index] = value;
+    }
+
+    @Override
+    public void endRow() throws IOException
+    {
+        if(column != columns) throw new IllegalStateException("Row has " + column + " of the " + columns + " columns of the schema");
+        
+        column = 0;
+        rows++;
+    }
+    
+    /**
+     * The value of a column of a row, boxed as it would be in a record.
+     */
+    public Object get(int row, int column)
+    {
+        int index = row * columns + column;
+        
+        if(nulls[index]) return null;
+        
+        switch(schema.getType(column))
+        {
+            case Schema.INT:
+                return (int)numbers[index];
+                
+            case Schema.LONG:
+                return numbers[index];
+                
+            case Schema.DOUBLE:
+                return Double.longBitsToDouble(numbers[index]);
+                
+            default:
+                return strings[index];
+        }
+    }
+    
+    /**
+     * Writes a row to another writer, leaving out the column at skip. Pass
+     * -1 to write every column.
+     */
+    public void write(int row, RowWriter writer, int skip) throws IOException
+    {
+        int index = row * columns;
+        
+        for(int i=0; i<columns; i++, index++)
+        {
+            if(i == skip) continue;
+            
+            if(nulls[index]) 
+            {
+                writer.writeNull();
+                continue;
+            }
+            
+            switch(schema.getType(i))
+            {
+                case Schema.INT:
+                    writer.writeInt((int)numbers[index]);
+                    break;
+                    
+                case Schema.LONG:
+                    writer.writeLong(numbers[index]);
+                    break;
+                    
+                case Schema.DOUBLE:
+                    writer.writeDouble(Double.longBitsToDouble(numbers[index]));
+                    break;
+                    
+                default:
+                    writer.writeString(strings[index]);
+            }
+        }
+        
+        writer.endRow();
+    }
+    
+    /**
+     * A row as a record, leaving out the column at skip. Pass -1 to keep 
+     * every column.
+     */
+    public JSONObject getRecord(int row, int skip)
+    {
+        JSONObject record = new JSONObject(true);
+        
+        for(int i=0; i<columns; i++)
+        {
+            if(i != skip) record.put(schema.getName(i), get(row, i));
+        }
+        
+        return record;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import com.invirgance.convirgance.json.JSONObject;
+import com.invirgance.convirgance.output.OutputCursor;
+import java.io.IOException;
+
+/**
+ * A cursor that can also take rows straight from a {@link RowWriter}. Rows
+ * written either way may be mixed freely.
+ * 
+ * @author jbanes
+ */
+public interface RowCursor extends OutputCursor
+{
+    public Schema getSchema();
+    
+    /**
+     * The writer to write a row to directly. Values must be written in the
+     * order and with the types of the schema, followed by endRow().
+     */
+    public RowWriter getWriter();
+    
+    private static boolean isInteger(Object value, int type)
+    {
+        long number;
+        
+        if(!(value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte)) return false;
+        
+        number = ((Number)value).longValue();
+        
+        return (type == Schema.LONG || number == (int)number);
+    }
+    
+    /**
+     * Writes the values of a record to the writer by the types of the 
+     * schema. Missing values are written as nulls.
+     */
+    public static void write(JSONObject record, Schema schema, RowWriter writer) throws IOException
+    {
+        Object value;
+        
+        for(int i=0; i<schema.size(); i++)
+        {
+            value = record.get(schema.getName(i));
+
+            if(value == null) writer.writeNull();
+            else if(schema.getType(i) == Schema.STRING) writer.writeString(value.toString());
+            else if(!(value instanceof Number)) throw new IllegalArgumentException("Column " + schema.getName(i) + " is not a number: " + value);
+            else if(schema.getType(i) == Schema.DOUBLE) writer.writeDouble(((Number)value).doubleValue());
+            else if(!isInteger(value, schema.getType(i))) throw new IllegalArgumentException("Column " + schema.getName(i) + " cannot hold " + value);
+            else if(schema.getType(i) == Schema.LONG) writer.writeLong(((Number)value).longValue());
+            else writer.writeInt(((Number)value).intValue());
+        }
+
+        writer.endRow();
+    }
+}
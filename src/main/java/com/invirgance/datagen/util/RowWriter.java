@@ -21,36 +21,26 @@ SOFTWARE.
  */
 package com.invirgance.datagen.util;
 
-import com.invirgance.convirgance.ConvirganceException;
-import com.invirgance.convirgance.json.JSONObject;
-import com.invirgance.convirgance.transform.IdentityTransformer;
+import java.io.IOException;
 
 /**
- *
+ * Takes the values of a row one at a time, in the column order and with the
+ * types of a {@link Schema}, followed by endRow(). Lets generators write 
+ * typed values without building a record for every row.
+ * 
  * @author jbanes
  */
-public class SegmentationTransformer implements IdentityTransformer
+public interface RowWriter
 {
-    private String key;
-    private int start;
-    private int total;
-
-    public SegmentationTransformer(String key)
-    {
-        this.key = key;
-    }
+    public void writeNull() throws IOException;
     
-    @Override
-    public JSONObject transform(JSONObject record) throws ConvirganceException
-    {
-        total += record.getInt(key);
-
-        record.put("Start", start);
-        record.put("End", total);
-
-        start = total;
-
-        return record;
-    }
+    public void writeInt(int value) throws IOException;
+    
+    public void writeLong(long value) throws IOException;
+    
+    public void writeDouble(double value) throws IOException;
+    
+    public void writeString(String value) throws IOException;
     
+    public void endRow() throws IOException;
 }
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import com.invirgance.convirgance.json.JSONObject;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+/**
+ * The names and types of the columns of a table, in the order they are
+ * written. Types are those of {@link ColumnCache}. Used by outputs that 
+ * write typed values without going through the generic JSON encoding.
+ * 
+ * @author jbanes
+ */
+public class Schema
+{
+    public static final int INT = ColumnCache.INT;
+    public static final int LONG = ColumnCache.LONG;
+    public static final int DOUBLE = ColumnCache.DOUBLE;
+    public static final int STRING = ColumnCache.STRING;
+    
+    private String[] names = new String[0];
+    private int[] types = new int[0];
+    
+    public Schema add(String name, int type)
+    {
+        if(type < INT || type > STRING) throw new IllegalArgumentException("Unknown type " + type + " for column " + name);
+        if(indexOf(name) >= 0) throw new IllegalArgumentException("Duplicate column " + name);
+        
+        names = Arrays.copyOf(names, names.length + 1);
+        types = Arrays.copyOf(types, types.length + 1);
+        
+        names[names.length - 1] = name;
+        types[types.length - 1] = type;
+        
+        return this;
+    }
+    
+    public int size()
+    {
+        return names.length;
+    }
+    
+    public String getName(int column)
+    {
+        return names[column];
+    }
+    
+    public int getType(int column)
+    {
+        return types[column];
+    }
+    
+    public int indexOf(String name)
+    {
+        for(int i=0; i<names.length; i++)
+        {
+            if(names[i].equals(name)) return i;
+        }
+        
+        return -1;
+    }
+    
+    /**
+     * Works out a schema from the records, for tables that do not declare 
+     * one. Columns are taken in the order they first appear. Types widen 
+     * from int to long to double to string as needed, and columns that are
+     * only ever null are strings.
+     */
+    public static Schema infer(Iterable<JSONObject> records)
+    {
+        LinkedHashMap<String,Integer> columns = new LinkedHashMap<>();
+        Schema schema = new Schema();
+        Object value;
+        int type;
+        
+        for(JSONObject record : records)
+        {
+            for(String name : record.keySet())
+            {
+                value = record.get(name);
+                
+                if(value == null) type = -1;
+                else if(value instanceof Integer || value instanceof Short || value instanceof Byte) type = INT;
+                else if(value instanceof Long) type = LONG;
+                else if(value instanceof Number) type = DOUBLE;
+                else type = STRING;
+                
+                columns.merge(name, type, Math::max);
+            }
+        }
+        
+        for(String name : columns.keySet())
+        {
+            type = columns.get(name);
+            
+            schema.add(name, (type < 0) ? STRING : type);
+        }
+        
+        return schema;
+    }
+    
+    /**
+     * A copy of the schema without the named column.
+     */
+    public Schema without(String name)
+    {
+        Schema schema = new Schema();
+        
+        for(int i=0; i<names.length; i++)
+        {
+            if(!names[i].equals(name)) schema.add(names[i], types[i]);
+        }
+        
+        return schema;
+    }
+    
+    /**
+     * Schemas are equal if they have the same columns, with the same types,
+     * in the same order.
+     */
+    @Override
+    public boolean equals(Object object)
+    {
+        if(!(object instanceof Schema)) return false;
+        
+        return Arrays.equals(names, ((Schema)object).names) && Arrays.equals(types, ((Schema)object).types);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Arrays.hashCode(names) * 31 + Arrays.hashCode(types);
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+/**
+ * Derives independent seeds from a base seed and a list of keys, such as a
+ * franchise and store id. The derived seed depends only on its inputs, so 
+ * the same stream is produced no matter what order, or on which thread, the
+ * work is done.
+ * 
+ * @author jbanes
+ */
+public class Seeds
+{
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    
+    /**
+     * The SplitMix64 finalizer. Every bit of the input affects every bit of
+     * the output.
+     */
+    public static long mix(long value)
+    {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        
+        return value ^ (value >>> 31);
+    }
+    
+    public static long derive(long seed, long... keys)
+    {
+        long value = mix(seed + GOLDEN_GAMMA);
+        
+        for(long key : keys)
+        {
+            value = mix(value ^ mix(key + GOLDEN_GAMMA));
+        }
+        
+        return value;
+    }
+}
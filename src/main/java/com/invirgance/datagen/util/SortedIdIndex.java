@@ -0,0 +1,122 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+/**
+ * Index over a sorted copy of the ids. Lookups use a branchless binary search
+ * which the JIT compiles to conditional moves, avoiding the branch mispredicts
+ * of a classic binary search. The most compact of the indexes.
+ * 
+ * @author jbanes
+ */
+public class SortedIdIndex implements IdIndex
+{
+    private int[] ids;
+    private int[] rows;
+
+    public SortedIdIndex(int[] ids, int size)
+    {
+        this.ids = new int[size];
+        this.rows = new int[size];
+        
+        for(int i=0; i<size; i++)
+        {
+            this.ids[i] = ids[i];
+            this.rows[i] = i;
+        }
+        
+        sort(this.ids, this.rows, 0, size - 1);
+    }
+    
+    private static void swap(int[] array, int a, int b)
+    {
+        int swap = array[a];
+        
+        array[a] = array[b];
+        array[b] = swap;
+    }
+    
+    // Sorts by id, then by row so that the last row for a duplicate id wins
+    private static void sort(int[] keys, int[] values, int low, int high)
+    {
+        int left;
+        int right;
+        int pivot;
+        int pivotValue;
+        int middle;
+        
+        while(low < high)
+        {
+            middle = (low + high) >>> 1;
+            pivot = keys[middle];
+            pivotValue = values[middle];
+            left = low;
+            right = high;
+            
+            while(left <= right)
+            {
+                while(keys[left] < pivot || (keys[left] == pivot && values[left] < pivotValue)) left++;
+                while(keys[right] > pivot || (keys[right] == pivot && values[right] > pivotValue)) right--;
+                
+                if(left <= right)
+                {
+                    swap(keys, left, right);
+                    swap(values, left, right);
+                    left++;
+                    right--;
+                }
+            }
+            
+            // Recurse into the smaller half to bound the stack depth
+            if(right - low < high - left)
+            {
+                sort(keys, values, low, right);
+                low = left;
+            }
+            else
+            {
+                sort(keys, values, left, high);
+                high = right;
+            }
+        }
+    }
+
+    @Override
+    public int find(int id)
+    {
+        int base = 0;
+        int length = ids.length;
+        int half;
+        
+        if(length == 0) return -1;
+        
+        // Finds the last position holding a value <= id
+        while(length > 1)
+        {
+            half = length >>> 1;
+            base = (ids[base + half] <= id) ? base + half : base;
+            length -= half;
+        }
+        
+        return (ids[base] == id) ? rows[base] : -1;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import com.invirgance.convirgance.json.JSONObject;
+import com.invirgance.convirgance.output.Output;
+import com.invirgance.convirgance.output.OutputCursor;
+import com.invirgance.convirgance.target.Target;
+
+/**
+ * Writes every record to two outputs at once. The primary output writes to
+ * the target passed to write() and may be null if only the secondary output
+ * is wanted. The secondary output always writes to the target given at 
+ * construction. Used to encode a table into its final format in the same 
+ * pass that writes the temp file read by other generators.
+ * 
+ * @author jbanes
+ */
+public class TeeOutput implements Output
+{
+    private Output primary;
+    private Output secondary;
+    private Target target;
+
+    public TeeOutput(Output primary, Output secondary, Target target)
+    {
+        this.primary = primary;
+        this.secondary = secondary;
+        this.target = target;
+    }
+
+    @Override
+    public OutputCursor write(Target target)
+    {
+        OutputCursor first = (primary != null) ? primary.write(target) : null;
+        OutputCursor second = secondary.write(this.target);
+        
+        // Hands back the cursor itself so that typed cursors stay visible
+        if(first == null) return second;
+        
+        return new OutputCursor() {
+            
+            @Override
+            public void write(JSONObject record)
+            {
+                if(first != null) first.write(record);
+                
+                second.write(record);
+            }
+
+            @Override
+            public void close()
+            {
+                try
+                {
+                    if(first != null) first.close();
+                }
+                finally
+                {
+                    second.close();
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes structures in the Thrift compact protocol, as used for the page 
+ * headers and footer of Parquet files. Only the parts of the protocol that
+ * Parquet needs are provided. Fields must be written in increasing order of
+ * id within a struct.
+ * 
+ * @author jbanes
+ */
+public class ThriftWriter
+{
+    public static final int BOOLEAN_TRUE = 1;
+    public static final int BOOLEAN_FALSE = 2;
+    public static final int I32 = 5;
+    public static final int I64 = 6;
+    public static final int BINARY = 8;
+    public static final int LIST = 9;
+    public static final int STRUCT = 12;
+    
+    private ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private short[] fields = new short[16];
+    private int depth;
+    
+    private void writeVarint(long value)
+    {
+        while((value & ~0x7FL) != 0)
+        {
+            out.write((int)((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        
+        out.write((int)value);
+    }
+    
+    private void writeFieldHeader(int id, int type)
+    {
+        int delta = id - fields[depth];
+        
+        if(delta > 0 && delta <= 15)
+        {
+            out.write((delta << 4) | type);
+        }
+        else
+        {
+            out.write(type);
+            writeVarint(((id << 1) ^ (id >> 31)) & 0xFFFFFFFFL);
+        }
+        
+        fields[depth] = (short)id;
+    }
+    
+    public ThriftWriter writeI32(int id, int value)
+    {
+        writeFieldHeader(id, I32);
+        writeVarint(((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL);
+        
+        return this;
+    }
+    
+    public ThriftWriter writeI64(int id, long value)
+    {
+        writeFieldHeader(id, I64);
+        writeVarint((value << 1) ^ (value >> 63));
+        
+        return this;
+    }
+    
+    public ThriftWriter writeBoolean(int id, boolean value)
+    {
+        writeFieldHeader(id, value ? BOOLEAN_TRUE : BOOLEAN_FALSE);
+        
+        return this;
+    }
+    
+    public ThriftWriter writeString(int id, String value)
+    {
+        writeFieldHeader(id, BINARY);
+        writeBinary(value);
+        
+        return this;
+    }
+    
+    private void writeBinary(String value)
+    {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        
+        writeVarint(bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+    
+    public ThriftWriter beginStruct(int id)
+    {
+        writeFieldHeader(id, STRUCT);
+        
+        return beginStruct();
+    }
+    
+    /**
+     * Starts a struct that is an element of a list, or the top level struct.
+     */
+    public ThriftWriter beginStruct()
+    {
+        if(++depth >= fields.length) throw new IllegalStateException("Structs are nested too deeply");
+        
+        fields[depth] = 0;
+        
+        return this;
+    }
+    
+    public ThriftWriter endStruct()
+    {
+        out.write(0);
+        depth--;
+        
+        return this;
+    }
+    
+    /**
+     * Starts a list of the given size and element type. The elements follow
+     * as structs, or with writeListI32() and writeListString().
+     */
+    public ThriftWriter beginList(int id, int type, int size)
+    {
+        writeFieldHeader(id, LIST);
+        
+        if(size < 15)
+        {
+            out.write((size << 4) | type);
+        }
+        else
+        {
+            out.write(0xF0 | type);
+            writeVarint(size);
+        }
+        
+        return this;
+    }
+    
+    public ThriftWriter writeListI32(int value)
+    {
+        writeVarint(((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL);
+        
+        return this;
+    }
+    
+    public ThriftWriter writeListString(String value)
+    {
+        writeBinary(value);
+        
+        return this;
+    }
+    
+    public byte[] toByteArray()
+    {
+        if(depth != 0) throw new IllegalStateException("Struct is not complete");
+        
+        return out.toByteArray();
+    }
+}
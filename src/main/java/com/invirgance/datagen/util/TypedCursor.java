@@ -0,0 +1,183 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import com.invirgance.convirgance.ConvirganceException;
+import com.invirgance.convirgance.json.JSONObject;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * The cursor of an output that encodes rows by the types of a schema. The 
+ * schema is taken from the table if it has one. Otherwise records are held
+ * back until there are enough to work it out with {@link Schema#infer}, and
+ * later records must fit it. Records and rows written to the row writer go
+ * through the same checks, so subclasses only encode the values.
+ * 
+ * @author jbanes
+ */
+public abstract class TypedCursor implements RowCursor, RowWriter
+{
+    private Schema schema;
+    private int inferRows;
+    private ArrayList<JSONObject> pending = new ArrayList<>();
+    private int column;
+
+    /**
+     * @param inferRows the number of records to work the schema out from,
+     *                  when the table has no schema
+     */
+    protected TypedCursor(int inferRows)
+    {
+        this.inferRows = inferRows;
+    }
+    
+    /**
+     * Called once the columns are known, either from the constructor of the
+     * subclass or once enough records have been written to work them out.
+     */
+    protected abstract void start(Schema schema) throws IOException;
+    
+    /**
+     * Called at the start of each row, before its first value.
+     */
+    protected void startRow() throws IOException
+    {
+    }
+    
+    /**
+     * Called once all the values of a row have been written.
+     */
+    protected abstract void finishRow() throws IOException;
+    
+    /**
+     * Writes out what is left and closes the file.
+     */
+    protected abstract void finish() throws IOException;
+    
+    protected void setSchema(Schema schema) throws IOException
+    {
+        this.schema = schema;
+        
+        start(schema);
+    }
+    
+    /**
+     * The schema, or null if it has not been worked out yet.
+     */
+    @Override
+    public Schema getSchema()
+    {
+        return schema;
+    }
+
+    @Override
+    public RowWriter getWriter()
+    {
+        if(schema == null) throw new IllegalStateException("The schema has not been worked out yet");
+        
+        return this;
+    }
+    
+    /**
+     * Moves on to the next column of the row, for a null value, and returns
+     * its index.
+     */
+    protected int next() throws IOException
+    {
+        if(schema == null) throw new IllegalStateException("The schema has not been worked out yet");
+        if(column >= schema.size()) throw new IllegalStateException("Row has more than the " + schema.size() + " columns of the schema");
+        
+        if(column == 0) startRow();
+        
+        return column++;
+    }
+    
+    /**
+     * Moves on to the next column of the row, which must hold values of the
+     * given type, and returns its index.
+     */
+    protected int next(int type) throws IOException
+    {
+        if(schema != null && column < schema.size() && schema.getType(column) != type) 
+        {
+            throw new IllegalStateException("Column " + schema.getName(column) + " does not hold values of type " + type);
+        }
+        
+        return next();
+    }
+
+    @Override
+    public void endRow() throws IOException
+    {
+        if(column != schema.size()) throw new IllegalStateException("Row has " + column + " of the " + schema.size() + " columns of the schema");
+        
+        column = 0;
+        
+        finishRow();
+    }
+    
+    private void infer() throws IOException
+    {
+        setSchema(Schema.infer(pending));
+        
+        for(JSONObject record : pending) RowCursor.write(record, schema, this);
+        
+        pending = null;
+    }
+
+    @Override
+    public void write(JSONObject record)
+    {
+        try
+        {
+            if(schema != null) 
+            {
+                RowCursor.write(record, schema, this);
+                return;
+            }
+            
+            pending.add(record);
+            
+            if(pending.size() >= inferRows) infer();
+        }
+        catch(IOException e)
+        {
+            throw new ConvirganceException(e);
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        try
+        {
+            if(schema == null) infer();
+            
+            finish();
+        }
+        catch(IOException e)
+        {
+            throw new ConvirganceException(e);
+        }
+    }
+}
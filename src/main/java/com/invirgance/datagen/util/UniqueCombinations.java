@@ -0,0 +1,87 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+/**
+ * Draws combinations of two lists, such as adjective and noun or first and
+ * last name, without repeating a combination. Each draw walks a keyed 
+ * permutation of every combination, so no lookup set is needed and every 
+ * draw takes constant time until the capacity is used up.
+ * 
+ * @author jbanes
+ */
+public class UniqueCombinations
+{
+    private int right;
+    private FeistelPermutation permutation;
+    private long index;
+
+    public UniqueCombinations(int left, int right, long seed)
+    {
+        this.right = right;
+        this.permutation = new FeistelPermutation(getCapacity(left, right), seed);
+    }
+    
+    /**
+     * The number of distinct combinations of two lists.
+     */
+    public static long getCapacity(int left, int right)
+    {
+        return (long)left * right;
+    }
+    
+    public long getCapacity()
+    {
+        return permutation.size();
+    }
+    
+    public long getRemaining()
+    {
+        return permutation.size() - index;
+    }
+    
+    public boolean hasNext()
+    {
+        return (index < permutation.size());
+    }
+    
+    /**
+     * Returns the next combination. The positions in the two lists are 
+     * recovered with {@link #getLeft(long)} and {@link #getRight(long)}.
+     */
+    public long next()
+    {
+        if(!hasNext()) throw new IllegalStateException("All " + getCapacity() + " unique combinations have been used");
+        
+        return permutation.get(index++);
+    }
+    
+    public int getLeft(long combination)
+    {
+        return (int)(combination / right);
+    }
+    
+    public int getRight(long combination)
+    {
+        return (int)(combination % right);
+    }
+}
@@ -21,35 +21,97 @@ SOFTWARE.
  */
 package com.invirgance.datagen.util;
 
-import java.util.Random;
+import java.util.random.RandomGenerator;
 
 /**
- *
+ * Random generator whose nextBoolean() is true with a fixed probability. 
+ * Every other call is passed to a generator created by {@link Randoms}, so
+ * the output matches java.util.Random exactly in the default mode.
+ * 
  * @author jbanes
  */
-public class WeightedRandom extends Random
+public class WeightedRandom implements RandomGenerator
 {
+    private RandomGenerator random;
     private double weight;
     
     public WeightedRandom(long seed, double weight)
     {
-        super(seed);
-        
+        this(Randoms.create(seed), weight);
+    }
+    
+    public WeightedRandom(RandomGenerator random, double weight)
+    {
+        this.random = random;
         this.weight = weight;
     }
 
     @Override
     public boolean nextBoolean()
     {
-        double random = super.nextDouble();
+        double value = random.nextDouble();
         
-        return (random <= weight);
+        return (value <= weight);
     }
 
     public boolean nextBoolean(double weight)
     {
-        double random = super.nextDouble();
+        double value = random.nextDouble();
         
-        return (random <= weight);
+        return (value <= weight);
+    }
+
+    @Override
+    public long nextLong()
+    {
+        return random.nextLong();
+    }
+
+    @Override
+    public long nextLong(long bound)
+    {
+        return random.nextLong(bound);
+    }
+
+    @Override
+    public long nextLong(long origin, long bound)
+    {
+        return random.nextLong(origin, bound);
+    }
+
+    @Override
+    public int nextInt()
+    {
+        return random.nextInt();
+    }
+
+    @Override
+    public int nextInt(int bound)
+    {
+        return random.nextInt(bound);
+    }
+
+    @Override
+    public int nextInt(int origin, int bound)
+    {
+        return random.nextInt(origin, bound);
+    }
+
+    @Override
+    public double nextDouble()
+    {
+        return random.nextDouble();
+    }
+
+    @Override
+    public float nextFloat()
+    {
+        return random.nextFloat();
+    }
+
+    @Override
+    public double nextGaussian()
+    {
+        return random.nextGaussian();
     }
 }
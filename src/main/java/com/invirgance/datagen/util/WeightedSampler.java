@@ -0,0 +1,191 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import com.invirgance.convirgance.json.JSONObject;
+import java.util.ArrayList;
+import java.util.random.RandomGenerator;
+
+/**
+ * Picks values at random in proportion to integer weights. Sampling uses an
+ * alias table (Vose's method) and takes constant time no matter how many 
+ * values there are. The cumulative weights are also kept, so that a value
+ * can be looked up from a number in the range of the total weight in 
+ * logarithmic time. Immutable once built and safe to share between threads.
+ * 
+ * @author jbanes
+ */
+public class WeightedSampler<T>
+{
+    private T[] values;
+    private long total;
+    
+    // Alias table. Column i is kept if a draw below total is under 
+    // threshold[i], otherwise alias[i] is returned.
+    private long[] threshold;
+    private int[] alias;
+    
+    // Exclusive end of each value in the cumulative weights
+    private long[] ends;
+
+    public WeightedSampler(T[] values, long[] weights)
+    {
+        int count = values.length;
+        long[] scaled = new long[count];
+        int[] small = new int[count];
+        int[] large = new int[count];
+        int smallCount = 0;
+        int largeCount = 0;
+        int less;
+        int more;
+        
+        if(count < 1) throw new IllegalArgumentException("At least one value is required");
+        if(weights.length != count) throw new IllegalArgumentException("Expected " + count + " weights but found " + weights.length);
+        
+        this.values = values;
+        this.threshold = new long[count];
+        this.alias = new int[count];
+        this.ends = new long[count];
+        
+        for(int i=0; i<count; i++)
+        {
+            if(weights[i] < 0) throw new IllegalArgumentException("Negative weight for " + values[i] + ": " + weights[i]);
+            
+            total = Math.addExact(total, weights[i]);
+            ends[i] = total;
+        }
+        
+        if(total < 1) throw new IllegalArgumentException("The total weight must be greater than zero");
+        
+        // Weights are scaled by the count so that the average column is 
+        // exactly total, keeping the table exact in integer arithmetic
+        for(int i=0; i<count; i++)
+        {
+            scaled[i] = Math.multiplyExact(weights[i], (long)count);
+            
+            if(scaled[i] < total) small[smallCount++] = i;
+            else large[largeCount++] = i;
+        }
+        
+        while(smallCount > 0 && largeCount > 0)
+        {
+            less = small[--smallCount];
+            more = large[--largeCount];
+            
+            threshold[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] -= total - scaled[less];
+            
+            if(scaled[more] < total) small[smallCount++] = more;
+            else large[largeCount++] = more;
+        }
+        
+        // Whatever is left fills its column completely
+        while(largeCount > 0) threshold[large[--largeCount]] = total;
+        while(smallCount > 0) threshold[small[--smallCount]] = total;
+    }
+    
+    /**
+     * Builds a sampler from records holding a value and its weight, such as 
+     * the name lists in the resources.
+     */
+    public static WeightedSampler<String> load(Iterable<JSONObject> records, String valueKey, String weightKey)
+    {
+        ArrayList<String> values = new ArrayList<>();
+        ArrayList<Long> weights = new ArrayList<>();
+        
+        for(JSONObject record : records)
+        {
+            values.add(record.getString(valueKey));
+            weights.add(record.getLong(weightKey));
+        }
+        
+        return new WeightedSampler<>(values.toArray(String[]::new), weights.stream().mapToLong(Long::longValue).toArray());
+    }
+    
+    public int size()
+    {
+        return values.length;
+    }
+    
+    public long getTotal()
+    {
+        return total;
+    }
+    
+    public T getValue(int index)
+    {
+        return values[index];
+    }
+    
+    /**
+     * Returns the index of a value picked at random in proportion to its
+     * weight.
+     */
+    public int nextIndex(RandomGenerator random)
+    {
+        int column = random.nextInt(values.length);
+        
+        if(threshold[column] == total || random.nextLong(total) < threshold[column]) return column;
+        
+        return alias[column];
+    }
+    
+    /**
+     * Returns a value picked at random in proportion to its weight.
+     */
+    public T next(RandomGenerator random)
+    {
+        return values[nextIndex(random)];
+    }
+    
+    /**
+     * Returns the index of the value covering the position in the cumulative
+     * weights, which must be between 0 and the total weight.
+     */
+    public int indexOf(long position)
+    {
+        int low = 0;
+        int high = ends.length - 1;
+        int middle;
+        
+        if(position < 0 || position >= total) throw new IllegalArgumentException(position + " is outside the bounds of 0 - " + total);
+        
+        while(low < high)
+        {
+            middle = (low + high) >>> 1;
+            
+            if(ends[middle] <= position) low = middle + 1;
+            else high = middle;
+        }
+        
+        return low;
+    }
+    
+    /**
+     * Returns the value covering the position in the cumulative weights.
+     */
+    public T get(long position)
+    {
+        return values[indexOf(position)];
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.modules;
+
+import com.invirgance.convirgance.json.JSONArray;
+import com.invirgance.convirgance.json.JSONObject;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author jbanes
+ */
+public class ContextTest
+{
+    @Test
+    public void testSettings()
+    {
+        HashMap<String,String> map = new HashMap<>();
+        Settings settings;
+        
+        map.put("seed", "0x1337C0DE");
+        map.put("days", "30");
+        map.put("deletetemp", "false");
+        map.put("format", "csv");
+        
+        settings = new Settings(map);
+        
+        assertEquals(0x1337C0DEL, settings.get("seed", 0L));
+        assertEquals(0x1337C0DE, settings.get("seed", 0));
+        assertEquals(30, settings.get("days", 365));
+        assertEquals(365, settings.get("missing", 365));
+        assertFalse(settings.get("deletetemp", true));
+        assertEquals("csv", settings.get("format"));
+        assertThrows(NumberFormatException.class, () -> settings.get("format", 0));
+        
+        // Settings are immutable
+        assertEquals("json", settings.with("format", "json").get("format"));
+        assertEquals("csv", settings.get("format"));
+        
+        map.put("format", "bson");
+        
+        assertEquals("csv", settings.get("format"));
+    }
+    
+    @Test
+    public void testWorkerThreads() throws Exception
+    {
+        AtomicReference<Iterable<JSONObject>> table = new AtomicReference<>();
+        AtomicReference<String> setting = new AtomicReference<>();
+        JSONArray<JSONObject> skus = new JSONArray<>();
+        Thread thread;
+        
+        Context.register("skus", skus);
+        Context.setSetting("format", "json");
+        
+        thread = new Thread(() -> {
+            table.set(Context.get("skus"));
+            setting.set(Context.getSetting("format"));
+        });
+        
+        thread.start();
+        thread.join();
+        
+        assertSame(skus, table.get());
+        assertEquals("json", setting.get());
+        
+        Context.reset();
+        
+        assertNull(Context.get("skus"));
+        assertEquals("json", Context.getSetting("format"));
+        
+        Context.setCurrent(new Context());
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.modules;
+
+import com.invirgance.convirgance.ConvirganceException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author jbanes
+ */
+public class RetailGeneratorTest
+{
+    private File write(File directory, String name, String text) throws IOException
+    {
+        File file = new File(directory, name);
+        
+        Files.writeString(file.toPath(), text);
+        file.deleteOnExit();
+        
+        return file;
+    }
+    
+    @Test
+    public void testPromote() throws IOException
+    {
+        File directory = Files.createTempDirectory("promote").toFile();
+        File temp = write(directory, "table.tmp", "temp");
+        File file = write(directory, "table.json", "an older and longer file");
+        
+        directory.deleteOnExit();
+        
+        // Kept temp files are copied over the output
+        RetailGenerator.promote(temp, file, true);
+        
+        assertEquals("temp", Files.readString(file.toPath()));
+        assertEquals("temp", Files.readString(temp.toPath()));
+        
+        // Otherwise they are moved
+        Files.writeString(temp.toPath(), "moved");
+        RetailGenerator.promote(temp, file, false);
+        
+        assertEquals("moved", Files.readString(file.toPath()));
+        assertFalse(temp.exists());
+    }
+    
+    @Test
+    public void testPromoteFallback() throws IOException
+    {
+        File directory = Files.createTempDirectory("promote").toFile();
+        File other = new File("/dev/shm");
+        File temp = write(directory, "table.tmp", "temp");
+        File file = write(directory, "table.json", "an older and longer file");
+        
+        directory.deleteOnExit();
+        
+        // The copy used when a temp file cannot be moved
+        RetailGenerator.copy(temp, file);
+        
+        assertEquals("temp", Files.readString(file.toPath()));
+        assertTrue(temp.exists());
+        
+        // Files cannot be moved atomically to another file system
+        if(!other.isDirectory() || Files.getFileStore(other.toPath()).equals(Files.getFileStore(directory.toPath()))) return;
+        
+        file = File.createTempFile("promote", ".json", other);
+        file.deleteOnExit();
+        
+        assertFalse(RetailGenerator.move(temp, file));
+        assertTrue(temp.exists());
+        
+        RetailGenerator.promote(temp, file, false);
+        
+        assertEquals("temp", Files.readString(file.toPath()));
+        assertFalse(temp.exists());
+    }
+    
+    @Test
+    public void testShardFormats() throws IOException
+    {
+        RetailGenerator generator = new RetailGenerator(Files.createTempDirectory("shard").toFile());
+        
+        Context.setCurrent(new Context());
+        Context.setSetting("shard", "1/4");
+        Context.setSetting("startdate", "2024-01-01");
+        
+        // Shard files of these formats cannot simply be concatenated
+        for(String format : new String[]{ "json", "json.gz", "bson", "parquet", "arrow", "pgcopy" })
+        {
+            Context.setSetting("format", format);
+            
+            assertThrows(ConvirganceException.class, () -> generator.generate(), format);
+        }
+        
+        Context.setCurrent(new Context());
+    }
+}
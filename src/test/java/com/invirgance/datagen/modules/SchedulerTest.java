@@ -0,0 +1,104 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.modules;
+
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author jbanes
+ */
+public class SchedulerTest
+{
+    @Test
+    public void testOrder()
+    {
+        Scheduler scheduler = new Scheduler();
+        
+        scheduler.add("sales", new String[]{ "stores", "skus" }, () -> {});
+        scheduler.add("skus", new String[]{ "products" }, () -> {});
+        scheduler.add("stores", null, () -> {});
+        scheduler.add("products", null, () -> {});
+        
+        assertArrayEquals(new String[]{ "stores", "products", "skus", "sales" }, scheduler.getOrder());
+    }
+    
+    @Test
+    public void testInvalid()
+    {
+        Scheduler circular = new Scheduler();
+        Scheduler missing = new Scheduler();
+        
+        circular.add("a", new String[]{ "b" }, () -> {});
+        circular.add("b", new String[]{ "a" }, () -> {});
+        missing.add("a", new String[]{ "c" }, () -> {});
+        
+        assertThrows(IllegalArgumentException.class, () -> circular.getOrder());
+        assertThrows(IllegalArgumentException.class, () -> missing.run(2));
+        assertThrows(IllegalArgumentException.class, () -> missing.add("a", null, () -> {}));
+    }
+    
+    @Test
+    public void testRun()
+    {
+        Scheduler scheduler = new Scheduler();
+        Vector<String> completed = new Vector<>();
+        ConcurrentHashMap<String,Boolean> started = new ConcurrentHashMap<>();
+        
+        for(int i=0; i<16; i++)
+        {
+            String name = "dimension" + i;
+            
+            scheduler.add(name, null, () -> completed.add(name));
+        }
+        
+        scheduler.add("fact", new String[]{ "dimension3", "dimension9" }, () -> {
+            assertTrue(completed.contains("dimension3"));
+            assertTrue(completed.contains("dimension9"));
+            
+            started.put("fact", true);
+            completed.add("fact");
+        });
+        
+        scheduler.run(4);
+        
+        assertEquals(17, completed.size());
+        assertTrue(started.containsKey("fact"));
+        
+    }
+    
+    @Test
+    public void testFailure()
+    {
+        Scheduler scheduler = new Scheduler();
+        Vector<String> completed = new Vector<>();
+        
+        scheduler.add("failure", null, () -> { throw new IllegalStateException("Expected"); });
+        scheduler.add("dependent", new String[]{ "failure" }, () -> completed.add("dependent"));
+        
+        assertThrows(IllegalStateException.class, () -> scheduler.run(2));
+        assertTrue(completed.isEmpty());
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.modules;
+
+import com.invirgance.convirgance.ConvirganceException;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author jbanes
+ */
+public class ShardTest
+{
+    @Test
+    public void testParse()
+    {
+        Shard shard = Shard.parse("2/8");
+        
+        assertEquals(2, shard.getIndex());
+        assertEquals(8, shard.getCount());
+        assertFalse(shard.isPrimary());
+        assertTrue(Shard.parse("0/1").isPrimary());
+        assertEquals("-00002-of-00008", shard.getSuffix());
+        
+        assertThrows(ConvirganceException.class, () -> Shard.parse("8/8"));
+        assertThrows(ConvirganceException.class, () -> Shard.parse("-1/8"));
+        assertThrows(ConvirganceException.class, () -> Shard.parse("0/0"));
+        assertThrows(ConvirganceException.class, () -> Shard.parse("1"));
+        assertThrows(ConvirganceException.class, () -> Shard.parse("a/b"));
+    }
+    
+    @Test
+    public void testSplit()
+    {
+        Shard shard;
+        long next;
+        
+        // Shards cover every item exactly once, in order
+        for(long total : new long[]{ 0, 1, 7, 100, 1001 })
+        {
+            for(int count=1; count<=12; count++)
+            {
+                next = 0;
+                
+                for(int i=0; i<count; i++)
+                {
+                    shard = new Shard(i, count);
+                    
+                    assertEquals(next, shard.getStart(total));
+                    assertTrue(shard.getEnd(total) >= shard.getStart(total));
+                    assertTrue(shard.getEnd(total) - shard.getStart(total) <= total / count + 1);
+                    
+                    next = shard.getEnd(total);
+                }
+                
+                assertEquals(total, next);
+            }
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import com.invirgance.convirgance.json.JSONObject;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author jbanes
+ */
+public class ArrowOutputTest
+{
+    // Finds a field of the table at the position, as the FlatBuffers spec 
+    // describes it. Returns -1 if the field is not present.
+    private int getField(ByteBuffer buffer, int table, int field)
+    {
+        int vtable = table - buffer.getInt(table);
+        
+        if(4 + field * 2 >= buffer.getShort(vtable)) return -1;
+        if(buffer.getShort(vtable + 4 + field * 2) == 0) return -1;
+        
+        return table + buffer.getShort(vtable + 4 + field * 2);
+    }
+    
+    private int getReference(ByteBuffer buffer, int position)
+    {
+        return position + buffer.getInt(position);
+    }
+    
+    private String getString(ByteBuffer buffer, int position)
+    {
+        return new String(buffer.array(), position + 4, buffer.getInt(position), StandardCharsets.UTF_8);
+    }
+    
+    @Test
+    public void testFlatBuffer()
+    {
+        FlatBufferBuilder builder = new FlatBufferBuilder(8);
+        ByteBuffer buffer;
+        int name = builder.createString("Grün");
+        int names = builder.createVector(name, builder.createString("b"));
+        int root;
+        int vector;
+        
+        builder.startTable(4);
+        builder.addOffset(1, names);
+        builder.addLong(3, -2);
+        builder.addShort(0, 5);
+        
+        buffer = ByteBuffer.wrap(builder.finish(builder.endTable())).order(ByteOrder.LITTLE_ENDIAN);
+        root = getReference(buffer, 0);
+        vector = getReference(buffer, getField(buffer, root, 1));
+        
+        assertEquals(5, buffer.getShort(getField(buffer, root, 0)));
+        assertEquals(-1, getField(buffer, root, 2));
+        assertEquals(0, getField(buffer, root, 3) % 8);
+        assertEquals(-2L, buffer.getLong(getField(buffer, root, 3)));
+        
+        assertEquals(2, buffer.getInt(vector));
+        assertEquals("Grün", getString(buffer, getReference(buffer, vector + 4)));
+        assertEquals("b", getString(buffer, getReference(buffer, vector + 8)));
+    }
+    
+    @Test
+    public void testFile() throws IOException
+    {
+        Schema schema = new Schema().add("id", Schema.LONG).add("Price", Schema.DOUBLE).add("Color", Schema.STRING);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ArrowOutput.Cursor cursor = new ArrowOutput(schema, 4, false).write(() -> out);
+        RowWriter writer = cursor.getWriter();
+        JSONObject record = new JSONObject();
+        ByteBuffer buffer;
+        ByteBuffer metadata;
+        int length;
+        int batch;
+        int buffers;
+        long body;
+        
+        for(int i=0; i<3; i++)
+        {
+            writer.writeLong(i);
+            writer.writeDouble(i * 0.5);
+            
+            if(i == 1) writer.writeNull();
+            else writer.writeString("C" + i);
+            
+            writer.endRow();
+        }
+        
+        record.put("id", 3L);
+        record.put("Color", "Red");
+        cursor.write(record);
+        cursor.close();
+        
+        buffer = ByteBuffer.wrap(out.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+        
+        assertEquals("ARROW1", new String(out.toByteArray(), 0, 6, StandardCharsets.US_ASCII));
+        assertEquals("ARROW1", new String(out.toByteArray(), buffer.limit() - 6, 6, StandardCharsets.US_ASCII));
+        
+        // Skip the schema message to the record batch
+        length = buffer.getInt(12);
+        
+        assertEquals(-1, buffer.getInt(8));
+        assertEquals(0, length % 8);
+        assertEquals(-1, buffer.getInt(16 + length));
+        
+        metadata = ByteBuffer.wrap(out.toByteArray(), 24 + length, buffer.getInt(20 + length)).slice().order(ByteOrder.LITTLE_ENDIAN);
+        body = 24 + length + buffer.getInt(20 + length);
+        
+        assertEquals(3, metadata.get(getField(metadata, getReference(metadata, 0), 1)));
+        
+        batch = getReference(metadata, getField(metadata, getReference(metadata, 0), 2));
+        buffers = getReference(metadata, getField(metadata, batch, 2));
+        
+        assertEquals(4, metadata.getLong(getField(metadata, batch, 0)));
+        
+        // Validity and values of id, of Price, then validity, offsets and
+        // values of Color. Only the columns with nulls have validity bits.
+        assertEquals(7, metadata.getInt(buffers));
+        assertEquals(0, metadata.getLong(buffers + 4 + 8));
+        assertEquals(3L, buffer.getLong((int)(body + metadata.getLong(buffers + 4 + 16) + 24)));
+        assertEquals(0b0111, buffer.get((int)(body + metadata.getLong(buffers + 4 + 32))));
+        assertEquals(1.0, buffer.getDouble((int)(body + metadata.getLong(buffers + 4 + 48) + 16)));
+        assertEquals(0b1101, buffer.get((int)(body + metadata.getLong(buffers + 4 + 64))));
+        assertEquals(4, buffer.getInt((int)(body + metadata.getLong(buffers + 4 + 80) + 12)));
+        assertEquals("C0C2Red", new String(out.toByteArray(), (int)(body + metadata.getLong(buffers + 4 + 96)), 7, StandardCharsets.UTF_8));
+    }
+    
+    @Test
+    public void testGrowth() throws IOException
+    {
+        Schema schema = new Schema().add("id", Schema.LONG).add("Color", Schema.STRING);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ArrowOutput.Cursor cursor = new ArrowOutput(schema, 5000, true).write(() -> out);
+        RowWriter writer = cursor.getWriter();
+        StringBuilder colors = new StringBuilder();
+        ByteBuffer buffer;
+        ByteBuffer metadata;
+        int length;
+        int batch;
+        int buffers;
+        long body;
+        
+        // Well past the starting size of the buffers, ending in nulls
+        for(int i=0; i<2100; i++)
+        {
+            writer.writeLong(i);
+            
+            if(i >= 2048) writer.writeNull();
+            else writer.writeString("Color" + i);
+            
+            if(i < 2048) colors.append("Color").append(i);
+            
+            writer.endRow();
+        }
+        
+        cursor.close();
+        
+        buffer = ByteBuffer.wrap(out.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+        length = buffer.getInt(4);
+        metadata = ByteBuffer.wrap(out.toByteArray(), 16 + length, buffer.getInt(12 + length)).slice().order(ByteOrder.LITTLE_ENDIAN);
+        body = 16 + length + buffer.getInt(12 + length);
+        
+        batch = getReference(metadata, getField(metadata, getReference(metadata, 0), 2));
+        buffers = getReference(metadata, getField(metadata, batch, 2));
+        
+        assertEquals(2100, metadata.getLong(getField(metadata, batch, 0)));
+        assertEquals(5, metadata.getInt(buffers));
+        
+        // Values of id, then validity, offsets and values of Color
+        assertEquals(2100 * 8, metadata.getLong(buffers + 4 + 24));
+        assertEquals(2099L, buffer.getLong((int)(body + metadata.getLong(buffers + 4 + 16) + 2099 * 8)));
+        assertEquals((2100 + 7) / 8, metadata.getLong(buffers + 4 + 40));
+        assertEquals((byte)0xFF, buffer.get((int)(body + metadata.getLong(buffers + 4 + 32) + 255)));
+        assertEquals(0, buffer.get((int)(body + metadata.getLong(buffers + 4 + 32) + 262)));
+        assertEquals(2101 * 4, metadata.getLong(buffers + 4 + 56));
+        assertEquals(colors.length(), buffer.getInt((int)(body + metadata.getLong(buffers + 4 + 48) + 2100 * 4)));
+        assertEquals(colors.toString(), new String(out.toByteArray(), (int)(body + metadata.getLong(buffers + 4 + 64)), colors.length(), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import com.invirgance.convirgance.json.JSONObject;
+import com.invirgance.convirgance.output.OutputCursor;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author jbanes
+ */
+public class CSVRowWriterTest
+{
+    private String writeDouble(double value) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CSVRowWriter writer = new CSVRowWriter(out, ',');
+        
+        writer.writeDouble(value);
+        writer.flush();
+        
+        return out.toString(StandardCharsets.UTF_8);
+    }
+    
+    @Test
+    public void testNumbers() throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CSVRowWriter writer = new CSVRowWriter(out, ',');
+        Random random = new Random(1337);
+        double value;
+        
+        writer.writeInt(0);
+        writer.writeInt(-42);
+        writer.writeInt(Integer.MAX_VALUE);
+        writer.writeLong(Long.MIN_VALUE);
+        writer.writeNull();
+        writer.writeLong(12345678901L);
+        writer.endRow();
+        writer.close();
+        
+        assertEquals("0,-42,2147483647,-9223372036854775808,,12345678901\n", out.toString(StandardCharsets.UTF_8));
+        
+        for(double test : new double[]{ 0.0, -0.0, 1.0, 12.5, 12.05, 0.001, 0.1, 9999999.99, 1e7, 1e-4, 123.456789, Math.PI, -2.75, Double.NaN, Double.MAX_VALUE })
+        {
+            assertEquals(Double.toString(test), writeDouble(test), "Formatting " + test);
+        }
+        
+        // Prices and totals, which are the common case
+        for(int i=0; i<100000; i++)
+        {
+            value = random.nextInt(100000000) / 100.0;
+            
+            assertEquals(Double.toString(value), writeDouble(value));
+            assertEquals(Double.toString(value * 3), writeDouble(value * 3));
+        }
+    }
+    
+    @Test
+    public void testStrings() throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CSVRowWriter writer = new CSVRowWriter(out, ',');
+        
+        writer.writeString("plain");
+        writer.writeString("a,b");
+        writer.writeString("say \"hi\"");
+        writer.writeString("two\nlines");
+        writer.writeString("Zoë 日本 😀");
+        writer.writeString(null);
+        writer.endRow();
+        writer.close();
+        
+        assertEquals("plain,\"a,b\",\"say \"\"hi\"\"\",\"two\nlines\",Zoë 日本 😀,\n", out.toString(StandardCharsets.UTF_8));
+    }
+    
+    @Test
+    public void testOutput()
+    {
+        Schema schema = new Schema().add("id", Schema.LONG).add("Name", Schema.STRING).add("Price", Schema.DOUBLE);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OutputCursor cursor = new CSVRowOutput(schema).write(() -> out);
+        JSONObject record = new JSONObject();
+        
+        record.put("Price", 4.5);
+        record.put("id", 7);
+        record.put("Name", "Widget");
+        record.put("Extra", true);
+        
+        cursor.write(record);
+        
+        record.remove("Name");
+        cursor.write(record);
+        cursor.close();
+        
+        assertEquals("id,Name,Price\n7,Widget,4.5\n7,,4.5\n", out.toString(StandardCharsets.UTF_8));
+        
+        assertEquals(1, schema.without("Name").indexOf("Price"));
+        assertThrows(IllegalArgumentException.class, () -> new Schema().add("id", Schema.INT).add("id", Schema.LONG));
+    }
+}
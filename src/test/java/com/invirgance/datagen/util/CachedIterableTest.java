@@ -23,6 +23,7 @@ package com.invirgance.datagen.util;
 
 import com.invirgance.convirgance.json.JSONArray;
 import com.invirgance.convirgance.json.JSONObject;
+import com.invirgance.convirgance.transform.filter.EqualsFilter;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -74,4 +75,109 @@ public class CachedIterableTest
         }
     }
     
+    @Test
+    public void testGroup()
+    {
+        JSONArray<JSONObject> source = new JSONArray<>();
+        JSONObject record;
+        
+        CachedIterable cache;
+        CachedIterable group;
+        CachedIterable nested;
+        int count;
+        
+        // Unsorted and sparse store ids, with a second key to group on
+        for(int i=0; i<1000; i++)
+        {
+            record = new JSONObject();
+            
+            record.put("id", i+1);
+            record.put("StoreId", ((i * 37) % 50) * 1000 - 5000);
+            record.put("Shift", i % 3);
+            source.add(record);
+        }
+        
+        cache = new CachedIterable(source);
+        
+        for(int store=-5; store<45; store++)
+        {
+            group = cache.getGroup("StoreId", store * 1000);
+            count = 0;
+            
+            assertEquals(20, group.size());
+            
+            for(JSONObject employee : group)
+            {
+                assertEquals(store * 1000, employee.getInt("StoreId"));
+                assertTrue(count == 0 || group.get(count-1).getInt("id") < employee.getInt("id"));
+                assertSame(employee, group.find(employee.getInt("id")));
+                
+                count++;
+            }
+            
+            assertEquals(20, count);
+            
+            nested = group.getGroup("Shift", 1);
+            
+            for(JSONObject employee : nested)
+            {
+                assertEquals(1, employee.getInt("Shift"));
+                assertEquals(store * 1000, employee.getInt("StoreId"));
+            }
+        }
+        
+        assertEquals(334, cache.getGroup("Shift", 0).size());
+        assertEquals(333, cache.getGroup("Shift", 2).size());
+        assertEquals(0, cache.getGroup("StoreId", 1).size());
+        assertNull(cache.getGroup("StoreId", 1).first());
+        assertFalse(cache.getGroup("StoreId", 1).iterator().hasNext());
+    }
+    
+    @Test
+    public void testFiltered()
+    {
+        JSONArray<JSONObject> source = new JSONArray<>();
+        JSONObject record;
+        
+        CachedIterable cache;
+        CachedIterable even;
+        CachedIterable checkout;
+        CachedIterable both;
+        CachedIterable either;
+        
+        for(int i=0; i<100; i++)
+        {
+            record = new JSONObject();
+            
+            record.put("id", i+1);
+            record.put("Even", i % 2 == 0);
+            record.put("Checkout", i % 5 == 0);
+            source.add(record);
+        }
+        
+        cache = new CachedIterable(source);
+        even = cache.getFiltered(new EqualsFilter("Even", true));
+        checkout = cache.getFiltered(new EqualsFilter("Checkout", true));
+        
+        assertEquals(50, even.size());
+        assertEquals(20, checkout.size());
+        assertSame(source.get(10), even.get(5));
+        assertSame(source.get(10), even.find(11));
+        assertNull(even.find(12));
+        
+        both = even.and(checkout);
+        either = even.or(checkout);
+        
+        assertEquals(10, both.size());
+        assertEquals(60, either.size());
+        assertEquals(10, even.getFiltered(new EqualsFilter("Checkout", true)).size());
+        
+        for(JSONObject item : both) assertEquals(0, (item.getInt("id") - 1) % 10);
+        for(int i=1; i<either.size(); i++) assertTrue(either.get(i-1).getInt("id") < either.get(i).getInt("id"));
+        
+        assertEquals(50, cache.and(even).size());
+        assertEquals(100, cache.or(checkout).size());
+        assertThrows(IllegalArgumentException.class, () -> even.and(new CachedIterable(even)));
+    }
+    
 }
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import com.invirgance.convirgance.json.JSONArray;
+import com.invirgance.convirgance.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author jbanes
+ */
+public class ColumnCacheTest
+{
+    private JSONArray<JSONObject> getProducts()
+    {
+        JSONArray<JSONObject> source = new JSONArray<>();
+        JSONObject record = new JSONObject();
+        
+        record.put("id", -1);
+        record.put("Name", "Unknown");
+        record.put("Price", null);
+        record.put("BrandId", -1);
+        source.add(record);
+        
+        for(int i=0; i<1000; i++)
+        {
+            record = new JSONObject();
+            
+            record.put("id", i+1);
+            record.put("Name", "Product " + (i % 10));
+            record.put("Price", (i + 100) / 100.0);
+            record.put("BrandId", i / 10);
+            source.add(record);
+        }
+        
+        return source;
+    }
+    
+    @Test
+    public void testColumns()
+    {
+        ColumnCache cache = new ColumnCache(getProducts(), "id", "Name", "Price", "BrandId", "Missing");
+        int id = cache.getColumn("id");
+        int name = cache.getColumn("Name");
+        int price = cache.getColumn("Price");
+        int brand = cache.getColumn("BrandId");
+        int missing = cache.getColumn("Missing");
+        
+        assertEquals(1001, cache.size());
+        assertEquals(ColumnCache.INT, cache.getType(id));
+        assertEquals(ColumnCache.STRING, cache.getType(name));
+        assertEquals(ColumnCache.DOUBLE, cache.getType(price));
+        
+        assertTrue(cache.isNull(price, 0));
+        assertNull(cache.get(price, 0));
+        assertEquals("Unknown", cache.getString(name, 0));
+        assertTrue(cache.isNull(missing, 500));
+        
+        for(int i=0; i<1000; i++)
+        {
+            assertEquals(i+1, cache.getInt(id, i+1));
+            assertEquals("Product " + (i % 10), cache.getString(name, i+1));
+            assertEquals((i + 100) / 100.0, cache.getDouble(price, i+1));
+            assertEquals(i / 10, cache.get(brand, i+1));
+            assertEquals(i+1, cache.find(i+1));
+        }
+        
+        assertEquals(0, cache.find(-1));
+        assertEquals(-1, cache.find(5000));
+        assertEquals(100, cache.select(name, "Product 3").length);
+        assertEquals(4, cache.select(name, "Product 3")[0]);
+        assertEquals(10, cache.select(brand, 7).length);
+        assertThrows(IllegalArgumentException.class, () -> cache.getColumn("Size"));
+    }
+    
+    @Test
+    public void testWidening()
+    {
+        JSONArray<JSONObject> source = new JSONArray<>();
+        ColumnCache cache;
+        JSONObject record;
+        
+        for(int i=0; i<100; i++)
+        {
+            record = new JSONObject();
+            
+            record.put("id", i * 100000);
+            record.put("Value", (i < 50) ? (Object)i : (Object)(i + 0.5));
+            record.put("Mixed", (i < 10) ? (Object)i : (Object)("Text" + i));
+            source.add(record);
+        }
+        
+        cache = new ColumnCache(source, "id", "Value", "Mixed");
+        
+        assertEquals(ColumnCache.DOUBLE, cache.getType(1));
+        assertEquals(ColumnCache.STRING, cache.getType(2));
+        assertEquals(3.0, cache.getDouble(1, 3));
+        assertEquals(75.5, cache.getDouble(1, 75));
+        assertEquals("3", cache.getString(2, 3));
+        assertEquals("Text42", cache.getString(2, 42));
+        
+        // Sparse ids fall back to a search
+        for(int i=0; i<100; i++) assertEquals(i, cache.find(i * 100000));
+        
+        assertEquals(-1, cache.find(7));
+    }
+}
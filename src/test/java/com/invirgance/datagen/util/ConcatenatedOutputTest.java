@@ -0,0 +1,229 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import com.invirgance.convirgance.json.JSONObject;
+import com.invirgance.convirgance.output.DelimitedOutput;
+import com.invirgance.convirgance.output.JSONOutput;
+import com.invirgance.convirgance.output.Output;
+import com.invirgance.convirgance.output.OutputCursor;
+import com.invirgance.convirgance.target.FileTarget;
+import com.invirgance.convirgance.target.Target;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author jbanes
+ */
+public class ConcatenatedOutputTest
+{
+    // Writes the ids of the records with the given framing. The header is
+    // only written if there are records, as with CSV.
+    private static class TextOutput implements Output
+    {
+        private String header;
+        private String prefix;
+        private String separator;
+        private String suffix;
+        private String empty;
+
+        public TextOutput(String header, String prefix, String separator, String suffix, String empty)
+        {
+            this.header = header;
+            this.prefix = prefix;
+            this.separator = separator;
+            this.suffix = suffix;
+            this.empty = empty;
+        }
+        
+        @Override
+        public OutputCursor write(Target target)
+        {
+            OutputStream out = target.getOutputStream();
+            
+            return new OutputCursor() {
+                
+                private int count;
+                
+                private void print(String text)
+                {
+                    try
+                    {
+                        out.write(text.getBytes(StandardCharsets.UTF_8));
+                    }
+                    catch(IOException e)
+                    {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                
+                @Override
+                public void write(JSONObject record)
+                {
+                    if(count == 0) print(header + prefix);
+                    else print(separator);
+                    
+                    print(record.get("id").toString());
+                    count++;
+                }
+
+                @Override
+                public void close()
+                {
+                    try
+                    {
+                        print((count == 0) ? empty : suffix);
+                        out.close();
+                    }
+                    catch(IOException e)
+                    {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            };
+        }
+    }
+    
+    private File part(Output output, int... ids) throws IOException
+    {
+        File file = File.createTempFile("part", ".tmp");
+        OutputCursor cursor = output.write(new FileTarget(file));
+        JSONObject record;
+        
+        for(int id : ids)
+        {
+            record = new JSONObject();
+            
+            record.put("id", id);
+            cursor.write(record);
+        }
+        
+        cursor.close();
+        file.deleteOnExit();
+        
+        return file;
+    }
+    
+    private String read(File file) throws IOException
+    {
+        try
+        {
+            return Files.readString(file.toPath());
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+    
+    private String join(Output output, String format, boolean header, int[]... parts) throws IOException
+    {
+        File file = File.createTempFile("joined", "." + format);
+        ConcatenatedOutput.Cursor cursor = new ConcatenatedOutput(output, format, file, header).write(null);
+        
+        try
+        {
+            for(int[] ids : parts) cursor.append(part(cursor.getOutput(), ids));
+
+            cursor.close();
+            
+            return Files.readString(file.toPath());
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+    
+    @Test
+    public void testCSV() throws IOException
+    {
+        Output csv = new TextOutput("id\n", "", "\n", "\n", "");
+        
+        assertEquals("id\n1\n2\n3\n4\n", join(csv, "csv", true, new int[]{ 1, 2 }, new int[0], new int[]{ 3 }, new int[]{ 4 }));
+        assertEquals("id\n3\n", join(csv, "csv", true, new int[0], new int[]{ 3 }));
+        assertEquals("1\n2\n3\n", join(csv, "csv", false, new int[]{ 1 }, new int[]{ 2, 3 }));
+        assertEquals("", join(csv, "csv", true));
+    }
+    
+    @Test
+    public void testJSON() throws IOException
+    {
+        Output array = new TextOutput("", "[\n", ",\n", "\n]\n", "[]\n");
+        Output lines = new TextOutput("", "", "\n", "\n", "");
+        
+        // Only whitespace differs from a single array
+        assertEquals("[\n1,\n2\n,\n3\n]", join(array, "json", true, new int[]{ 1, 2 }, new int[0], new int[]{ 3 }));
+        assertEquals("[]\n", join(array, "json", true, new int[0], new int[0]));
+        assertEquals("1\n2\n3\n", join(lines, "json", true, new int[]{ 1, 2 }, new int[0], new int[]{ 3 }));
+    }
+    
+    // The joined file must match a single file written by the real outputs
+    @Test
+    public void testOutputs() throws IOException
+    {
+        Output csv = new DelimitedOutput(',');
+        Output json = new JSONOutput();
+        String single;
+        
+        single = read(part(csv, 1, 2, 3, 4));
+        
+        assertEquals(single, join(csv, "csv", true, new int[]{ 1, 2 }, new int[0], new int[]{ 3 }, new int[]{ 4 }));
+        assertEquals(single.substring(single.indexOf('\n') + 1), join(csv, "csv", false, new int[]{ 1 }, new int[]{ 2, 3, 4 }));
+        assertEquals(read(part(csv)), join(csv, "csv", true, new int[0], new int[0]));
+        
+        // Whitespace between the records may differ from a single array
+        single = read(part(json, 1, 2, 3, 4));
+        
+        assertEquals(single.replaceAll("\\s", ""), join(json, "json", true, new int[]{ 1, 2 }, new int[0], new int[]{ 3 }, new int[]{ 4 }).replaceAll("\\s", ""));
+        assertEquals(read(part(json)).replaceAll("\\s", ""), join(json, "json", true, new int[0], new int[0]).replaceAll("\\s", ""));
+    }
+    
+    @Test
+    public void testMixed() throws IOException
+    {
+        File file = File.createTempFile("joined", ".csv");
+        ConcatenatedOutput.Cursor cursor = new ConcatenatedOutput(new TextOutput("id\n", "", "\n", "\n", ""), "csv", file).write(null);
+        
+        try
+        {
+            cursor.append(part(cursor.getOutput(), 1));
+            
+            assertThrows(IllegalStateException.class, () -> cursor.write(new JSONObject()));
+            
+            cursor.close();
+        }
+        finally
+        {
+            file.delete();
+        }
+        
+        assertThrows(IllegalArgumentException.class, () -> new ConcatenatedOutput(new TextOutput("", "", "", "", ""), "bson", file));
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author jbanes
+ */
+public class CounterRandomTest
+{
+    @Test
+    public void testRandomAccess()
+    {
+        CounterRandom random = new CounterRandom(Seeds.derive(1337, 12, 4711, 59));
+        long[] values = new long[100];
+        
+        for(int i=0; i<values.length; i++) values[i] = random.nextLong();
+        
+        for(int i=values.length-1; i>=0; i--)
+        {
+            assertEquals(values[i], CounterRandom.get(Seeds.derive(1337, 12, 4711, 59), i));
+        }
+        
+        assertNotEquals(values[0], new CounterRandom(Seeds.derive(1337, 12, 4711, 60)).nextLong());
+    }
+    
+    @Test
+    public void testBounds()
+    {
+        CounterRandom random = new CounterRandom(42);
+        int[] counts = new int[10];
+        double value;
+        
+        for(int i=0; i<100000; i++)
+        {
+            value = random.nextDouble(12.0, 500.0);
+            
+            assertTrue(value >= 12.0 && value < 500.0);
+            
+            counts[random.nextInt(10)]++;
+        }
+        
+        for(int count : counts) assertEquals(10000, count, 500);
+    }
+}
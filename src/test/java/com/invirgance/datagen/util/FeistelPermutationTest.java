@@ -0,0 +1,97 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import java.util.BitSet;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author jbanes
+ */
+public class FeistelPermutationTest
+{
+    @Test
+    public void testBijection()
+    {
+        for(long size : new long[]{ 1, 2, 3, 4, 5, 17, 1000, 4097, 65536 })
+        {
+            FeistelPermutation permutation = new FeistelPermutation(size, 1337);
+            BitSet seen = new BitSet((int)size);
+            long value;
+            
+            for(long i=0; i<size; i++)
+            {
+                value = permutation.get(i);
+                
+                assertTrue(value >= 0 && value < size);
+                assertFalse(seen.get((int)value), "Duplicate " + value + " in " + size);
+                
+                seen.set((int)value);
+            }
+            
+            assertEquals(size, seen.cardinality());
+        }
+    }
+    
+    @Test
+    public void testKeyed()
+    {
+        FeistelPermutation first = new FeistelPermutation(1000000, 1);
+        FeistelPermutation second = new FeistelPermutation(1000000, 2);
+        int same = 0;
+        
+        for(int i=0; i<1000; i++)
+        {
+            assertEquals(first.get(i), new FeistelPermutation(1000000, 1).get(i));
+            
+            if(first.get(i) == second.get(i)) same++;
+        }
+        
+        assertTrue(same < 10);
+        assertThrows(IndexOutOfBoundsException.class, () -> first.get(1000000));
+        assertThrows(IllegalArgumentException.class, () -> new FeistelPermutation(0, 1));
+    }
+    
+    @Test
+    public void testCombinations()
+    {
+        UniqueCombinations combinations = new UniqueCombinations(7, 11, 42);
+        boolean[][] seen = new boolean[7][11];
+        long combination;
+        
+        assertEquals(77, combinations.getCapacity());
+        
+        while(combinations.hasNext())
+        {
+            combination = combinations.next();
+            
+            assertFalse(seen[combinations.getLeft(combination)][combinations.getRight(combination)]);
+            
+            seen[combinations.getLeft(combination)][combinations.getRight(combination)] = true;
+        }
+        
+        assertEquals(0, combinations.getRemaining());
+        assertThrows(IllegalStateException.class, () -> combinations.next());
+    }
+}
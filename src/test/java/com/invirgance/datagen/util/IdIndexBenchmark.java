@@ -0,0 +1,151 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the id index implementations against a boxed HashMap for the 
+ * id shapes found in the source data. Not run as part of the test suite; 
+ * launch with {@code main} from the test classpath.
+ * 
+ * @author jbanes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdIndexBenchmark
+{
+    private static final int LOOKUPS = 1024;
+    
+    @Param({"sequential", "zipcodes", "sparse"})
+    public String shape;
+    
+    @Param({"1000", "100000"})
+    public int size;
+    
+    private int[] ids;
+    private int[] lookups;
+    
+    private DenseIdIndex dense;
+    private HashIdIndex hash;
+    private SortedIdIndex sorted;
+    private HashMap<Integer,Integer> map;
+    
+    @Setup
+    public void setup()
+    {
+        Random random = new Random(1337);
+        
+        ids = new int[size];
+        lookups = new int[LOOKUPS];
+        map = new HashMap<>();
+        
+        for(int i=0; i<size; i++)
+        {
+            switch(shape)
+            {
+                case "sequential":
+                    ids[i] = i + 1;
+                    break;
+                    
+                case "zipcodes":
+                    ids[i] = (i * 3 + 501) * 100 + (i & 1);
+                    break;
+                    
+                default:
+                    ids[i] = random.nextInt(Integer.MAX_VALUE);
+            }
+            
+            map.put(ids[i], i);
+        }
+        
+        for(int i=0; i<LOOKUPS; i++) lookups[i] = ids[random.nextInt(size)];
+        
+        dense = (shape.equals("sparse")) ? null : new DenseIdIndex(ids, size);
+        hash = new HashIdIndex(ids, size);
+        sorted = new SortedIdIndex(ids, size);
+    }
+    
+    @Benchmark
+    public int dense()
+    {
+        int total = 0;
+        
+        if(dense == null) return 0;
+        
+        for(int id : lookups) total += dense.find(id);
+        
+        return total;
+    }
+    
+    @Benchmark
+    public int hash()
+    {
+        int total = 0;
+        
+        for(int id : lookups) total += hash.find(id);
+        
+        return total;
+    }
+    
+    @Benchmark
+    public int sorted()
+    {
+        int total = 0;
+        
+        for(int id : lookups) total += sorted.find(id);
+        
+        return total;
+    }
+    
+    @Benchmark
+    public int hashMap()
+    {
+        int total = 0;
+        
+        for(int id : lookups) total += map.get(id);
+        
+        return total;
+    }
+    
+    public static void main(String[] args) throws Exception
+    {
+        org.openjdk.jmh.Main.main(new String[]{ IdIndexBenchmark.class.getName() });
+    }
+}
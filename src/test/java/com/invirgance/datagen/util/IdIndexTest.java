@@ -0,0 +1,110 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author jbanes
+ */
+public class IdIndexTest
+{
+    private void verify(IdIndex index, int[] ids)
+    {
+        for(int i=0; i<ids.length; i++) assertEquals(i, index.find(ids[i]));
+    }
+    
+    @Test
+    public void testImplementations()
+    {
+        Random random = new Random(1337);
+        int[] sequential = new int[5000];
+        int[] zipcodes = new int[5000];
+        int[] shuffled = new int[5000];
+        int swap;
+        int index;
+        
+        for(int i=0; i<sequential.length; i++)
+        {
+            sequential[i] = i - 1;
+            zipcodes[i] = (i * 7 + 501) * 100 + (i % 2); // zip * 100 + country
+            shuffled[i] = i * 1000;
+        }
+        
+        for(int i=shuffled.length-1; i>0; i--)
+        {
+            index = random.nextInt(i + 1);
+            swap = shuffled[i];
+            shuffled[i] = shuffled[index];
+            shuffled[index] = swap;
+        }
+        
+        for(int[] ids : new int[][]{ sequential, zipcodes, shuffled })
+        {
+            verify(new DenseIdIndex(ids, ids.length), ids);
+            verify(new HashIdIndex(ids, ids.length), ids);
+            verify(new SortedIdIndex(ids, ids.length), ids);
+            verify(IdIndex.build(ids, ids.length), ids);
+            
+            assertEquals(-1, new HashIdIndex(ids, ids.length).find(-37));
+            assertEquals(-1, new SortedIdIndex(ids, ids.length).find(-37));
+            assertEquals(-1, new DenseIdIndex(ids, ids.length).find(Integer.MAX_VALUE));
+        }
+        
+        assertEquals(-1, new HashIdIndex(zipcodes, zipcodes.length).find(50102));
+        assertEquals(-1, new SortedIdIndex(zipcodes, zipcodes.length).find(50102));
+        assertEquals(-1, new SortedIdIndex(new int[0], 0).find(1));
+    }
+    
+    @Test
+    public void testSelection()
+    {
+        int[] dense = new int[1000];
+        int[] sparse = new int[1000];
+        int[] tiny = new int[]{ 5, 5000000, 10000000 };
+        
+        for(int i=0; i<1000; i++)
+        {
+            dense[i] = i * 3;
+            sparse[i] = i * 100;
+        }
+        
+        assertTrue(IdIndex.build(dense, dense.length) instanceof DenseIdIndex);
+        assertTrue(IdIndex.build(sparse, sparse.length) instanceof HashIdIndex);
+        assertTrue(IdIndex.build(tiny, tiny.length) instanceof SortedIdIndex);
+    }
+    
+    @Test
+    public void testDuplicates()
+    {
+        int[] ids = new int[]{ 1, 2, 2, 3, 1000000, 1000000 };
+        
+        assertEquals(2, new DenseIdIndex(ids, 4).find(2));
+        assertEquals(2, new HashIdIndex(ids, ids.length).find(2));
+        assertEquals(2, new SortedIdIndex(ids, ids.length).find(2));
+        assertEquals(5, new HashIdIndex(ids, ids.length).find(1000000));
+        assertEquals(5, new SortedIdIndex(ids, ids.length).find(1000000));
+    }
+}
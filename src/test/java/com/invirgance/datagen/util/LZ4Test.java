@@ -0,0 +1,83 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author jbanes
+ */
+public class LZ4Test
+{
+    private byte[] roundTrip(byte[] data)
+    {
+        byte[] block = new byte[LZ4.getMaxCompressedLength(data.length) + 2];
+        byte[] result = new byte[data.length];
+        int length = LZ4.compress(data, 0, data.length, block, 2);
+        
+        LZ4.decompress(block, 2, length, result);
+        
+        assertArrayEquals(data, result);
+        
+        return Arrays.copyOfRange(block, 2, 2 + length);
+    }
+    
+    @Test
+    public void testRoundTrip()
+    {
+        RandomGenerator random = Randoms.create(7);
+        StringBuilder text = new StringBuilder();
+        byte[] noise = new byte[100000];
+        byte[] zeros = new byte[70000];
+        
+        for(int i=0; i<5000; i++) text.append("{\"id\":").append(i).append(",\"Color\":\"").append((random.nextInt(3) == 0) ? "Red" : "Blue").append("\"}");
+        
+        random.nextBytes(noise);
+        
+        assertTrue(roundTrip(text.toString().getBytes(StandardCharsets.UTF_8)).length < text.length() / 3);
+        assertTrue(roundTrip(zeros).length < 400);
+        assertTrue(roundTrip(noise).length <= LZ4.getMaxCompressedLength(noise.length));
+        
+        for(int i=0; i<20; i++) roundTrip(Arrays.copyOf(text.toString().getBytes(StandardCharsets.UTF_8), i));
+        
+        // A single literal run, then an overlapping match of the run
+        assertArrayEquals(new byte[]{ 0x10, 'a' }, roundTrip(new byte[]{ 'a' }));
+        assertArrayEquals(new byte[]{ 0x1F, 'a', 1, 0, 0, 0x50, 'a', 'a', 'a', 'a', 'a' }, roundTrip("a".repeat(25).getBytes(StandardCharsets.UTF_8)));
+    }
+    
+    @Test
+    public void testCorrupt()
+    {
+        byte[] data = "abcdabcdabcdabcdabcdabcd".getBytes(StandardCharsets.UTF_8);
+        byte[] block = new byte[LZ4.getMaxCompressedLength(data.length)];
+        int length = LZ4.compress(data, 0, data.length, block, 0);
+        
+        assertThrows(IllegalArgumentException.class, () -> LZ4.decompress(block, 0, length, new byte[data.length - 1]));
+        assertThrows(IllegalArgumentException.class, () -> LZ4.decompress(block, 0, length - 1, new byte[data.length]));
+        assertThrows(IllegalArgumentException.class, () -> LZ4.decompress(new byte[]{ 0x00, 0x05, 0x00 }, 0, 3, new byte[8]));
+    }
+}
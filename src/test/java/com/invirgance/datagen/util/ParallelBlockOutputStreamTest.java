@@ -0,0 +1,210 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author jbanes
+ */
+public class ParallelBlockOutputStreamTest
+{
+    // Writes each block as its length followed by its bytes. Blocks that 
+    // start with the held byte wait for the gate to open, and those that
+    // start with the bad byte fail.
+    private static class LengthOutputStream extends ParallelBlockOutputStream
+    {
+        private AtomicInteger started = new AtomicInteger();
+        private CountDownLatch gate = new CountDownLatch(0);
+        private int held = -1;
+        private int bad = -1;
+
+        public LengthOutputStream(ByteArrayOutputStream out, ForkJoinPool pool, int blockSize, int window)
+        {
+            super(out, pool, blockSize, window);
+        }
+        
+        @Override
+        protected byte[] compress(byte[] data, int length) throws IOException
+        {
+            started.incrementAndGet();
+            
+            try
+            {
+                if(length > 0 && (data[0] & 0xFF) == held) gate.await();
+            }
+            catch(InterruptedException e)
+            {
+                throw new IOException(e);
+            }
+            
+            if(length > 0 && (data[0] & 0xFF) == bad) throw new IOException("Bad block");
+            
+            return ByteBuffer.allocate(4 + length).putInt(length).put(data, 0, length).array();
+        }
+    }
+    
+    private int[] getLengths(byte[] bytes, byte[] data)
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        ByteArrayOutputStream joined = new ByteArrayOutputStream();
+        int[] lengths = new int[0];
+        int length;
+        
+        while(buffer.hasRemaining())
+        {
+            length = buffer.getInt();
+            
+            joined.write(bytes, buffer.position(), length);
+            buffer.position(buffer.position() + length);
+            
+            lengths = Arrays.copyOf(lengths, lengths.length + 1);
+            lengths[lengths.length - 1] = length;
+        }
+        
+        assertArrayEquals(data, joined.toByteArray());
+        
+        return lengths;
+    }
+    
+    @Test
+    public void testBlocks() throws IOException
+    {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        byte[] data = new byte[10000];
+        ByteArrayOutputStream out;
+        int[] lengths;
+        
+        for(int i=0; i<data.length; i++) data[i] = (byte)i;
+        
+        for(int blockSize : new int[]{ 1, 1000, 4096, 10000, 1 << 20 })
+        {
+            out = new ByteArrayOutputStream();
+            
+            try(LengthOutputStream stream = new LengthOutputStream(out, pool, blockSize, 3))
+            {
+                stream.write(data, 0, 10);
+                stream.write(data[10]);
+                stream.write(data, 11, data.length - 11);
+                stream.flush();
+            }
+            
+            lengths = getLengths(out.toByteArray(), data);
+            
+            assertEquals((data.length + blockSize - 1) / blockSize, lengths.length);
+            
+            for(int i=0; i<lengths.length-1; i++) assertEquals(blockSize, lengths[i]);
+        }
+        
+        pool.shutdown();
+    }
+    
+    @Test
+    public void testWindow() throws Exception
+    {
+        ForkJoinPool pool = new ForkJoinPool(8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LengthOutputStream stream = new LengthOutputStream(out, pool, 4, 4);
+        byte[] data = new byte[40];
+        Thread writer;
+        
+        // Block i is made of the byte i, and the first is held back
+        for(int i=0; i<data.length; i++) data[i] = (byte)(i / 4);
+        
+        stream.held = 0;
+        stream.gate = new CountDownLatch(1);
+        
+        writer = new Thread(() -> {
+            try
+            {
+                stream.write(data);
+                stream.close();
+            }
+            catch(IOException e)
+            {
+                throw new RuntimeException(e);
+            }
+        });
+        
+        writer.start();
+        
+        try
+        {
+            // The window of 4 is full and the writer waits on the first block
+            while(stream.started.get() < 5) Thread.sleep(1);
+            
+            Thread.sleep(50);
+            
+            assertEquals(5, stream.started.get());
+            assertTrue(writer.isAlive());
+            assertEquals(0, out.size());
+        }
+        finally
+        {
+            stream.gate.countDown();
+            writer.join();
+            pool.shutdown();
+        }
+        
+        // Written in order even though the later blocks finished first
+        assertEquals(10, getLengths(out.toByteArray(), data).length);
+    }
+    
+    @Test
+    public void testErrors() throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LengthOutputStream stream = new LengthOutputStream(out, ForkJoinPool.commonPool(), 4, 1);
+        
+        stream.bad = 'X';
+        stream.write("abcdXXXX".getBytes());
+        
+        assertThrows(IOException.class, () -> stream.close());
+        assertThrows(IOException.class, () -> stream.write(1));
+        
+        assertThrows(IllegalArgumentException.class, () -> new LengthOutputStream(out, ForkJoinPool.commonPool(), 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new LengthOutputStream(out, ForkJoinPool.commonPool(), 4, 0));
+    }
+    
+    @Test
+    public void testEmpty() throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LengthOutputStream stream = new LengthOutputStream(out, ForkJoinPool.commonPool(), 16, 1);
+        
+        stream.close();
+        stream.close();
+        
+        // An empty file is still written as one block
+        assertArrayEquals(new int[]{ 0 }, getLengths(out.toByteArray(), new byte[0]));
+        assertThrows(IOException.class, () -> stream.write(1));
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import com.github.luben.zstd.ZstdInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.random.RandomGenerator;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author jbanes
+ */
+public class ParallelZstdOutputStreamTest
+{
+    private byte[] unzstd(byte[] bytes) throws IOException
+    {
+        try(ZstdInputStream in = new ZstdInputStream(new ByteArrayInputStream(bytes)))
+        {
+            return in.readAllBytes();
+        }
+    }
+    
+    // The block handling is covered by ParallelBlockOutputStreamTest
+    @Test
+    public void testRoundTrip() throws IOException
+    {
+        RandomGenerator random = Randoms.create(1);
+        StringBuilder text = new StringBuilder();
+        ByteArrayOutputStream out;
+        byte[] data;
+        
+        for(int i=0; i<2000; i++) text.append(i).append(',').append(random.nextInt(100)).append(",Red\n");
+        
+        data = text.toString().getBytes();
+        
+        for(byte[] bytes : new byte[][]{ data, new byte[0] })
+        {
+            out = new ByteArrayOutputStream();
+            
+            try(ParallelZstdOutputStream zstd = new ParallelZstdOutputStream(out, ForkJoinPool.commonPool(), 1000, 3, 3))
+            {
+                zstd.write(bytes);
+            }
+            
+            assertArrayEquals(bytes, unzstd(out.toByteArray()));
+        }
+        
+        assertThrows(IllegalArgumentException.class, () -> new ParallelZstdOutputStream(new ByteArrayOutputStream(), ForkJoinPool.commonPool(), 16, 23, 1));
+    }
+}
@@ -0,0 +1,537 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import com.invirgance.convirgance.ConvirganceException;
+import com.invirgance.convirgance.json.JSONObject;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author jbanes
+ */
+public class ParquetOutputTest
+{
+    private int readVarint(ByteBuffer buffer)
+    {
+        int value = 0;
+        int shift = 0;
+        int b;
+        
+        do
+        {
+            b = buffer.get() & 0xFF;
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        }
+        while((b & 0x80) != 0);
+        
+        return value;
+    }
+    
+    // Reads back the output of RLEEncoder as the Parquet spec describes it
+    private int[] decode(byte[] bytes, int bitWidth, int count)
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int[] values = new int[count];
+        int index = 0;
+        int header;
+        int length;
+        int value;
+        long bits;
+        int available;
+        
+        while(index < count)
+        {
+            header = readVarint(buffer);
+            
+            if((header & 1) == 0)
+            {
+                value = 0;
+                
+                for(int i=0; i<(bitWidth + 7) / 8; i++) value |= (buffer.get() & 0xFF) << (i * 8);
+                for(int i=0; i<(header >>> 1); i++) values[index++] = value;
+                
+                continue;
+            }
+            
+            length = (header >>> 1) * 8;
+            bits = 0;
+            available = 0;
+            
+            for(int i=0; i<length; i++)
+            {
+                while(available < bitWidth)
+                {
+                    bits |= (long)(buffer.get() & 0xFF) << available;
+                    available += 8;
+                }
+                
+                if(index < count) values[index++] = (int)(bits & ((1L << bitWidth) - 1));
+                
+                bits >>>= bitWidth;
+                available -= bitWidth;
+            }
+        }
+        
+        assertFalse(buffer.hasRemaining());
+        
+        return values;
+    }
+    
+    private long readLong(ByteBuffer buffer)
+    {
+        long value = 0;
+        int shift = 0;
+        int b;
+        
+        do
+        {
+            b = buffer.get() & 0xFF;
+            value |= (long)(b & 0x7F) << shift;
+            shift += 7;
+        }
+        while((b & 0x80) != 0);
+        
+        return value;
+    }
+    
+    // Reads a Thrift compact protocol struct as a map of field ids to values
+    private Map<Integer,Object> readStruct(ByteBuffer buffer)
+    {
+        Map<Integer,Object> struct = new HashMap<>();
+        int field = 0;
+        int header;
+        
+        while((header = buffer.get() & 0xFF) != 0)
+        {
+            if((header >>> 4) == 0) fail("Long form field headers are not written");
+            
+            field += header >>> 4;
+            struct.put(field, readValue(buffer, header & 0x0F));
+        }
+        
+        return struct;
+    }
+    
+    private Object readValue(ByteBuffer buffer, int type)
+    {
+        List<Object> list;
+        byte[] bytes;
+        long value;
+        int header;
+        int size;
+        
+        switch(type)
+        {
+            case ThriftWriter.BOOLEAN_TRUE:
+                return true;
+                
+            case ThriftWriter.BOOLEAN_FALSE:
+                return false;
+                
+            case ThriftWriter.I32:
+            case ThriftWriter.I64:
+                value = readLong(buffer);
+                return (value >>> 1) ^ -(value & 1);
+                
+            case ThriftWriter.BINARY:
+                bytes = new byte[(int)readLong(buffer)];
+                buffer.get(bytes);
+                return bytes;
+                
+            case ThriftWriter.LIST:
+                header = buffer.get() & 0xFF;
+                size = ((header >>> 4) == 15) ? (int)readLong(buffer) : (header >>> 4);
+                list = new ArrayList<>();
+                
+                for(int i=0; i<size; i++) list.add(readValue(buffer, header & 0x0F));
+                
+                return list;
+                
+            case ThriftWriter.STRUCT:
+                return readStruct(buffer);
+                
+            default:
+                fail("Unexpected Thrift type " + type);
+                return null;
+        }
+    }
+    
+    private Map<Integer,Object> getStruct(Map<Integer,Object> struct, int field)
+    {
+        return (Map<Integer,Object>)struct.get(field);
+    }
+    
+    private List<Object> getList(Map<Integer,Object> struct, int field)
+    {
+        return (List<Object>)struct.get(field);
+    }
+    
+    private int getInt(Map<Integer,Object> struct, int field)
+    {
+        return (int)(long)(Long)struct.get(field);
+    }
+    
+    private Object readPlain(ByteBuffer buffer, int type)
+    {
+        byte[] bytes;
+        
+        switch(type)
+        {
+            case 1:
+                return buffer.getInt();
+                
+            case 2:
+                return buffer.getLong();
+                
+            case 5:
+                return buffer.getDouble();
+                
+            default:
+                bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+    
+    // Reads a file back a column chunk at a time, as a reader following the
+    // Parquet spec would, and returns the values of each column in order
+    private Map<String,List<Object>> read(byte[] file, Map<String,Boolean> dictionaries) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(file).order(ByteOrder.LITTLE_ENDIAN);
+        int length = buffer.getInt(file.length - 8);
+        Map<Integer,Object> footer = readStruct(buffer.slice(file.length - 8 - length, length));
+        Map<String,List<Object>> columns = new LinkedHashMap<>();
+        Map<Integer,Object> metadata;
+        Map<Integer,Object> page;
+        List<Object> dictionary;
+        List<Object> values;
+        ByteBuffer data;
+        byte[] bytes;
+        int[] levels;
+        int[] indices;
+        int defined;
+        int remaining;
+        int type;
+        long rows = 0;
+        
+        assertEquals(1L, footer.get(1));
+        
+        for(Object group : getList(footer, 4))
+        {
+            rows += (Long)((Map<Integer,Object>)group).get(3);
+            
+            for(Object chunk : getList((Map<Integer,Object>)group, 1))
+            {
+                metadata = getStruct((Map<Integer,Object>)chunk, 3);
+                type = getInt(metadata, 1);
+                values = columns.computeIfAbsent(new String((byte[])getList(metadata, 3).get(0), StandardCharsets.UTF_8), name -> new ArrayList<>());
+                remaining = getInt(metadata, 5);
+                dictionary = null;
+                
+                dictionaries.merge(new String((byte[])getList(metadata, 3).get(0), StandardCharsets.UTF_8), metadata.containsKey(11), (a, b) -> a || b);
+                buffer.position(metadata.containsKey(11) ? getInt(metadata, 11) : getInt(metadata, 9));
+                
+                while(remaining > 0)
+                {
+                    page = readStruct(buffer);
+                    bytes = new byte[getInt(page, 3)];
+                    buffer.get(bytes);
+                    
+                    if(getInt(metadata, 4) == ParquetOutput.GZIP)
+                    {
+                        try(GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes)))
+                        {
+                            bytes = in.readAllBytes();
+                        }
+                    }
+                    
+                    assertEquals(getInt(page, 2), bytes.length);
+                    
+                    data = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+                    
+                    // A dictionary page holds the distinct values plain
+                    if(page.containsKey(7))
+                    {
+                        dictionary = new ArrayList<>();
+                        
+                        for(int i=0; i<getInt(getStruct(page, 7), 1); i++) dictionary.add(readPlain(data, type));
+                        
+                        assertFalse(data.hasRemaining());
+                        continue;
+                    }
+                    
+                    length = data.getInt();
+                    levels = decode(Arrays.copyOfRange(bytes, 4, 4 + length), 1, getInt(getStruct(page, 5), 1));
+                    data.position(4 + length);
+                    defined = Arrays.stream(levels).sum();
+                    
+                    if(getInt(getStruct(page, 5), 2) == 2)
+                    {
+                        length = data.get();
+                        indices = decode(Arrays.copyOfRange(bytes, data.position(), bytes.length), length, defined);
+                        
+                        for(int i=0, j=0; i<levels.length; i++) values.add((levels[i] == 0) ? null : dictionary.get(indices[j++]));
+                    }
+                    else
+                    {
+                        for(int level : levels) values.add((level == 0) ? null : readPlain(data, type));
+                        
+                        assertFalse(data.hasRemaining());
+                    }
+                    
+                    remaining -= levels.length;
+                }
+            }
+        }
+        
+        assertEquals(rows, footer.get(3));
+        
+        for(List<Object> column : columns.values()) assertEquals(rows, column.size());
+        
+        return columns;
+    }
+    
+    @Test
+    public void testRLE()
+    {
+        int[][] tests = new int[][]{
+            { 1, 1, 1, 1, 1, 1, 1, 1, 1, 1 },
+            { 0, 1, 0, 1, 1 },
+            { 3, 3, 3, 3, 3, 3, 3, 3, 0, 1, 2, 3, 4, 5, 6, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 2 },
+            { 300, 1, 299, 300, 300, 300, 300, 300, 300, 300, 300, 300 }
+        };
+        
+        ByteArrayOutputStream out;
+        int width;
+        
+        for(int[] values : tests)
+        {
+            out = new ByteArrayOutputStream();
+            width = RLEEncoder.getBitWidth(Arrays.stream(values).max().getAsInt());
+            
+            RLEEncoder.encode(values, 0, values.length, width, out);
+            
+            assertArrayEquals(values, decode(out.toByteArray(), width, values.length));
+        }
+        
+        // A run of ones is a single two byte run
+        out = new ByteArrayOutputStream();
+        RLEEncoder.encode(tests[0], 0, tests[0].length, 1, out);
+        
+        assertArrayEquals(new byte[]{ 20, 1 }, out.toByteArray());
+        assertEquals(1, RLEEncoder.getBitWidth(0));
+        assertEquals(9, RLEEncoder.getBitWidth(300));
+    }
+    
+    @Test
+    public void testThrift()
+    {
+        byte[] bytes = new ThriftWriter()
+                .beginStruct()
+                .writeI32(1, -1)
+                .writeString(4, "a")
+                .beginList(20, ThriftWriter.I32, 2).writeListI32(1).writeListI32(2)
+                .endStruct()
+                .toByteArray();
+        
+        assertArrayEquals(new byte[]{ 0x15, 0x01, 0x38, 0x01, 'a', 0x09, 0x28, 0x25, 0x02, 0x04, 0x00 }, bytes);
+    }
+    
+    @Test
+    public void testFile()
+    {
+        Schema schema = new Schema().add("id", Schema.INT).add("Color", Schema.STRING);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ParquetOutput.Cursor cursor = new ParquetOutput(schema, 3, ParquetOutput.GZIP).write(() -> out);
+        JSONObject record;
+        ByteBuffer buffer;
+        int length;
+        
+        for(int i=0; i<10; i++)
+        {
+            record = new JSONObject();
+            
+            record.put("id", i);
+            record.put("Color", (i % 3 == 0) ? null : "Red");
+            
+            cursor.write(record);
+        }
+        
+        cursor.close();
+        
+        buffer = ByteBuffer.wrap(out.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+        length = buffer.getInt(buffer.limit() - 8);
+        
+        assertEquals("PAR1", new String(out.toByteArray(), 0, 4, StandardCharsets.US_ASCII));
+        assertEquals("PAR1", new String(out.toByteArray(), buffer.limit() - 4, 4, StandardCharsets.US_ASCII));
+        assertTrue(length > 0 && length < buffer.limit() - 12);
+        
+        // The footer starts with version 1
+        assertEquals(0x15, buffer.get(buffer.limit() - 8 - length));
+        assertEquals(0x02, buffer.get(buffer.limit() - 8 - length + 1));
+    }
+    
+    @Test
+    public void testSchema()
+    {
+        Schema schema = new Schema().add("id", Schema.INT);
+        ParquetOutput.Cursor cursor = new ParquetOutput(schema).write(() -> new ByteArrayOutputStream());
+        JSONObject record = new JSONObject();
+        
+        record.put("id", "x");
+        assertThrows(IllegalArgumentException.class, () -> cursor.write(record));
+        
+        record.put("id", 1L << 40);
+        assertThrows(IllegalArgumentException.class, () -> cursor.write(record));
+        
+        record.put("id", 1);
+        record.put("Name", "Ignored");
+        cursor.write(record);
+        cursor.close();
+        
+        record.put("id", 1L << 40);
+        assertEquals(Schema.LONG, Schema.infer(Arrays.asList(record)).getType(0));
+        assertEquals(Schema.STRING, Schema.infer(Arrays.asList(record)).getType(1));
+        
+        assertThrows(ConvirganceException.class, () -> ParquetOutput.getCodec("snappy"));
+    }
+    
+    @Test
+    public void testBudget() throws Exception
+    {
+        Schema schema = new Schema().add("id", Schema.INT).add("Color", Schema.STRING);
+        ParquetOutput output = new ParquetOutput(schema, 1000, ParquetOutput.UNCOMPRESSED, 100);
+        ParquetOutput.Cursor[] cursors = new ParquetOutput.Cursor[4];
+        ByteArrayOutputStream[] files = new ByteArrayOutputStream[cursors.length];
+        List<Object> ids;
+        
+        for(int i=0; i<cursors.length; i++) 
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            
+            files[i] = out;
+            cursors[i] = output.write(() -> out);
+        }
+        
+        // Each file is well short of a row group, but together they are not
+        for(int i=0; i<2000; i++)
+        {
+            cursors[i % cursors.length].getWriter().writeInt(i);
+            cursors[i % cursors.length].getWriter().writeString("Red");
+            cursors[i % cursors.length].getWriter().endRow();
+            
+            assertTrue(output.getBuffered() <= 100 + cursors.length, "Buffered " + output.getBuffered());
+        }
+        
+        for(ParquetOutput.Cursor cursor : cursors) cursor.close();
+        
+        assertEquals(0, output.getBuffered());
+        
+        // The row groups written early still hold every row
+        for(int i=0; i<files.length; i++)
+        {
+            ids = read(files[i].toByteArray(), new HashMap<>()).get("id");
+            
+            assertEquals(500, ids.size());
+            
+            for(int j=0; j<ids.size(); j++) assertEquals(j * cursors.length + i, ids.get(j));
+        }
+        
+        assertThrows(IllegalArgumentException.class, () -> new ParquetOutput(schema, 1000, ParquetOutput.GZIP, 0));
+    }
+    
+    @Test
+    public void testDecode() throws IOException
+    {
+        Schema schema = new Schema()
+                .add("id", Schema.INT)
+                .add("Sale", Schema.LONG)
+                .add("Price", Schema.DOUBLE)
+                .add("Color", Schema.STRING)
+                .add("Receipt", Schema.STRING);
+        
+        Map<String,List<Object>> expected = new LinkedHashMap<>();
+        Map<String,List<Object>> columns;
+        Map<String,Boolean> dictionaries;
+        ParquetOutput.Cursor cursor;
+        RowWriter writer;
+        
+        for(int i=0; i<schema.size(); i++) expected.put(schema.getName(i), new ArrayList<>());
+        
+        for(int i=0; i<300; i++)
+        {
+            expected.get("id").add(i);
+            expected.get("Sale").add(i * 10000000000L);
+            expected.get("Price").add((i % 5 == 0) ? null : i * 0.25);
+            expected.get("Color").add((i % 7 == 0) ? null : new String[]{ "Red", "Green", "Blue" }[i % 3]);
+            expected.get("Receipt").add("R" + i);
+        }
+        
+        for(int codec : new int[]{ ParquetOutput.UNCOMPRESSED, ParquetOutput.GZIP })
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            
+            cursor = new ParquetOutput(schema, 100, codec).write(() -> out);
+            writer = cursor.getWriter();
+            
+            for(int i=0; i<300; i++)
+            {
+                writer.writeInt(i);
+                writer.writeLong(i * 10000000000L);
+                
+                if(i % 5 == 0) writer.writeNull();
+                else writer.writeDouble(i * 0.25);
+                
+                writer.writeString((String)expected.get("Color").get(i));
+                writer.writeString("R" + i);
+                writer.endRow();
+            }
+            
+            cursor.close();
+            
+            dictionaries = new HashMap<>();
+            columns = read(out.toByteArray(), dictionaries);
+            
+            assertEquals(expected, columns);
+            
+            // Few distinct colors, but every receipt is different
+            assertTrue(dictionaries.get("Color"));
+            assertFalse(dictionaries.get("Receipt"));
+        }
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import com.invirgance.convirgance.json.JSONObject;
+import com.invirgance.convirgance.output.Output;
+import com.invirgance.convirgance.output.OutputCursor;
+import com.invirgance.convirgance.target.Target;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author jbanes
+ */
+public class PartitionedOutputTest
+{
+    // Writes the id of each record on its own line, after a header line
+    private static class LineOutput implements Output
+    {
+        @Override
+        public OutputCursor write(Target target)
+        {
+            OutputStream out = target.getOutputStream();
+            
+            write(out, "header\n");
+            
+            return new OutputCursor() {
+                
+                @Override
+                public void write(JSONObject record)
+                {
+                    LineOutput.this.write(out, record.get("id") + "\n");
+                }
+
+                @Override
+                public void close()
+                {
+                    try
+                    {
+                        out.close();
+                    }
+                    catch(IOException e)
+                    {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            };
+        }
+        
+        private void write(OutputStream out, String text)
+        {
+            try
+            {
+                out.write(text.getBytes(StandardCharsets.UTF_8));
+            }
+            catch(IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+    
+    // Writes rows as "row" and their values, and records as LineOutput does
+    private static class RowOutput extends LineOutput
+    {
+        private Schema schema;
+
+        public RowOutput(Schema schema)
+        {
+            this.schema = schema;
+        }
+        
+        @Override
+        public OutputCursor write(Target target)
+        {
+            OutputCursor cursor = super.write(target);
+            
+            return new RowCursor() {
+                
+                private RowBuffer row = new RowBuffer(schema, 1) {
+                    
+                    @Override
+                    public void endRow() throws IOException
+                    {
+                        StringBuilder line = new StringBuilder("row");
+                        
+                        super.endRow();
+                        
+                        for(int i=0; i<schema.size(); i++) line.append(' ').append(get(0, i));
+                        
+                        target.getOutputStream().write((line + "\n").getBytes(StandardCharsets.UTF_8));
+                        clear();
+                    }
+                };
+                
+                @Override
+                public Schema getSchema()
+                {
+                    return schema;
+                }
+
+                @Override
+                public RowWriter getWriter()
+                {
+                    return row;
+                }
+
+                @Override
+                public void write(JSONObject record)
+                {
+                    cursor.write(record);
+                }
+
+                @Override
+                public void close()
+                {
+                    cursor.close();
+                }
+            };
+        }
+    }
+    
+    private File createDirectory() throws IOException
+    {
+        return Files.createTempDirectory("partitioned-").toFile();
+    }
+    
+    private void delete(File file)
+    {
+        if(file.isDirectory()) for(File child : file.listFiles()) delete(child);
+        
+        file.delete();
+    }
+    
+    private JSONObject record(int id, Object date)
+    {
+        JSONObject record = new JSONObject();
+        
+        record.put("id", id);
+        record.put("DateId", date);
+        
+        return record;
+    }
+    
+    private List<String> read(File directory, String partition, String file) throws IOException
+    {
+        return Files.readAllLines(new File(new File(directory, partition), file).toPath());
+    }
+    
+    @Test
+    public void testDirectoryName()
+    {
+        assertEquals("DateId=20261018", PartitionedOutput.getDirectoryName("DateId", 20261018));
+        assertEquals("Name=a%2Fb%3Dc", PartitionedOutput.getDirectoryName("Name", "a/b=c"));
+        assertEquals("Name=" + PartitionedOutput.DEFAULT_PARTITION, PartitionedOutput.getDirectoryName("Name", null));
+    }
+    
+    @Test
+    public void testPartitions() throws IOException
+    {
+        File directory = createDirectory();
+        OutputCursor cursor = new PartitionedOutput(new LineOutput(), directory, "DateId", "part", "csv", 2, 0, 0).write(null);
+        
+        try
+        {
+            cursor.write(record(1, 20261017));
+            cursor.write(record(2, 20261018));
+            cursor.write(record(3, 20261017));
+            cursor.write(record(4, 20261019)); // Closes 20261018
+            cursor.write(record(5, 20261018));
+            cursor.write(record(6, null));
+            cursor.close();
+            
+            assertEquals(List.of("header", "1", "3"), read(directory, "DateId=20261017", "part-00000.csv"));
+            assertEquals(List.of("header", "2"), read(directory, "DateId=20261018", "part-00000.csv"));
+            assertEquals(List.of("header", "5"), read(directory, "DateId=20261018", "part-00001.csv"));
+            assertEquals(List.of("header", "4"), read(directory, "DateId=20261019", "part-00000.csv"));
+            assertEquals(List.of("header", "6"), read(directory, "DateId=" + PartitionedOutput.DEFAULT_PARTITION, "part-00000.csv"));
+            assertEquals(4, directory.listFiles().length);
+        }
+        finally
+        {
+            delete(directory);
+        }
+    }
+    
+    @Test
+    public void testRolling() throws IOException
+    {
+        File directory = createDirectory();
+        OutputCursor cursor = new PartitionedOutput(new LineOutput(), directory, "DateId", "part", "csv", 8, 2, 0).write(null);
+        
+        try
+        {
+            for(int i=1; i<=5; i++) cursor.write(record(i, 20261018));
+            
+            cursor.close();
+            
+            assertEquals(List.of("header", "1", "2"), read(directory, "DateId=20261018", "part-00000.csv"));
+            assertEquals(List.of("header", "3", "4"), read(directory, "DateId=20261018", "part-00001.csv"));
+            assertEquals(List.of("header", "5"), read(directory, "DateId=20261018", "part-00002.csv"));
+        }
+        finally
+        {
+            delete(directory);
+        }
+        
+        directory = createDirectory();
+        cursor = new PartitionedOutput(new LineOutput(), directory, "DateId", "part", "csv", 8, 0, 11).write(null);
+        
+        try
+        {
+            // 7 bytes of header and 2 bytes per record
+            for(int i=1; i<=5; i++) cursor.write(record(i, 20261018));
+            
+            cursor.close();
+            
+            assertEquals(List.of("header", "1", "2"), read(directory, "DateId=20261018", "part-00000.csv"));
+            assertEquals(List.of("header", "3", "4"), read(directory, "DateId=20261018", "part-00001.csv"));
+            assertEquals(List.of("header", "5"), read(directory, "DateId=20261018", "part-00002.csv"));
+        }
+        finally
+        {
+            delete(directory);
+        }
+    }
+    
+    private void write(RowWriter writer, int id, int date, String name) throws IOException
+    {
+        writer.writeInt(id);
+        writer.writeInt(date);
+        writer.writeString(name);
+        writer.endRow();
+    }
+    
+    @Test
+    public void testRows() throws IOException
+    {
+        Schema schema = new Schema().add("id", Schema.INT).add("DateId", Schema.INT).add("Name", Schema.STRING);
+        File directory = createDirectory();
+        RowCursor cursor = (RowCursor)new PartitionedOutput(new RowOutput(schema.without("DateId")), directory, "DateId", "part", "csv", 8, 2, 0, schema).write(null);
+        
+        try
+        {
+            assertEquals(schema, cursor.getSchema());
+            
+            write(cursor.getWriter(), 1, 20261017, "a");
+            write(cursor.getWriter(), 2, 20261018, null);
+            write(cursor.getWriter(), 3, 20261017, "c");
+            cursor.write(record(4, 20261017));
+            write(cursor.getWriter(), 5, 20261017, "e");
+            cursor.close();
+            
+            assertEquals(List.of("header", "row 1 a", "row 3 c"), read(directory, "DateId=20261017", "part-00000.csv"));
+            assertEquals(List.of("header", "4", "row 5 e"), read(directory, "DateId=20261017", "part-00001.csv"));
+            assertEquals(List.of("header", "row 2 null"), read(directory, "DateId=20261018", "part-00000.csv"));
+        }
+        finally
+        {
+            delete(directory);
+        }
+        
+        // Writers that do not take the rows get records
+        directory = createDirectory();
+        cursor = (RowCursor)new PartitionedOutput(new LineOutput(), directory, "DateId", "part", "csv", 8, 0, 0, schema).write(null);
+        
+        try
+        {
+            write(cursor.getWriter(), 1, 20261017, "a");
+            write(cursor.getWriter(), 2, 20261018, "b");
+            write(cursor.getWriter(), 3, 20261017, "c");
+            cursor.close();
+            
+            assertEquals(List.of("header", "1", "3"), read(directory, "DateId=20261017", "part-00000.csv"));
+            assertEquals(List.of("header", "2"), read(directory, "DateId=20261018", "part-00000.csv"));
+        }
+        finally
+        {
+            delete(directory);
+        }
+        
+        assertThrows(IllegalStateException.class, () -> ((RowCursor)new PartitionedOutput(new LineOutput(), null, "DateId", "part", "csv", 8, 0, 0).write(null)).getWriter());
+        assertThrows(IllegalArgumentException.class, () -> new PartitionedOutput(new LineOutput(), null, "Day", "part", "csv", 8, 0, 0, schema));
+    }
+}
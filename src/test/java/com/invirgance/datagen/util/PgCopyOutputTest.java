@@ -0,0 +1,170 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import com.invirgance.convirgance.json.JSONObject;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author jbanes
+ */
+public class PgCopyOutputTest
+{
+    // Reads back a binary COPY file as the PostgreSQL documentation describes
+    // it. Values are returned as their raw bytes, or null.
+    private ArrayList<byte[][]> read(byte[] bytes) throws IOException
+    {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        ArrayList<byte[][]> rows = new ArrayList<>();
+        byte[] signature = new byte[11];
+        byte[][] row;
+        int length;
+        int fields;
+        
+        in.readFully(signature);
+        
+        assertArrayEquals("PGCOPY\n\377\r\n\0".getBytes(StandardCharsets.ISO_8859_1), signature);
+        assertEquals(0, in.readInt());
+        
+        in.skipBytes(in.readInt());
+        
+        while((fields = in.readShort()) != -1)
+        {
+            row = new byte[fields][];
+            
+            for(int i=0; i<fields; i++)
+            {
+                length = in.readInt();
+                
+                if(length < 0) continue;
+                
+                row[i] = new byte[length];
+                in.readFully(row[i]);
+            }
+            
+            rows.add(row);
+        }
+        
+        assertEquals(0, in.available());
+        
+        return rows;
+    }
+    
+    private long getLong(byte[] bytes) throws IOException
+    {
+        return new DataInputStream(new ByteArrayInputStream(bytes)).readLong();
+    }
+    
+    @Test
+    public void testFile() throws IOException
+    {
+        Schema schema = new Schema().add("id", Schema.LONG).add("Quantity", Schema.INT).add("Price", Schema.DOUBLE).add("Name", Schema.STRING);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PgCopyOutput.Cursor cursor = new PgCopyOutput(schema).write(() -> out);
+        RowWriter writer = cursor.getWriter();
+        JSONObject record = new JSONObject();
+        ArrayList<byte[][]> rows;
+        
+        writer.writeLong(1L << 40);
+        writer.writeInt(-3);
+        writer.writeDouble(2.5);
+        writer.writeString("Grün");
+        writer.endRow();
+        
+        record.put("id", 2);
+        record.put("Name", null);
+        cursor.write(record);
+        cursor.close();
+        
+        rows = read(out.toByteArray());
+        
+        assertEquals(2, rows.size());
+        assertEquals(4, rows.get(0).length);
+        assertEquals(1L << 40, getLong(rows.get(0)[0]));
+        assertArrayEquals(new byte[]{ -1, -1, -1, -3 }, rows.get(0)[1]);
+        assertEquals(2.5, Double.longBitsToDouble(getLong(rows.get(0)[2])));
+        assertEquals("Grün", new String(rows.get(0)[3], StandardCharsets.UTF_8));
+        
+        assertEquals(2L, getLong(rows.get(1)[0]));
+        assertNull(rows.get(1)[1]);
+        assertNull(rows.get(1)[2]);
+        assertNull(rows.get(1)[3]);
+        
+        assertThrows(IllegalStateException.class, () -> writer.writeInt(1));
+    }
+    
+    @Test
+    public void testInfer() throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PgCopyOutput output = new PgCopyOutput(null);
+        PgCopyOutput.Cursor cursor = output.write(() -> out);
+        JSONObject record = new JSONObject();
+        ArrayList<byte[][]> rows;
+        
+        record.put("id", 7);
+        record.put("Name", "Red");
+        cursor.write(record);
+        
+        assertNull(output.getSchema());
+        
+        cursor.close();
+        
+        rows = read(out.toByteArray());
+        
+        assertEquals(Schema.INT, output.getSchema().getType(0));
+        assertEquals(Schema.STRING, output.getSchema().getType(1));
+        assertEquals(1, rows.size());
+        assertArrayEquals(new byte[]{ 0, 0, 0, 7 }, rows.get(0)[0]);
+        assertEquals("Red", new String(rows.get(0)[1], StandardCharsets.UTF_8));
+    }
+    
+    @Test
+    public void testScripts()
+    {
+        PgLoadScript script = new PgLoadScript()
+                .add("stores", new Schema().add("id", Schema.INT).add("Name", Schema.STRING), "stores.pgcopy")
+                .add("sales", new Schema().add("id", Schema.LONG).add("StoreId", Schema.INT).add("Price", Schema.DOUBLE), "sales's.pgcopy");
+        
+        assertEquals("DROP TABLE IF EXISTS \"stores\";\n"
+                   + "CREATE TABLE \"stores\" (\n    \"id\" integer,\n    \"Name\" text\n);\n\n"
+                   + "DROP TABLE IF EXISTS \"sales\";\n"
+                   + "CREATE TABLE \"sales\" (\n    \"id\" bigint,\n    \"StoreId\" integer,\n    \"Price\" double precision\n);\n\n", script.getSchema());
+        
+        assertEquals("ALTER TABLE \"stores\" ADD PRIMARY KEY (\"id\");\n"
+                   + "ALTER TABLE \"sales\" ADD PRIMARY KEY (\"id\");\n"
+                   + "CREATE INDEX ON \"sales\" (\"StoreId\");\n\nANALYZE;\n", script.getIndexes());
+        
+        assertTrue(script.getLoad(true).contains("BEGIN;\n\\ir schema.sql\n\\copy \"stores\" FROM 'stores.pgcopy' WITH (FORMAT binary, FREEZE)\n"));
+        assertTrue(script.getLoad(true).contains("\\copy \"sales\" FROM 'sales''s.pgcopy' WITH (FORMAT binary, FREEZE)\nCOMMIT;\n\n\\ir indexes.sql\n"));
+        assertTrue(script.getLoad(false).contains("\\copy \"sales\" FROM 'sales''s.pgcopy' WITH (FORMAT binary)\n"));
+        assertFalse(script.getLoad(false).contains("schema.sql\n"));
+    }
+}
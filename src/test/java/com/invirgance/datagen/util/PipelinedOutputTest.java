@@ -0,0 +1,316 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import com.invirgance.convirgance.ConvirganceException;
+import com.invirgance.convirgance.json.JSONObject;
+import com.invirgance.convirgance.output.Output;
+import com.invirgance.convirgance.output.OutputCursor;
+import com.invirgance.convirgance.target.Target;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author jbanes
+ */
+public class PipelinedOutputTest
+{
+    // Writes the id of each record on its own line
+    private static class LineOutput implements Output
+    {
+        @Override
+        public OutputCursor write(Target target)
+        {
+            OutputStream out = target.getOutputStream();
+            
+            return new OutputCursor() {
+                
+                @Override
+                public void write(JSONObject record)
+                {
+                    try
+                    {
+                        out.write((record.get("id") + "\n").getBytes(StandardCharsets.UTF_8));
+                    }
+                    catch(IOException e)
+                    {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+
+                @Override
+                public void close()
+                {
+                    try
+                    {
+                        out.close();
+                    }
+                    catch(IOException e)
+                    {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            };
+        }
+    }
+    
+    // Writes rows as "row" and their id, and records as LineOutput does
+    private static class RowOutput extends LineOutput
+    {
+        private Schema schema;
+
+        public RowOutput(Schema schema)
+        {
+            this.schema = schema;
+        }
+        
+        @Override
+        public OutputCursor write(Target target)
+        {
+            OutputCursor cursor = super.write(target);
+            
+            return new RowCursor() {
+                
+                private RowBuffer row = new RowBuffer(schema, 1) {
+                    
+                    @Override
+                    public void endRow() throws IOException
+                    {
+                        super.endRow();
+                        
+                        target.getOutputStream().write(("row " + get(0, 0) + "\n").getBytes(StandardCharsets.UTF_8));
+                        clear();
+                    }
+                };
+                
+                @Override
+                public Schema getSchema()
+                {
+                    return schema;
+                }
+
+                @Override
+                public RowWriter getWriter()
+                {
+                    return row;
+                }
+
+                @Override
+                public void write(JSONObject record)
+                {
+                    cursor.write(record);
+                }
+
+                @Override
+                public void close()
+                {
+                    cursor.close();
+                }
+            };
+        }
+    }
+    
+    private String write(Output output, int count)
+    {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        OutputCursor cursor = output.write(() -> buffer);
+        JSONObject record;
+        
+        for(int i=0; i<count; i++)
+        {
+            record = new JSONObject();
+            
+            record.put("id", i);
+            cursor.write(record);
+        }
+        
+        cursor.close();
+        
+        return buffer.toString(StandardCharsets.UTF_8);
+    }
+    
+    @Test
+    public void testOrder()
+    {
+        int[] counts = new int[]{ 0, 1, 7, 8, 9, 100000 };
+        
+        for(int count : counts)
+        {
+            assertEquals(write(new LineOutput(), count), write(new PipelinedOutput(new LineOutput(), 8, 2), count));
+        }
+        
+        assertEquals(write(new LineOutput(), 1000), write(new PipelinedOutput(new LineOutput()), 1000));
+    }
+    
+    @Test
+    public void testShared()
+    {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        ByteArrayOutputStream[] buffers = new ByteArrayOutputStream[100];
+        OutputCursor[] cursors = new OutputCursor[buffers.length];
+        Output output = new PipelinedOutput(new LineOutput(), 8, 2, executor);
+        JSONObject record;
+        
+        try
+        {
+            // Far more pipelines than threads, written to in turn
+            for(int i=0; i<buffers.length; i++)
+            {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                
+                buffers[i] = buffer;
+                cursors[i] = output.write(() -> buffer);
+            }
+
+            for(int id=0; id<1000; id++)
+            {
+                for(OutputCursor cursor : cursors)
+                {
+                    record = new JSONObject();
+                    
+                    record.put("id", id);
+                    cursor.write(record);
+                }
+            }
+            
+            for(OutputCursor cursor : cursors) cursor.close();
+            
+            for(ByteArrayOutputStream buffer : buffers) assertEquals(write(new LineOutput(), 1000), buffer.toString(StandardCharsets.UTF_8));
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+    
+    @Test
+    public void testInterrupt()
+    {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        OutputCursor cursor = new PipelinedOutput(new LineOutput(), 1, 1, executor).write(() -> new ByteArrayOutputStream());
+        JSONObject record = new JSONObject();
+        
+        record.put("id", 1);
+        
+        try
+        {
+            // Occupy the only thread so that the next batch has to wait
+            executor.execute(() -> {
+                try
+                {
+                    Thread.sleep(60000);
+                }
+                catch(InterruptedException e)
+                {
+                }
+            });
+            
+            cursor.write(record);
+            Thread.currentThread().interrupt();
+            
+            assertThrows(ConvirganceException.class, () -> cursor.write(record));
+            assertTrue(Thread.interrupted());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+    
+    @Test
+    public void testErrors()
+    {
+        Output output = new PipelinedOutput(new LineOutput(), 4, 1);
+        OutputCursor cursor = output.write(() -> new OutputStream() {
+            @Override
+            public void write(int b) throws IOException
+            {
+                throw new IOException("Disk full");
+            }
+        });
+        
+        JSONObject record = new JSONObject();
+        
+        record.put("id", 1);
+        
+        // The writer fails without blocking the generator
+        assertThrows(ConvirganceException.class, () -> {
+            for(int i=0; i<1000000; i++) cursor.write(record);
+        });
+        
+        assertThrows(ConvirganceException.class, () -> cursor.close());
+        
+        assertThrows(IllegalArgumentException.class, () -> new PipelinedOutput(new LineOutput(), 0, 1));
+    }
+    
+    // Writes runs of three rows and three records in turn
+    private String writeRows(Output output, int count) throws IOException
+    {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        RowCursor cursor = (RowCursor)output.write(() -> buffer);
+        JSONObject record;
+        
+        for(int i=0; i<count; i++)
+        {
+            if((i / 3) % 2 == 0)
+            {
+                cursor.getWriter().writeLong(i);
+                cursor.getWriter().endRow();
+                continue;
+            }
+            
+            record = new JSONObject();
+            
+            record.put("id", i);
+            cursor.write(record);
+        }
+        
+        cursor.close();
+        
+        return buffer.toString(StandardCharsets.UTF_8);
+    }
+    
+    @Test
+    public void testRows() throws IOException
+    {
+        Schema schema = new Schema().add("id", Schema.LONG);
+        StringBuilder expected = new StringBuilder();
+        
+        for(int i=0; i<100; i++) expected.append(((i / 3) % 2 == 0) ? "row " : "").append(i).append('\n');
+        
+        assertEquals(expected.toString(), writeRows(new PipelinedOutput(new RowOutput(schema), schema, 4, 2), 100));
+        assertEquals(write(new LineOutput(), 100), writeRows(new PipelinedOutput(new LineOutput(), schema, 4, 2), 100));
+        
+        // Rows of another schema are written as records
+        assertEquals(write(new LineOutput(), 100), writeRows(new PipelinedOutput(new RowOutput(new Schema().add("id", Schema.INT)), schema, 4, 2), 100));
+        
+        assertThrows(IllegalStateException.class, () -> ((RowCursor)new PipelinedOutput(new LineOutput()).write(() -> new ByteArrayOutputStream())).getWriter());
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import com.invirgance.convirgance.ConvirganceException;
+import java.util.Random;
+import java.util.random.RandomGenerator;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author jbanes
+ */
+public class RandomsTest
+{
+    @Test
+    public void testCompatibility()
+    {
+        Random expected = new Random(1337);
+        Random weighted = new Random(42);
+        RandomGenerator random = Randoms.create(Randoms.DEFAULT_ALGORITHM, 1337);
+        WeightedRandom actual = new WeightedRandom(Randoms.create(Randoms.DEFAULT_ALGORITHM, 42), 0.25);
+        
+        for(int i=0; i<1000; i++)
+        {
+            assertEquals(expected.nextInt(1000, 10000), random.nextInt(1000, 10000));
+            assertEquals(expected.nextLong(), random.nextLong());
+            assertEquals(expected.nextDouble(), random.nextDouble());
+            
+            assertEquals(weighted.nextDouble() <= 0.25, actual.nextBoolean());
+            assertEquals(weighted.nextDouble() <= 0.8, actual.nextBoolean(0.8));
+            assertEquals(weighted.nextInt(12), actual.nextInt(12));
+            assertEquals(weighted.nextInt(2, 5), actual.nextInt(2, 5));
+        }
+    }
+    
+    @Test
+    public void testAlgorithms()
+    {
+        for(String algorithm : new String[]{ "L64X128MixRandom", "Xoshiro256PlusPlus" })
+        {
+            RandomGenerator first = Randoms.create(algorithm, 1337);
+            RandomGenerator second = Randoms.create(algorithm, 1337);
+            
+            assertFalse(first instanceof Random);
+            
+            for(int i=0; i<100; i++) assertEquals(first.nextLong(), second.nextLong());
+        }
+        
+        assertThrows(ConvirganceException.class, () -> Randoms.create("NoSuchRandom", 1));
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import com.invirgance.convirgance.json.JSONObject;
+import com.invirgance.convirgance.output.Output;
+import com.invirgance.convirgance.output.OutputCursor;
+import com.invirgance.convirgance.target.Target;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author jbanes
+ */
+public class RangeIndexTest
+{
+    // Writes the id of each record on its own line
+    private static class LineOutput implements Output
+    {
+        @Override
+        public OutputCursor write(Target target)
+        {
+            OutputStream out = target.getOutputStream();
+            
+            return new OutputCursor() {
+                
+                @Override
+                public void write(JSONObject record)
+                {
+                    try
+                    {
+                        out.write((record.get("id") + "\n").getBytes(StandardCharsets.UTF_8));
+                    }
+                    catch(IOException e)
+                    {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+
+                @Override
+                public void close()
+                {
+                    try
+                    {
+                        out.close();
+                    }
+                    catch(IOException e)
+                    {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            };
+        }
+    }
+    
+    private String read(File file, RangeIndex.Range range) throws IOException
+    {
+        byte[] bytes = new byte[(int)range.length];
+        
+        try(RandomAccessFile in = new RandomAccessFile(file, "r"))
+        {
+            in.seek(range.offset);
+            in.readFully(bytes);
+            
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+    
+    @Test
+    public void testIndexedOutput() throws IOException
+    {
+        File file = File.createTempFile("stores", ".tmp");
+        File index = new File(file.getPath() + ".idx");
+        Target target = () -> {
+            try
+            {
+                return new FileOutputStream(file);
+            }
+            catch(FileNotFoundException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        };
+        
+        OutputCursor cursor = new IndexedOutput(new LineOutput(), "FranchiseId", index).write(target);
+        JSONObject record;
+        RangeIndex ranges;
+        RangeIndex.Range[] found;
+        
+        int[] franchises = new int[]{ -1, 1, 1, 1, 2, 3, 3, 2 };
+        
+        try
+        {
+            for(int i=0; i<franchises.length; i++)
+            {
+                record = new JSONObject();
+
+                record.put("id", i * 10);
+                record.put("FranchiseId", franchises[i]);
+                cursor.write(record);
+            }
+            
+            record = new JSONObject();
+            
+            record.put("id", 80);
+            cursor.write(record);
+            cursor.close();
+            
+            ranges = RangeIndex.read(index);
+            
+            assertEquals("FranchiseId", ranges.getKey());
+            assertEquals(6, ranges.getRanges().length);
+            
+            found = ranges.find(1);
+            
+            assertEquals(1, found.length);
+            assertEquals(1, found[0].row);
+            assertEquals(3, found[0].count);
+            assertEquals("10\n20\n30\n", read(file, found[0]));
+            
+            found = ranges.find(2);
+            
+            assertEquals(2, found.length);
+            assertEquals("40\n", read(file, found[0]));
+            assertEquals("70\n", read(file, found[1]));
+            assertEquals(7, found[1].row);
+            
+            assertEquals("0\n", read(file, ranges.find(-1)[0]));
+            assertEquals("50\n60\n", read(file, ranges.find(3)[0]));
+            assertEquals("80\n", read(file, ranges.find(Integer.MIN_VALUE)[0]));
+            assertEquals(0, ranges.find(4).length);
+            assertEquals(file.length(), ranges.find(Integer.MIN_VALUE)[0].offset + 3);
+        }
+        finally
+        {
+            file.delete();
+            index.delete();
+        }
+    }
+    
+    @Test
+    public void testBlocks() throws IOException
+    {
+        File file = File.createTempFile("sales", ".tmp");
+        File index = new File(file.getPath() + ".idx");
+        Target target = () -> {
+            try
+            {
+                return new FileOutputStream(file);
+            }
+            catch(FileNotFoundException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        };
+        
+        OutputCursor cursor = new IndexedOutput(new LineOutput(), null, index, 4).write(target);
+        JSONObject record;
+        RangeIndex ranges;
+        
+        try
+        {
+            for(int i=0; i<10; i++)
+            {
+                record = new JSONObject();
+
+                record.put("id", i);
+                record.put("FranchiseId", i % 2);
+                cursor.write(record);
+            }
+            
+            cursor.close();
+            
+            ranges = RangeIndex.read(index);
+            
+            assertNull(ranges.getKey());
+            assertEquals(10, ranges.getRows());
+            assertEquals(3, ranges.getRanges().length);
+            assertEquals("4\n5\n6\n7\n", read(file, ranges.getRanges()[1]));
+            assertEquals("8\n9\n", read(file, ranges.getRanges()[2]));
+            
+            assertEquals(0, ranges.findRow(0));
+            assertEquals(0, ranges.findRow(3));
+            assertEquals(1, ranges.findRow(4));
+            assertEquals(2, ranges.findRow(9));
+            assertEquals(-1, ranges.findRow(10));
+            assertEquals(-1, ranges.findRow(-1));
+            assertThrows(IllegalArgumentException.class, () -> new IndexedOutput(new LineOutput(), null, index, 0));
+        }
+        finally
+        {
+            file.delete();
+            index.delete();
+        }
+    }
+    
+    @Test
+    public void testCompressed() throws IOException
+    {
+        File file = File.createTempFile("sales", ".tmp");
+        File index = new File(file.getPath() + ".idx");
+        Target target = () -> {
+            try
+            {
+                return new FileOutputStream(file);
+            }
+            catch(FileNotFoundException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        };
+        
+        OutputCursor cursor = new IndexedOutput(new LineOutput(), null, index, 100, true).write(target);
+        StringBuilder expected = new StringBuilder();
+        JSONObject record;
+        RangeIndex ranges;
+        byte[] block;
+        byte[] data;
+        
+        try
+        {
+            for(int i=0; i<150; i++)
+            {
+                record = new JSONObject();
+
+                record.put("id", i % 10);
+                cursor.write(record);
+                
+                if(i >= 100) expected.append(i % 10).append('\n');
+            }
+            
+            cursor.close();
+            
+            ranges = RangeIndex.read(index);
+            
+            assertTrue(ranges.isCompressed());
+            assertFalse(new RangeIndex(null, ranges.getRanges()).isCompressed());
+            assertEquals(2, ranges.getRanges().length);
+            assertEquals(file.length(), ranges.getRanges()[1].offset + ranges.getRanges()[1].length);
+            
+            // Each segment is its length followed by an LZ4 block
+            block = new byte[(int)ranges.getRanges()[1].length];
+            
+            try(RandomAccessFile in = new RandomAccessFile(file, "r"))
+            {
+                in.seek(ranges.getRanges()[1].offset);
+                in.readFully(block);
+            }
+            
+            data = new byte[(block[0] & 0xFF) | ((block[1] & 0xFF) << 8)];
+            
+            LZ4.decompress(block, 4, block.length - 4, data);
+            
+            assertEquals(expected.toString(), new String(data, StandardCharsets.UTF_8));
+            assertTrue(block.length < data.length);
+        }
+        finally
+        {
+            file.delete();
+            index.delete();
+        }
+    }
+}
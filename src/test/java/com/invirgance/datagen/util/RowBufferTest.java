@@ -0,0 +1,122 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import com.invirgance.convirgance.json.JSONObject;
+import java.io.IOException;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author jbanes
+ */
+public class RowBufferTest
+{
+    private static final Schema SCHEMA = new Schema()
+            .add("id", Schema.LONG)
+            .add("Count", Schema.INT)
+            .add("Price", Schema.DOUBLE)
+            .add("Name", Schema.STRING);
+    
+    private void write(RowWriter writer, long id, int count, double price, String name) throws IOException
+    {
+        writer.writeLong(id);
+        writer.writeInt(count);
+        writer.writeDouble(price);
+        writer.writeString(name);
+        writer.endRow();
+    }
+    
+    @Test
+    public void testValues() throws IOException
+    {
+        RowBuffer buffer = new RowBuffer(SCHEMA, 2);
+        RowBuffer copy = new RowBuffer(SCHEMA.without("Count"), 2);
+        JSONObject record;
+        
+        write(buffer, 1L << 40, -7, 2.5, "a");
+        
+        buffer.writeNull();
+        buffer.writeNull();
+        buffer.writeDouble(-0.0);
+        buffer.writeString(null);
+        buffer.endRow();
+        
+        assertEquals(2, buffer.size());
+        assertTrue(buffer.isFull());
+        
+        assertEquals(1L << 40, buffer.get(0, 0));
+        assertEquals(-7, buffer.get(0, 1));
+        assertEquals(2.5, buffer.get(0, 2));
+        assertEquals("a", buffer.get(0, 3));
+        assertNull(buffer.get(1, 0));
+        assertNull(buffer.get(1, 3));
+        assertEquals(-0.0, buffer.get(1, 2));
+        
+        record = buffer.getRecord(0, 1);
+        
+        assertEquals(3, record.size());
+        assertFalse(record.containsKey("Count"));
+        assertEquals(1L << 40, record.get("id"));
+        assertEquals("a", record.get("Name"));
+        assertEquals(4, buffer.getRecord(1, -1).size());
+        
+        buffer.write(0, copy, 1);
+        buffer.write(1, copy, 1);
+        
+        assertEquals(buffer.getRecord(0, 1), copy.getRecord(0, -1));
+        assertEquals(buffer.getRecord(1, 1), copy.getRecord(1, -1));
+        
+        // Values are overwritten once the buffer is cleared
+        buffer.clear();
+        write(buffer, 2, 3, 4.0, null);
+        
+        assertEquals(1, buffer.size());
+        assertNull(buffer.get(0, 3));
+        assertEquals(3, buffer.get(0, 1));
+    }
+    
+    @Test
+    public void testErrors() throws IOException
+    {
+        RowBuffer buffer = new RowBuffer(SCHEMA, 1);
+        
+        assertThrows(IllegalStateException.class, () -> buffer.writeInt(1));
+        
+        buffer.writeLong(1);
+        
+        assertThrows(IllegalStateException.class, () -> buffer.endRow());
+        assertThrows(IllegalStateException.class, () -> buffer.clear());
+        
+        buffer.writeInt(1);
+        buffer.writeDouble(1);
+        buffer.writeString("a");
+        
+        assertThrows(IllegalStateException.class, () -> buffer.writeNull());
+        
+        buffer.endRow();
+        
+        assertThrows(IllegalStateException.class, () -> buffer.writeLong(2));
+        assertThrows(IllegalArgumentException.class, () -> new RowBuffer(SCHEMA, 0));
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import java.util.HashSet;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author jbanes
+ */
+public class SeedsTest
+{
+    @Test
+    public void testDerive()
+    {
+        HashSet<Long> seeds = new HashSet<>();
+        
+        assertEquals(Seeds.derive(1337, 1, 2), Seeds.derive(1337, 1, 2));
+        assertNotEquals(Seeds.derive(1337, 1, 2), Seeds.derive(1337, 2, 1));
+        assertNotEquals(Seeds.derive(1337, 1, 2), Seeds.derive(1338, 1, 2));
+        
+        for(int franchise=1; franchise<=20; franchise++)
+        {
+            for(int store=1; store<=5000; store++)
+            {
+                seeds.add(Seeds.derive(0x1337C0DE, franchise, store));
+            }
+        }
+        
+        assertEquals(20 * 5000, seeds.size());
+    }
+}
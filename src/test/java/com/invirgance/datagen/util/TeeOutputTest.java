@@ -0,0 +1,99 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import com.invirgance.convirgance.json.JSONObject;
+import com.invirgance.convirgance.output.DelimitedOutput;
+import com.invirgance.convirgance.output.Output;
+import com.invirgance.convirgance.output.OutputCursor;
+import com.invirgance.convirgance.target.FileTarget;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author jbanes
+ */
+public class TeeOutputTest
+{
+    private File file() throws IOException
+    {
+        File file = File.createTempFile("tee", ".csv");
+        
+        file.deleteOnExit();
+        
+        return file;
+    }
+    
+    private void write(OutputCursor cursor)
+    {
+        JSONObject record;
+        
+        for(int i=1; i<=100; i++)
+        {
+            record = new JSONObject();
+            
+            record.put("id", i);
+            record.put("Name", "Record " + i);
+            record.put("Price", i * 1.25);
+            
+            cursor.write(record);
+        }
+        
+        cursor.close();
+    }
+    
+    @Test
+    public void testTee() throws IOException
+    {
+        Output output = new DelimitedOutput(',');
+        File single = file();
+        File primary = file();
+        File secondary = file();
+        byte[] expected;
+        
+        write(output.write(new FileTarget(single)));
+        write(new TeeOutput(output, output, new FileTarget(secondary)).write(new FileTarget(primary)));
+        
+        expected = Files.readAllBytes(single.toPath());
+        
+        assertTrue(expected.length > 0);
+        assertArrayEquals(expected, Files.readAllBytes(primary.toPath()));
+        assertArrayEquals(expected, Files.readAllBytes(secondary.toPath()));
+    }
+    
+    @Test
+    public void testSecondaryOnly() throws IOException
+    {
+        Output output = new DelimitedOutput(',');
+        File single = file();
+        File secondary = file();
+        
+        write(output.write(new FileTarget(single)));
+        write(new TeeOutput(null, output, new FileTarget(secondary)).write(null));
+        
+        assertArrayEquals(Files.readAllBytes(single.toPath()), Files.readAllBytes(secondary.toPath()));
+    }
+}
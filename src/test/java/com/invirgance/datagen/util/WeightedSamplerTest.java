@@ -0,0 +1,84 @@
+/*
+ * Copyright 2024 INVIRGANCE LLC
+
+Permission is hereby granted, free of charge, to any person obtaining a copy 
+of this software and associated documentation files (the “Software”), to deal 
+in the Software without restriction, including without limitation the rights to 
+use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies 
+of the Software, and to permit persons to whom the Software is furnished to do 
+so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all 
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+SOFTWARE.
+ */
+package com.invirgance.datagen.util;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author jbanes
+ */
+public class WeightedSamplerTest
+{
+    
+    @Test
+    public void testDistribution()
+    {
+        String[] values = new String[]{ "James", "Michael", "Robert", "Zero", "John" };
+        long[] weights = new long[]{ 4586625, 4350425, 4000, 0, 7 };
+        WeightedSampler<String> sampler = new WeightedSampler<>(values, weights);
+        Random random = new Random(1337);
+        int[] counts = new int[values.length];
+        long total = 0;
+        
+        for(long weight : weights) total += weight;
+        
+        assertEquals(total, sampler.getTotal());
+        
+        for(int i=0; i<1000000; i++) counts[sampler.nextIndex(random)]++;
+        
+        assertEquals(0, counts[3]);
+        
+        for(int i=0; i<values.length; i++)
+        {
+            assertEquals(weights[i] / (double)total, counts[i] / 1000000.0, 0.002);
+        }
+    }
+    
+    @Test
+    public void testCumulative()
+    {
+        String[] values = new String[]{ "a", "b", "c", "d" };
+        WeightedSampler<String> sampler = new WeightedSampler<>(values, new long[]{ 2, 0, 3, 1 });
+        
+        assertEquals("a", sampler.get(0));
+        assertEquals("a", sampler.get(1));
+        assertEquals("c", sampler.get(2));
+        assertEquals("c", sampler.get(4));
+        assertEquals("d", sampler.get(5));
+        assertThrows(IllegalArgumentException.class, () -> sampler.get(6));
+        assertThrows(IllegalArgumentException.class, () -> sampler.get(-1));
+    }
+    
+    @Test
+    public void testInvalid()
+    {
+        assertThrows(IllegalArgumentException.class, () -> new WeightedSampler<>(new String[0], new long[0]));
+        assertThrows(IllegalArgumentException.class, () -> new WeightedSampler<>(new String[]{ "a" }, new long[]{ 0 }));
+        assertThrows(IllegalArgumentException.class, () -> new WeightedSampler<>(new String[]{ "a" }, new long[]{ -1 }));
+        assertThrows(IllegalArgumentException.class, () -> new WeightedSampler<>(new String[]{ "a" }, new long[]{ 1, 2 }));
+        
+        assertEquals("a", new WeightedSampler<>(new String[]{ "a" }, new long[]{ 5 }).next(new Random()));
+    }
+}